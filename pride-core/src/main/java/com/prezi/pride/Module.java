@@ -1,14 +1,21 @@
 package com.prezi.pride;
 
+import com.prezi.pride.vcs.CloneOptions;
 import com.prezi.pride.vcs.Vcs;
 
 public class Module implements Named, Comparable<Module> {
 	private final String name;
 	private final Vcs vcs;
+	private final CloneOptions cloneOptions;
 
 	public Module(String name, Vcs vcs) {
+		this(name, vcs, CloneOptions.UNSET);
+	}
+
+	public Module(String name, Vcs vcs, CloneOptions cloneOptions) {
 		this.name = name;
 		this.vcs = vcs;
+		this.cloneOptions = cloneOptions;
 	}
 
 	@Override
@@ -25,6 +32,14 @@ public class Module implements Named, Comparable<Module> {
 		return vcs;
 	}
 
+	/**
+	 * Returns how much of its repository the module was cloned with: history, objects and checked out paths.
+	 * Options not set for the module are not filled in from the pride.
+	 */
+	public CloneOptions getCloneOptions() {
+		return cloneOptions;
+	}
+
 	@Override
 	public boolean equals(Object o) {
 		if (this == o) return true;
@@ -1,13 +1,20 @@
 package com.prezi.pride;
 
 import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.prezi.pride.config.ConfigurationData;
 import com.prezi.pride.config.PrideConfigurationHandler;
 import com.prezi.pride.filters.Filter;
+import com.prezi.pride.filters.FilterContext;
+import com.prezi.pride.internal.ProgressUtils;
+import com.prezi.pride.vcs.CloneOptions;
 import com.prezi.pride.vcs.Vcs;
 import com.prezi.pride.vcs.VcsManager;
+import com.prezi.pride.vcs.VcsStatus;
+import com.prezi.pride.vcs.VcsStatusCache;
+import com.prezi.pride.vcs.VcsSupport;
 import org.apache.commons.configuration.ConfigurationException;
 import org.apache.commons.configuration.PropertiesConfiguration;
 import org.apache.commons.io.FileUtils;
@@ -18,7 +25,6 @@ import java.io.File;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.SortedMap;
-import java.util.SortedSet;
 
 public class Pride {
 	private static final Logger logger = LoggerFactory.getLogger(Pride.class);
@@ -26,6 +32,8 @@ public class Pride {
 	public static final String PRIDE_CONFIG_DIRECTORY = ".pride";
 	public static final String PRIDE_VERSION_FILE = "version";
 	public static final String PRIDE_CONFIG_FILE = "config";
+	public static final String PRIDE_STATUS_CACHE_FILE = "status-cache";
+	public static final String PRIDE_MODEL_CACHE_FILE = "model-cache";
 
 	public static final String GRADLE_SETTINGS_FILE = "settings.gradle";
 	public static final String GRADLE_BUILD_FILE = "build.gradle";
@@ -38,6 +46,7 @@ public class Pride {
 
 	private final SortedMap<String, Module> modules;
 	private final PrideConfigurationHandler configurationHandler;
+	private final VcsStatusCache statusCache;
 
 	public static Pride getPride(final File directory, RuntimeConfiguration globalConfig, VcsManager vcsManager) throws IOException {
 		File prideDirectory = findPrideDirectory(directory);
@@ -82,6 +91,7 @@ public class Pride {
 		ConfigurationData<Module> configurationData = configurationHandler.loadConfiguration(prideConfiguration);
 		this.configuration = globalConfiguration.withConfiguration(configurationData.getConfiguration());
 		this.modules = loadModules(rootDirectory, configurationData.getModules());
+		this.statusCache = new VcsStatusCache(new File(getPrideConfigDirectory(rootDirectory), PRIDE_STATUS_CACHE_FILE));
 	}
 
 	private static PropertiesConfiguration loadLocalConfiguration(File configDirectory) {
@@ -117,12 +127,16 @@ public class Pride {
 		return configuration;
 	}
 
-	public Collection<Module> getModules() {
+	public synchronized Collection<Module> getModules() {
 		return Sets.newTreeSet(modules.values());
 	}
 
 	public Module addModule(String name, Vcs vcs) {
-		Module module = new Module(name, vcs);
+		return addModule(name, vcs, CloneOptions.UNSET);
+	}
+
+	public synchronized Module addModule(String name, Vcs vcs, CloneOptions cloneOptions) {
+		Module module = new Module(name, vcs, cloneOptions);
 		modules.put(name, module);
 		return module;
 	}
@@ -130,15 +144,17 @@ public class Pride {
 	public void removeModule(final String name) throws IOException {
 		final File moduleDir = getModuleDirectory(name);
 		logger.info("Removing " + name + " from " + moduleDir);
-		modules.remove(name);
+		synchronized (this) {
+			modules.remove(name);
+		}
 		FileUtils.deleteDirectory(moduleDir);
 	}
 
-	public boolean hasModule(String name) {
+	public synchronized boolean hasModule(String name) {
 		return modules.containsKey(name);
 	}
 
-	public Module getModule(final String name) {
+	public synchronized Module getModule(final String name) {
 		if (!modules.containsKey(name)) {
 			throw new PrideException("No module with name " + name);
 		}
@@ -147,13 +163,8 @@ public class Pride {
 	}
 
 	public Collection<Module> getModules(final Filter filter) throws IOException {
-		SortedSet<Module> filteredModules = Sets.newTreeSet();
-		for (Module module : modules.values()) {
-			if (filter.matches(this, module)) {
-				filteredModules.add(module);
-			}
-		}
-		return filteredModules;
+		FilterContext context = new FilterContext(this, ProgressUtils.getStatusJobs(configuration));
+		return Sets.newTreeSet(filter.filter(context, Lists.newArrayList(getModules())));
 	}
 
 	public File getModuleDirectory(String name) {
@@ -162,7 +173,30 @@ public class Pride {
 		return new File(rootDirectory, module.getName());
 	}
 
-	public void save() throws ConfigurationException {
+	/**
+	 * Returns the VCS status of the module, reusing the status from a previous run if the module didn't change.
+	 */
+	public VcsStatus getStatus(Module module) throws IOException {
+		File moduleDirectory = getModuleDirectory(module.getName());
+		VcsSupport vcsSupport = module.getVcs().getSupport();
+		if (!configuration.getBoolean(VcsStatusCache.STATUS_CACHE_ENABLED, true)) {
+			return vcsSupport.getStatus(moduleDirectory);
+		}
+		return statusCache.getStatus(module.getName(), moduleDirectory, vcsSupport);
+	}
+
+	/**
+	 * Stores statuses queried via {@link #getStatus(Module)} for later runs.
+	 */
+	public void saveStatusCache() throws IOException {
+		Collection<String> moduleNames;
+		synchronized (this) {
+			moduleNames = Sets.newHashSet(modules.keySet());
+		}
+		statusCache.save(moduleNames);
+	}
+
+	public synchronized void save() throws ConfigurationException {
 		configurationHandler.saveConfiguration(localConfiguration, modules.values());
 		localConfiguration.save();
 	}
@@ -0,0 +1,55 @@
+package com.prezi.pride;
+
+import com.google.common.base.Joiner;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Represents the outcome of an executed process.
+ *
+ * <p>If the output of the process was passed to a handler while it was running, only the last
+ * {@value ProcessUtils#OUTPUT_TAIL_LINES} lines of each stream are kept.</p>
+ */
+public final class ProcessResult {
+	private final int exitCode;
+	private final List<String> outputLines;
+	private final List<String> errorLines;
+
+	public ProcessResult(int exitCode, List<String> outputLines, List<String> errorLines) {
+		this.exitCode = exitCode;
+		this.outputLines = Collections.unmodifiableList(outputLines);
+		this.errorLines = Collections.unmodifiableList(errorLines);
+	}
+
+	public int getExitCode() {
+		return exitCode;
+	}
+
+	/**
+	 * Returns the lines written to the standard output, including the lines of the error stream
+	 * if it was redirected.
+	 */
+	public List<String> getOutputLines() {
+		return outputLines;
+	}
+
+	/**
+	 * Returns the lines written to the error stream, or an empty list if it was redirected.
+	 */
+	public List<String> getErrorLines() {
+		return errorLines;
+	}
+
+	/**
+	 * Returns the standard output as a single string.
+	 */
+	public String getOutput() {
+		return Joiner.on('\n').join(outputLines);
+	}
+
+	@Override
+	public String toString() {
+		return "exit code: " + exitCode;
+	}
+}
@@ -0,0 +1,104 @@
+package com.prezi.pride;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.io.CharStreams;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Kills a process together with all of its descendants.
+ *
+ * <p>Java cannot list the children of a process, so on Unix-like systems the process ID is
+ * looked up via reflection ({@code Process.pid()} where available, the private {@code pid} field
+ * on older versions), and the descendants are found with {@code pgrep -P}. Where this
+ * is not possible, only the process itself is destroyed.</p>
+ */
+final class ProcessTreeKiller {
+	private static final Logger logger = LoggerFactory.getLogger(ProcessTreeKiller.class);
+
+	private ProcessTreeKiller() {
+	}
+
+	public static void kill(Process process) {
+		Integer pid = getPid(process);
+		if (pid != null) {
+			List<Integer> descendants = Lists.newArrayList();
+			collectDescendants(pid, descendants);
+			if (!descendants.isEmpty()) {
+				logger.debug("Killing descendants of process {}: {}", pid, descendants);
+				List<String> commandLine = Lists.newArrayList("kill", "-TERM");
+				for (Integer descendant : descendants) {
+					commandLine.add(String.valueOf(descendant));
+				}
+				run(commandLine);
+			}
+		}
+		process.destroy();
+	}
+
+	private static Integer getPid(Process process) {
+		if (File.separatorChar != '/') {
+			return null;
+		}
+		// Java 9 and later have Process.pid(), and don't let us read private fields of the JDK
+		try {
+			Method pidMethod = Process.class.getMethod("pid");
+			return ((Number) pidMethod.invoke(process)).intValue();
+		} catch (NoSuchMethodException e) {
+			// Java 8 or earlier
+		} catch (Exception e) {
+			logger.debug("Could not determine process ID of {}", process, e);
+			return null;
+		}
+		try {
+			Field pidField = process.getClass().getDeclaredField("pid");
+			pidField.setAccessible(true);
+			return pidField.getInt(process);
+		} catch (Exception e) {
+			logger.debug("Could not determine process ID of {}", process, e);
+			return null;
+		}
+	}
+
+	private static void collectDescendants(int pid, List<Integer> descendants) {
+		List<String> children = run(Arrays.asList("pgrep", "-P", String.valueOf(pid)));
+		for (String child : children) {
+			try {
+				int childPid = Integer.parseInt(child.trim());
+				descendants.add(childPid);
+				collectDescendants(childPid, descendants);
+			} catch (NumberFormatException e) {
+				logger.debug("Unexpected output from pgrep: {}", child);
+			}
+		}
+	}
+
+	private static List<String> run(List<String> commandLine) {
+		try {
+			Process process = new ProcessBuilder(commandLine).redirectErrorStream(true).start();
+			process.getOutputStream().close();
+			InputStreamReader reader = new InputStreamReader(process.getInputStream(), Charsets.UTF_8);
+			try {
+				return CharStreams.readLines(reader);
+			} finally {
+				reader.close();
+				process.waitFor();
+			}
+		} catch (IOException e) {
+			logger.debug("Could not execute {}", commandLine, e);
+		} catch (InterruptedException e) {
+			logger.debug("Interrupted while executing {}", commandLine, e);
+			Thread.currentThread().interrupt();
+		}
+		return Lists.newArrayList();
+	}
+}
@@ -1,6 +1,10 @@
 package com.prezi.pride;
 
-import org.apache.commons.io.IOUtils;
+import com.google.common.base.Charsets;
+import com.google.common.base.Throwables;
+import com.google.common.collect.EvictingQueue;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -8,82 +12,278 @@ import org.slf4j.LoggerFactory;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class ProcessUtils {
 
 	private static final Logger logger = LoggerFactory.getLogger(ProcessUtils.class);
 
-	public static Process executeIn(File directory, List<?> commandLine, boolean processOutput, boolean redirectErrorStream, List<Integer> acceptableExitCodes) throws IOException {
-		List<String> stringCommandLine = new ArrayList<String>();
-		for (Object item : commandLine) {
-			stringCommandLine.add(String.valueOf(item));
+	/**
+	 * The number of lines kept from each stream of processes whose output is passed to a handler.
+	 */
+	public static final int OUTPUT_TAIL_LINES = 100;
+
+	private static final ExecutorService STREAM_READERS = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+			.setNameFormat("pride-process-reader-%d")
+			.setDaemon(true)
+			.build());
+	private static final ScheduledExecutorService WATCHDOG = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+			.setNameFormat("pride-process-watchdog")
+			.setDaemon(true)
+			.build());
+	private static final Set<Process> RUNNING_PROCESSES = Collections.newSetFromMap(new ConcurrentHashMap<Process, Boolean>());
+
+	static {
+		// Make sure no child process outlives us when interrupted with Ctrl-C
+		Runtime.getRuntime().addShutdownHook(new Thread("pride-process-killer") {
+			@Override
+			public void run() {
+				for (Process process : RUNNING_PROCESSES) {
+					ProcessTreeKiller.kill(process);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Receives the output of a process line by line, as it is produced.
+	 *
+	 * <p>The handler is called from threads reading the streams of the process. When the error stream
+	 * is not redirected, the two streams are read on different threads, so implementations must be
+	 * thread-safe.</p>
+	 */
+	public interface OutputHandler {
+		void handleOutput(String line);
+
+		void handleError(String line);
+	}
+
+	private static final OutputHandler LOGGING_OUTPUT_HANDLER = new OutputHandler() {
+		@Override
+		public void handleOutput(String line) {
+			logger.info("{}", line);
 		}
-		logger.debug("Executing in {}: {}", directory != null ? directory : System.getProperty("user.dir"), StringUtils.join(stringCommandLine, " "));
-		ProcessBuilder builder = new ProcessBuilder(stringCommandLine);
-		builder.directory(directory);
-		if (redirectErrorStream) {
-			builder.redirectErrorStream(true);
+
+		@Override
+		public void handleError(String line) {
+			logger.warn("{}", line);
 		}
+	};
 
-		Process process = builder.start();
+	/**
+	 * Executes a command, and passes its output to {@code outputHandler} line by line as it arrives.
+	 * The standard output and error streams are drained concurrently, so the process never blocks
+	 * on a full pipe. The output is also captured in the returned result: all of it without a handler,
+	 * but only the last {@value #OUTPUT_TAIL_LINES} lines of each stream with one, so that long-running
+	 * commands don't keep their whole output in memory.
+	 *
+	 * <p>If the calling thread is interrupted, or the JVM is shut down while the command is running,
+	 * the process and all of its descendants are killed.</p>
+	 *
+	 * @param outputHandler the handler to receive the output, or {@code null}.
+	 * @param timeoutMillis the time after which the process is killed, or {@code 0} to wait indefinitely.
+	 * @return the exit code and the output of the process; the exit code is not checked.
+	 * @throws PrideException if the process timed out.
+	 */
+	public static ProcessResult executeIn(File directory, List<?> commandLine, boolean redirectErrorStream, OutputHandler outputHandler, long timeoutMillis) throws IOException {
+		final Process process = start(directory, commandLine, redirectErrorStream);
+		RUNNING_PROCESSES.add(process);
+		try {
+			process.getOutputStream().close();
 
-		if (processOutput) {
-			BufferedReader errorReader = new BufferedReader(new InputStreamReader(process.getErrorStream()));
-			try {
-				String line;
-				while ((line = errorReader.readLine()) != null) {
-					logger.warn("{}", line);
-				}
-			} finally {
-				errorReader.close();
+			Collection<String> outputLines = newLineCollector(outputHandler);
+			Collection<String> errorLines = newLineCollector(outputHandler);
+			Future<?> outputReader = STREAM_READERS.submit(new LineDrainer(process.getInputStream(), outputLines, outputHandler, false));
+			Future<?> errorReader = null;
+			if (!redirectErrorStream) {
+				errorReader = STREAM_READERS.submit(new LineDrainer(process.getErrorStream(), errorLines, outputHandler, true));
+			}
+
+			final AtomicBoolean timedOut = new AtomicBoolean();
+			ScheduledFuture<?> watchdog = null;
+			if (timeoutMillis > 0) {
+				watchdog = WATCHDOG.schedule(new Runnable() {
+					@Override
+					public void run() {
+						if (isRunning(process)) {
+							timedOut.set(true);
+							ProcessTreeKiller.kill(process);
+						}
+					}
+				}, timeoutMillis, TimeUnit.MILLISECONDS);
 			}
-			BufferedReader outputReader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+
+			int exitCode;
 			try {
-				String line;
-				while ((line = outputReader.readLine()) != null) {
-					logger.info("{}", line);
-				}
+				exitCode = process.waitFor();
+				awaitReader(outputReader);
+				awaitReader(errorReader);
+			} catch (InterruptedException e) {
+				logger.debug("Interrupted, killing process");
+				ProcessTreeKiller.kill(process);
+				throw new IOException("Interrupted", e);
 			} finally {
-				outputReader.close();
+				if (watchdog != null) {
+					watchdog.cancel(false);
+				}
 			}
-		}
 
-		try {
-			process.waitFor();
-		} catch (InterruptedException e) {
-			throw new IOException("Interrupted", e);
+			if (timedOut.get()) {
+				throw new PrideException("Timed out after " + TimeUnit.MILLISECONDS.toSeconds(timeoutMillis) + " seconds executing \"" + StringUtils.join(commandLine, " ") + "\" in \"" + directory + "\"");
+			}
+			return new ProcessResult(exitCode, Lists.newArrayList(outputLines), Lists.newArrayList(errorLines));
+		} finally {
+			RUNNING_PROCESSES.remove(process);
 		}
-		int result = process.exitValue();
-		if (!acceptableExitCodes.contains(result)) {
+	}
+
+	public static ProcessResult executeIn(File directory, List<?> commandLine, boolean redirectErrorStream, OutputHandler outputHandler) throws IOException {
+		return executeIn(directory, commandLine, redirectErrorStream, outputHandler, 0);
+	}
+
+	public static ProcessResult executeIn(File directory, List<?> commandLine, boolean processOutput, boolean redirectErrorStream, List<Integer> acceptableExitCodes, long timeoutMillis) throws IOException {
+		ProcessResult result = executeIn(directory, commandLine, redirectErrorStream, processOutput ? LOGGING_OUTPUT_HANDLER : null, timeoutMillis);
+		int exitCode = result.getExitCode();
+		if (!acceptableExitCodes.contains(exitCode)) {
 			String output;
 			if (!processOutput) {
 				List<String> outputLines = new ArrayList<String>();
-				outputLines.addAll(IOUtils.readLines(process.getErrorStream()));
-				outputLines.addAll(IOUtils.readLines(process.getInputStream()));
+				outputLines.addAll(result.getErrorLines());
+				outputLines.addAll(result.getOutputLines());
 				output = ", output:\n" + StringUtils.join(outputLines, '\n');
 			} else {
 				output = "";
 			}
-			throw new PrideException("Failed to execute \"" + StringUtils.join(commandLine, " ") + "\" in \"" + directory + "\", exit code: " + result + output);
+			throw new PrideException("Failed to execute \"" + StringUtils.join(commandLine, " ") + "\" in \"" + directory + "\", exit code: " + exitCode + output);
 		}
 
-		return process;
+		return result;
+	}
+
+	public static ProcessResult executeIn(File directory, List<?> commandLine, boolean processOutput, boolean redirectErrorStream, List<Integer> acceptableExitCodes) throws IOException {
+		return executeIn(directory, commandLine, processOutput, redirectErrorStream, acceptableExitCodes, 0);
 	}
 
-	public static Process executeIn(File directory, List<?> commandLine, boolean processOutput, boolean redirectErrorStream) throws IOException {
+	private static Process start(File directory, List<?> commandLine, boolean redirectErrorStream) throws IOException {
+		List<String> stringCommandLine = new ArrayList<String>();
+		for (Object item : commandLine) {
+			stringCommandLine.add(String.valueOf(item));
+		}
+		logger.debug("Executing in {}: {}", directory != null ? directory : System.getProperty("user.dir"), StringUtils.join(stringCommandLine, " "));
+		ProcessBuilder builder = new ProcessBuilder(stringCommandLine);
+		builder.directory(directory);
+		if (redirectErrorStream) {
+			builder.redirectErrorStream(true);
+		}
+		return builder.start();
+	}
+
+	public static ProcessResult executeIn(File directory, List<?> commandLine, boolean processOutput, boolean redirectErrorStream, long timeoutMillis) throws IOException {
 		List<Integer> defaultAcceptableExitCodes = Arrays.asList(0);
-		return ProcessUtils.executeIn(directory, commandLine, processOutput, redirectErrorStream, defaultAcceptableExitCodes);
+		return ProcessUtils.executeIn(directory, commandLine, processOutput, redirectErrorStream, defaultAcceptableExitCodes, timeoutMillis);
 	}
 
-	public static Process executeIn(File directory, List<?> commandLine, boolean processOutput) throws IOException {
+	public static ProcessResult executeIn(File directory, List<?> commandLine, boolean processOutput, boolean redirectErrorStream) throws IOException {
+		return ProcessUtils.executeIn(directory, commandLine, processOutput, redirectErrorStream, 0);
+	}
+
+	public static ProcessResult executeIn(File directory, List<?> commandLine, boolean processOutput) throws IOException {
 		return ProcessUtils.executeIn(directory, commandLine, processOutput, true);
 	}
 
-	public static Process executeIn(File directory, List<?> commandLine) throws IOException {
+	public static ProcessResult executeIn(File directory, List<?> commandLine, long timeoutMillis) throws IOException {
+		return ProcessUtils.executeIn(directory, commandLine, true, true, timeoutMillis);
+	}
+
+	public static ProcessResult executeIn(File directory, List<?> commandLine) throws IOException {
 		return ProcessUtils.executeIn(directory, commandLine, true, true);
 	}
+
+	private static Collection<String> newLineCollector(OutputHandler outputHandler) {
+		if (outputHandler == null) {
+			return Lists.newArrayList();
+		}
+		return EvictingQueue.create(OUTPUT_TAIL_LINES);
+	}
+
+	private static boolean isRunning(Process process) {
+		try {
+			process.exitValue();
+			return false;
+		} catch (IllegalThreadStateException e) {
+			return true;
+		}
+	}
+
+	private static void awaitReader(Future<?> reader) throws IOException, InterruptedException {
+		if (reader == null) {
+			return;
+		}
+		try {
+			reader.get();
+		} catch (ExecutionException e) {
+			Throwables.propagateIfPossible(e.getCause(), IOException.class);
+			throw new PrideException(e.getCause());
+		}
+	}
+
+	/**
+	 * Reads a stream of the process to the end, collecting its lines and passing them to the handler.
+	 */
+	private static class LineDrainer implements Callable<Void> {
+		private final InputStream stream;
+		private final Collection<String> lines;
+		private final OutputHandler outputHandler;
+		private final boolean error;
+
+		public LineDrainer(InputStream stream, Collection<String> lines, OutputHandler outputHandler, boolean error) {
+			this.stream = stream;
+			this.lines = lines;
+			this.outputHandler = outputHandler;
+			this.error = error;
+		}
+
+		@Override
+		public Void call() throws IOException {
+			drain();
+			return null;
+		}
+
+		public void drain() throws IOException {
+			BufferedReader reader = new BufferedReader(new InputStreamReader(stream, Charsets.UTF_8));
+			try {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					lines.add(line);
+					if (outputHandler == null) {
+						continue;
+					}
+					if (error) {
+						outputHandler.handleError(line);
+					} else {
+						outputHandler.handleOutput(line);
+					}
+				}
+			} finally {
+				reader.close();
+			}
+		}
+	}
 }
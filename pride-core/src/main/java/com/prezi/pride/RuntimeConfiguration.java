@@ -23,4 +23,6 @@ public interface RuntimeConfiguration extends Configuration {
 	boolean override(String property, boolean overrideEnabled, boolean overrideDisabled);
 
 	String override(String property, String override);
+
+	int override(String property, Integer override);
 }
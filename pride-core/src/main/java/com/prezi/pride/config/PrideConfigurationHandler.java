@@ -1,6 +1,7 @@
 package com.prezi.pride.config;
 
 import com.prezi.pride.Module;
+import com.prezi.pride.vcs.CloneOptions;
 import com.prezi.pride.vcs.VcsManager;
 import org.apache.commons.configuration.Configuration;
 
@@ -13,12 +14,13 @@ public class PrideConfigurationHandler extends AbstractConfigurationHandler<Modu
 	protected Module loadModule(Configuration config, String prefix) {
 		String moduleName = config.getString(prefix + ".name");
 		String vcsType = config.getString(prefix + ".vcs");
-		return new Module(moduleName, getVcsManager().getVcs(vcsType, config));
+		return new Module(moduleName, getVcsManager().getVcs(vcsType, config), CloneOptions.load(config, prefix));
 	}
 
 	@Override
 	protected void saveModule(Configuration config, String prefix, Module module) {
 		config.setProperty(prefix + ".name", module.getName());
 		config.setProperty(prefix + ".vcs", module.getVcs().getType());
+		module.getCloneOptions().save(config, prefix);
 	}
 }
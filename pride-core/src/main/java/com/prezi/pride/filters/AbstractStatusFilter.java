@@ -0,0 +1,39 @@
+package com.prezi.pride.filters;
+
+import com.google.common.collect.Lists;
+import com.prezi.pride.Module;
+import com.prezi.pride.Pride;
+import com.prezi.pride.vcs.VcsStatus;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Base class for filters that match modules based on their VCS status.
+ */
+public abstract class AbstractStatusFilter implements Filter {
+	@Override
+	public boolean matches(Pride pride, Module module) throws IOException {
+		return matches(module, pride.getStatus(module));
+	}
+
+	@Override
+	public List<Module> filter(FilterContext context, List<Module> modules) throws IOException {
+		Map<Module, VcsStatus> statuses = context.getStatuses(modules);
+		List<Module> result = Lists.newArrayList();
+		for (Module module : modules) {
+			if (matches(module, statuses.get(module))) {
+				result.add(module);
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public FilterCost getCost() {
+		return FilterCost.VCS_STATUS;
+	}
+
+	protected abstract boolean matches(Module module, VcsStatus status) throws IOException;
+}
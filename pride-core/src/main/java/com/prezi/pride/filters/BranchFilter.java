@@ -2,12 +2,12 @@ package com.prezi.pride.filters;
 
 import com.google.common.base.Strings;
 import com.prezi.pride.Module;
-import com.prezi.pride.Pride;
+import com.prezi.pride.vcs.VcsStatus;
 
 import java.io.IOException;
 import java.util.regex.Pattern;
 
-public class BranchFilter implements Filter {
+public class BranchFilter extends AbstractStatusFilter {
 	private final Pattern branchPattern;
 
 	public BranchFilter(Pattern branchPattern) {
@@ -15,8 +15,8 @@ public class BranchFilter implements Filter {
 	}
 
 	@Override
-	public boolean matches(Pride pride, Module module) throws IOException {
-		String branch = module.getVcs().getSupport().getBranch(pride.getModuleDirectory(module.getName()));
+	protected boolean matches(Module module, VcsStatus status) throws IOException {
+		String branch = status.getBranch();
 		if (Strings.isNullOrEmpty(branch)) {
 			branch = module.getVcs().getSupport().getDefaultBranch();
 		}
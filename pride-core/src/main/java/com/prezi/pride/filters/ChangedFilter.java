@@ -3,13 +3,11 @@ package com.prezi.pride.filters;
 import com.google.common.base.Joiner;
 import com.google.common.collect.Lists;
 import com.prezi.pride.Module;
-import com.prezi.pride.Pride;
 import com.prezi.pride.vcs.VcsStatus;
 
-import java.io.IOException;
 import java.util.List;
 
-public class ChangedFilter implements Filter {
+public class ChangedFilter extends AbstractStatusFilter {
 
 	private final boolean uncommittedChanges;
 	private final boolean unpublishedChanges;
@@ -20,8 +18,7 @@ public class ChangedFilter implements Filter {
 	}
 
 	@Override
-	public boolean matches(Pride pride, Module module) throws IOException {
-		VcsStatus status = module.getVcs().getSupport().getStatus(pride.getModuleDirectory(module.getName()));
+	protected boolean matches(Module module, VcsStatus status) {
 		return (uncommittedChanges && status.hasUncommittedChanges()) || (unpublishedChanges && status.hasUnpublishedChanges());
 	}
 
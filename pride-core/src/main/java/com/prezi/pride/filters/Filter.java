@@ -4,9 +4,17 @@ import com.prezi.pride.Module;
 import com.prezi.pride.Pride;
 
 import java.io.IOException;
+import java.util.List;
 
 public interface Filter {
 	boolean matches(Pride pride, Module module) throws IOException;
 
+	/**
+	 * Returns the given modules that match the filter, keeping their order.
+	 */
+	List<Module> filter(FilterContext context, List<Module> modules) throws IOException;
+
+	FilterCost getCost();
+
 	String toString();
 }
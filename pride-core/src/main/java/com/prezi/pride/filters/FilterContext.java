@@ -0,0 +1,65 @@
+package com.prezi.pride.filters;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.prezi.pride.Module;
+import com.prezi.pride.Pride;
+import com.prezi.pride.internal.ParallelExecutor;
+import com.prezi.pride.vcs.VcsStatus;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * State shared while evaluating a filter on a set of modules. The VCS status of each module
+ * is queried at most once, and the statuses of multiple modules are queried in parallel.
+ */
+public class FilterContext {
+	private final Pride pride;
+	private final int jobs;
+	private final ConcurrentMap<Module, VcsStatus> statuses = Maps.newConcurrentMap();
+
+	public FilterContext(Pride pride, int jobs) {
+		this.pride = pride;
+		this.jobs = jobs;
+	}
+
+	public Pride getPride() {
+		return pride;
+	}
+
+	/**
+	 * Returns the VCS status of each of the given modules.
+	 */
+	public Map<Module, VcsStatus> getStatuses(Collection<Module> modules) throws IOException {
+		List<Module> missingModules = Lists.newArrayList();
+		for (Module module : modules) {
+			if (!statuses.containsKey(module)) {
+				missingModules.add(module);
+			}
+		}
+		new ParallelExecutor(jobs).execute(missingModules, new ParallelExecutor.Task<Module>() {
+			@Override
+			public void started(Module module, int index, int count) {
+			}
+
+			@Override
+			public void execute(Module module, int index, int count) throws IOException {
+				statuses.put(module, queryStatus(module));
+			}
+		});
+
+		Map<Module, VcsStatus> result = Maps.newHashMap();
+		for (Module module : modules) {
+			result.put(module, statuses.get(module));
+		}
+		return result;
+	}
+
+	protected VcsStatus queryStatus(Module module) throws IOException {
+		return pride.getStatus(module);
+	}
+}
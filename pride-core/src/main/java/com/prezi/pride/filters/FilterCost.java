@@ -0,0 +1,22 @@
+package com.prezi.pride.filters;
+
+/**
+ * The relative cost of evaluating a {@link Filter} for a module. Combined filters evaluate
+ * cheaper filters first, so that expensive ones only need to look at the remaining modules.
+ */
+public enum FilterCost {
+	/**
+	 * The result doesn't depend on the module.
+	 */
+	CONSTANT,
+
+	/**
+	 * Only looks at the name or the configuration of the module.
+	 */
+	MODULE,
+
+	/**
+	 * Needs the VCS status of the working copy of the module.
+	 */
+	VCS_STATUS
+}
@@ -1,12 +1,18 @@
 package com.prezi.pride.filters;
 
 import com.google.common.base.Joiner;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import com.prezi.pride.Module;
 import com.prezi.pride.Pride;
 
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
 
 public final class Filters {
 
@@ -17,6 +23,16 @@ public final class Filters {
 				return true;
 			}
 
+			@Override
+			public List<Module> filter(FilterContext context, List<Module> modules) {
+				return modules;
+			}
+
+			@Override
+			public FilterCost getCost() {
+				return FilterCost.CONSTANT;
+			}
+
 			@Override
 			public String toString() {
 				return "ALL";
@@ -31,6 +47,16 @@ public final class Filters {
 				return false;
 			}
 
+			@Override
+			public List<Module> filter(FilterContext context, List<Module> modules) {
+				return Collections.emptyList();
+			}
+
+			@Override
+			public FilterCost getCost() {
+				return FilterCost.CONSTANT;
+			}
+
 			@Override
 			public String toString() {
 				return "NONE";
@@ -45,6 +71,23 @@ public final class Filters {
 				return !filter.matches(pride, module);
 			}
 
+			@Override
+			public List<Module> filter(FilterContext context, List<Module> modules) throws IOException {
+				Set<Module> matching = Sets.newHashSet(filter.filter(context, modules));
+				List<Module> result = Lists.newArrayList();
+				for (Module module : modules) {
+					if (!matching.contains(module)) {
+						result.add(module);
+					}
+				}
+				return result;
+			}
+
+			@Override
+			public FilterCost getCost() {
+				return filter.getCost();
+			}
+
 			@Override
 			public String toString() {
 				return "NOT (" + filter + ")";
@@ -55,14 +98,15 @@ public final class Filters {
 	public static Filter and(Filter... filters) {
 		return and(Arrays.asList(filters));
 	}
-	public static Filter and(final Collection<Filter> filters) {
+	public static Filter and(Collection<Filter> filters) {
 		if (filters.isEmpty()) {
 			return all();
 		}
+		final List<Filter> sortedFilters = sortByCost(filters);
 		return new Filter() {
 			@Override
 			public boolean matches(Pride pride, Module module) throws IOException {
-				for (Filter filter : filters) {
+				for (Filter filter : sortedFilters) {
 					if (!filter.matches(pride, module)) {
 						return false;
 					}
@@ -70,9 +114,27 @@ public final class Filters {
 				return true;
 			}
 
+			@Override
+			public List<Module> filter(FilterContext context, List<Module> modules) throws IOException {
+				// Each filter only needs to look at modules matched by the cheaper filters
+				List<Module> remaining = modules;
+				for (Filter filter : sortedFilters) {
+					if (remaining.isEmpty()) {
+						break;
+					}
+					remaining = filter.filter(context, remaining);
+				}
+				return remaining;
+			}
+
+			@Override
+			public FilterCost getCost() {
+				return getMaximumCost(sortedFilters);
+			}
+
 			@Override
 			public String toString() {
-				return "(" + Joiner.on(") AND (").join(filters) + ")";
+				return "(" + Joiner.on(") AND (").join(sortedFilters) + ")";
 			}
 		};
 	}
@@ -80,27 +142,80 @@ public final class Filters {
 	public static Filter or(Filter... filters) {
 		return or(Arrays.asList(filters));
 	}
-	public static Filter or(final Collection<Filter> filters) {
+	public static Filter or(Collection<Filter> filters) {
 		if (filters.isEmpty()) {
 			return all();
 		}
+		final List<Filter> sortedFilters = sortByCost(filters);
 		return new Filter() {
 			@Override
 			public boolean matches(Pride pride, Module module) throws IOException {
-				boolean matches = true;
-				for (Filter filter : filters) {
+				for (Filter filter : sortedFilters) {
 					if (filter.matches(pride, module)) {
 						return true;
 					}
-					matches = false;
 				}
-				return matches;
+				return false;
+			}
+
+			@Override
+			public List<Module> filter(FilterContext context, List<Module> modules) throws IOException {
+				// Each filter only needs to look at modules not matched by the cheaper filters
+				Set<Module> matching = Sets.newHashSet();
+				List<Module> remaining = modules;
+				for (Filter filter : sortedFilters) {
+					if (remaining.isEmpty()) {
+						break;
+					}
+					matching.addAll(filter.filter(context, remaining));
+					List<Module> unmatched = Lists.newArrayList();
+					for (Module module : remaining) {
+						if (!matching.contains(module)) {
+							unmatched.add(module);
+						}
+					}
+					remaining = unmatched;
+				}
+				List<Module> result = Lists.newArrayList();
+				for (Module module : modules) {
+					if (matching.contains(module)) {
+						result.add(module);
+					}
+				}
+				return result;
+			}
+
+			@Override
+			public FilterCost getCost() {
+				return getMaximumCost(sortedFilters);
 			}
 
 			@Override
 			public String toString() {
-				return "(" + Joiner.on(") OR (").join(filters) + ")";
+				return "(" + Joiner.on(") OR (").join(sortedFilters) + ")";
 			}
 		};
 	}
+
+	private static List<Filter> sortByCost(Collection<Filter> filters) {
+		List<Filter> sortedFilters = Lists.newArrayList(filters);
+		// The sort is stable, so filters of the same cost keep their order
+		Collections.sort(sortedFilters, new Comparator<Filter>() {
+			@Override
+			public int compare(Filter filter1, Filter filter2) {
+				return filter1.getCost().compareTo(filter2.getCost());
+			}
+		});
+		return sortedFilters;
+	}
+
+	private static FilterCost getMaximumCost(Collection<Filter> filters) {
+		FilterCost cost = FilterCost.CONSTANT;
+		for (Filter filter : filters) {
+			if (filter.getCost().compareTo(cost) > 0) {
+				cost = filter.getCost();
+			}
+		}
+		return cost;
+	}
 }
@@ -1,8 +1,10 @@
 package com.prezi.pride.filters;
 
+import com.google.common.collect.Lists;
 import com.prezi.pride.Module;
 import com.prezi.pride.Pride;
 
+import java.util.List;
 import java.util.regex.Pattern;
 
 public class NameMatcherFilter implements Filter {
@@ -17,6 +19,22 @@ public class NameMatcherFilter implements Filter {
 		return pattern.matcher(module.getName()).matches();
 	}
 
+	@Override
+	public List<Module> filter(FilterContext context, List<Module> modules) {
+		List<Module> result = Lists.newArrayList();
+		for (Module module : modules) {
+			if (matches(context.getPride(), module)) {
+				result.add(module);
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public FilterCost getCost() {
+		return FilterCost.MODULE;
+	}
+
 	@Override
 	public String toString() {
 		return "NAME = /" + pattern.pattern() + "/";
@@ -0,0 +1,215 @@
+package com.prezi.pride.internal;
+
+import com.google.common.collect.Maps;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A lock on a file that is respected both by other threads and by other processes.
+ *
+ * <p>File locks are held on behalf of the whole JVM, so threads of the same process share a single
+ * file lock: shared locks can be held by any number of threads at the same time, while an exclusive
+ * lock excludes every other thread. Locks are not bound to the thread that acquired them, and can be
+ * released by any thread. Other processes may hold shared locks at the same time.</p>
+ *
+ * <p>An exclusive lock can be turned into a shared one via {@link #downgrade()} without letting anybody
+ * else take the exclusive lock in between. To make that possible across processes, exclusive locks also
+ * hold a separate region of the file as a gate that others wanting an exclusive lock have to pass first.</p>
+ */
+public class InterProcessLock {
+	private static final Logger logger = LoggerFactory.getLogger(InterProcessLock.class);
+
+	private static final ConcurrentMap<File, LocalLock> LOCAL_LOCKS = Maps.newConcurrentMap();
+
+	// The lock itself is held on the body region; exclusive locks hold the gate region, too
+	private static final long GATE_POSITION = 0;
+	private static final long BODY_POSITION = 1;
+	private static final long BODY_SIZE = Long.MAX_VALUE - BODY_POSITION;
+
+	private final LocalLock localLock;
+	private boolean shared;
+	private boolean released;
+
+	private InterProcessLock(LocalLock localLock, boolean shared) {
+		this.localLock = localLock;
+		this.shared = shared;
+	}
+
+	/**
+	 * Acquires a lock on the given file, waiting as long as needed. The file is created if it doesn't exist.
+	 *
+	 * @param lockFile the file to lock.
+	 * @param shared   whether others can hold a shared lock on the file at the same time.
+	 * @return the lock, to be released via {@link #release()}.
+	 */
+	public static InterProcessLock lock(File lockFile, boolean shared) throws IOException {
+		LocalLock localLock = getLocalLock(lockFile);
+		localLock.acquire(shared, true);
+		return new InterProcessLock(localLock, shared);
+	}
+
+	/**
+	 * Acquires a lock on the given file if nobody else holds a conflicting lock on it.
+	 *
+	 * @return the lock, to be released via {@link #release()}, or {@code null} if the file is locked by others.
+	 */
+	public static InterProcessLock tryLock(File lockFile, boolean shared) throws IOException {
+		LocalLock localLock = getLocalLock(lockFile);
+		if (!localLock.acquire(shared, false)) {
+			return null;
+		}
+		return new InterProcessLock(localLock, shared);
+	}
+
+	/**
+	 * Turns an exclusive lock into a shared one. Nobody else can acquire the exclusive lock in the meantime.
+	 */
+	public synchronized void downgrade() throws IOException {
+		if (released) {
+			throw new IllegalStateException("Lock is already released");
+		}
+		if (shared) {
+			return;
+		}
+		localLock.downgrade();
+		shared = true;
+	}
+
+	public synchronized void release() throws IOException {
+		if (released) {
+			return;
+		}
+		released = true;
+		localLock.release(shared);
+	}
+
+	private static LocalLock getLocalLock(File lockFile) throws IOException {
+		File canonicalFile = lockFile.getCanonicalFile();
+		LocalLock lock = new LocalLock(canonicalFile);
+		LocalLock existingLock = LOCAL_LOCKS.putIfAbsent(canonicalFile, lock);
+		return existingLock != null ? existingLock : lock;
+	}
+
+	/**
+	 * The locks held on a file by this process.
+	 */
+	private static class LocalLock {
+		private final File lockFile;
+		private int sharedCount;
+		private boolean exclusive;
+		private RandomAccessFile file;
+		private FileLock gateLock;
+		private FileLock bodyLock;
+
+		public LocalLock(File lockFile) {
+			this.lockFile = lockFile;
+		}
+
+		public synchronized boolean acquire(boolean shared, boolean wait) throws IOException {
+			while (exclusive || (!shared && sharedCount > 0)) {
+				if (!wait) {
+					return false;
+				}
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					throw new IOException("Interrupted", e);
+				}
+			}
+
+			// Nobody in this process holds the lock, or only shared locks are held and another one is wanted
+			if (bodyLock == null) {
+				RandomAccessFile newFile = null;
+				try {
+					FileUtils.forceMkdir(lockFile.getParentFile());
+					newFile = new RandomAccessFile(lockFile, "rw");
+					FileChannel channel = newFile.getChannel();
+					FileLock newGateLock = null;
+					if (!shared) {
+						newGateLock = lockRegion(channel, GATE_POSITION, 1, false, wait);
+						if (newGateLock == null) {
+							newFile.close();
+							return false;
+						}
+					}
+					FileLock newBodyLock = lockRegion(channel, BODY_POSITION, BODY_SIZE, shared, wait);
+					if (newBodyLock == null) {
+						newFile.close();
+						return false;
+					}
+					file = newFile;
+					gateLock = newGateLock;
+					bodyLock = newBodyLock;
+				} catch (IOException e) {
+					IOUtils.closeQuietly(newFile);
+					throw e;
+				} catch (RuntimeException e) {
+					IOUtils.closeQuietly(newFile);
+					throw e;
+				}
+			}
+
+			if (shared) {
+				sharedCount++;
+			} else {
+				exclusive = true;
+			}
+			return true;
+		}
+
+		private FileLock lockRegion(FileChannel channel, long position, long size, boolean shared, boolean wait) throws IOException {
+			FileLock lock = channel.tryLock(position, size, shared);
+			if (lock == null && wait) {
+				logger.info("Waiting for another process to release {}", lockFile);
+				lock = channel.lock(position, size, shared);
+			}
+			return lock;
+		}
+
+		public synchronized void downgrade() throws IOException {
+			// Other processes need the gate to lock the body exclusively, so nobody can get in between
+			FileChannel channel = file.getChannel();
+			bodyLock.release();
+			bodyLock = channel.lock(BODY_POSITION, BODY_SIZE, true);
+			try {
+				gateLock.release();
+			} finally {
+				gateLock = null;
+				exclusive = false;
+				sharedCount++;
+				notifyAll();
+			}
+		}
+
+		public synchronized void release(boolean shared) throws IOException {
+			if (shared) {
+				sharedCount--;
+			} else {
+				exclusive = false;
+			}
+			if (sharedCount == 0 && !exclusive) {
+				try {
+					bodyLock.release();
+					if (gateLock != null) {
+						gateLock.release();
+					}
+				} finally {
+					IOUtils.closeQuietly(file);
+					gateLock = null;
+					bodyLock = null;
+					file = null;
+					notifyAll();
+				}
+			}
+		}
+	}
+}
@@ -26,8 +26,12 @@ public abstract class LoggedProgressAction<T> implements ProgressAction<T> {
 	}
 
 	@Override
-	public void execute(Pride pride, T item, int index, int count) throws IOException {
+	public void started(Pride pride, T item, int index, int count) {
 		logger.info("[{}/{}] {}{}{}", index + 1, count, logPrefix, namer.getName(item), logSuffix);
+	}
+
+	@Override
+	public void execute(Pride pride, T item, int index, int count) throws IOException {
 		execute(pride, item);
 	}
 
@@ -0,0 +1,198 @@
+package com.prezi.pride.internal;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.prezi.pride.PrideException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executes a task for each item of a collection using at most a given number of threads.
+ *
+ * <p>Tasks are started in the order of the items: the {@link Task#started(Object, int, int)}
+ * callback of an item is always called after the callback of the previous item, so progress
+ * logged there stays ordered. The first failure cancels every task that has not been started
+ * yet, and interrupts the ones still running. Once all running tasks have stopped, the failure
+ * is rethrown. If more than one task failed, the failures are reported together in a single
+ * {@link PrideException}.</p>
+ *
+ * <p>With a single job the tasks are executed one after the other on the calling thread.</p>
+ */
+public class ParallelExecutor {
+	private static final Logger logger = LoggerFactory.getLogger(ParallelExecutor.class);
+
+	private final int jobs;
+
+	public ParallelExecutor(int jobs) {
+		this.jobs = Math.max(1, jobs);
+	}
+
+	public int getJobs() {
+		return jobs;
+	}
+
+	public <T> void execute(Collection<? extends T> items, final Task<? super T> task) throws IOException {
+		final List<T> itemList = Lists.newArrayList(items);
+		final int count = itemList.size();
+		int threads = Math.min(jobs, count);
+		if (threads <= 1) {
+			for (int index = 0; index < count; index++) {
+				T item = itemList.get(index);
+				task.started(item, index, count);
+				task.execute(item, index, count);
+			}
+			return;
+		}
+
+		logger.debug("Executing {} tasks using {} threads", count, threads);
+		final ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+				.setNameFormat("pride-worker-%d")
+				.setDaemon(true)
+				.build());
+		final Sequencer sequencer = new Sequencer();
+		final List<Failure> failures = Collections.synchronizedList(Lists.<Failure>newArrayList());
+		for (int index = 0; index < count; index++) {
+			final int itemIndex = index;
+			final T item = itemList.get(index);
+			Runnable runnable = new Runnable() {
+				@Override
+				public void run() {
+					try {
+						if (!sequencer.awaitTurn(itemIndex)) {
+							return;
+						}
+						try {
+							task.started(item, itemIndex, count);
+						} finally {
+							sequencer.advance();
+						}
+						task.execute(item, itemIndex, count);
+					} catch (Throwable t) {
+						boolean firstFailure = sequencer.cancel();
+						if (firstFailure || !isInterruption(t)) {
+							failures.add(new Failure(item, t));
+						} else {
+							logger.debug("Task for {} stopped after cancellation", item, t);
+						}
+						if (firstFailure) {
+							// Stop queued tasks, and interrupt running ones
+							executor.shutdownNow();
+						}
+					}
+				}
+			};
+			try {
+				executor.execute(runnable);
+			} catch (RejectedExecutionException e) {
+				// An earlier task has already failed, and stopped the executor
+				break;
+			}
+		}
+		executor.shutdown();
+		try {
+			while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+				// Keep waiting
+			}
+		} catch (InterruptedException e) {
+			sequencer.cancel();
+			executor.shutdownNow();
+			throw new IOException("Interrupted", e);
+		}
+
+		rethrowFailures(failures);
+	}
+
+	private static boolean isInterruption(Throwable t) {
+		for (Throwable cause : Throwables.getCausalChain(t)) {
+			if (cause instanceof InterruptedException || cause instanceof InterruptedIOException) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static void rethrowFailures(List<Failure> failures) throws IOException {
+		if (failures.isEmpty()) {
+			return;
+		}
+		if (failures.size() == 1) {
+			Throwable cause = failures.get(0).cause;
+			Throwables.propagateIfPossible(cause, IOException.class);
+			throw new PrideException(cause);
+		}
+		for (Failure failure : failures) {
+			logger.debug("Failure while processing {}", failure.item, failure.cause);
+		}
+		throw new PrideException("Failed to process " + failures.size() + " items:\n\n\t* "
+				+ Joiner.on("\n\t* ").join(failures));
+	}
+
+	public interface Task<T> {
+		/**
+		 * Called before {@link #execute(Object, int, int)} for each item, strictly in the order of the items.
+		 * This should not block, as the next item cannot start until this returns.
+		 */
+		void started(T item, int index, int count);
+
+		void execute(T item, int index, int count) throws IOException;
+	}
+
+	/**
+	 * Makes sure tasks are started in order, and keeps track of cancellation.
+	 */
+	private static class Sequencer {
+		private int next;
+		private boolean cancelled;
+
+		public synchronized boolean awaitTurn(int index) throws InterruptedException {
+			while (!cancelled && next != index) {
+				wait();
+			}
+			return !cancelled;
+		}
+
+		public synchronized void advance() {
+			next++;
+			notifyAll();
+		}
+
+		/**
+		 * Cancels the execution of all further tasks.
+		 *
+		 * @return {@code true} if the execution was not cancelled before.
+		 */
+		public synchronized boolean cancel() {
+			boolean wasCancelled = cancelled;
+			cancelled = true;
+			notifyAll();
+			return !wasCancelled;
+		}
+	}
+
+	private static class Failure {
+		private final Object item;
+		private final Throwable cause;
+
+		public Failure(Object item, Throwable cause) {
+			this.item = item;
+			this.cause = cause;
+		}
+
+		@Override
+		public String toString() {
+			return item + ": " + (cause.getMessage() != null ? cause.getMessage() : cause.toString());
+		}
+	}
+}
@@ -5,5 +5,11 @@ import com.prezi.pride.Pride;
 import java.io.IOException;
 
 public interface ProgressAction<T> {
+	/**
+	 * Called before {@link #execute(Pride, Object, int, int)} for each item, in the order of the items,
+	 * even when the items are processed in parallel.
+	 */
+	void started(Pride pride, T item, int index, int count);
+
 	void execute(Pride pride, T item, int index, int count) throws IOException;
 }
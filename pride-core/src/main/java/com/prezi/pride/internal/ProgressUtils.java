@@ -1,16 +1,52 @@
 package com.prezi.pride.internal;
 
 import com.prezi.pride.Pride;
+import org.apache.commons.configuration.Configuration;
 
 import java.io.IOException;
 import java.util.Collection;
 
 public class ProgressUtils {
+	public static final String PRIDE_JOBS = "pride.jobs";
+	public static final String STATUS_JOBS = "vcs.status.jobs";
+	public static final String SUBMODULE_JOBS = "vcs.submodule.jobs";
+
+	/**
+	 * Returns the number of modules to process in parallel according to {@value #PRIDE_JOBS}.
+	 */
+	public static int getJobs(Configuration configuration) {
+		return Math.max(1, configuration.getInt(PRIDE_JOBS, 1));
+	}
+
+	/**
+	 * Returns the number of modules to query the VCS status of in parallel according to {@value #STATUS_JOBS}.
+	 */
+	public static int getStatusJobs(Configuration configuration) {
+		return Math.max(1, configuration.getInt(STATUS_JOBS, 8));
+	}
+
+	/**
+	 * Returns the number of sub-repositories of a module to check out in parallel according to {@value #SUBMODULE_JOBS}.
+	 */
+	public static int getSubmoduleJobs(Configuration configuration) {
+		return Math.max(1, configuration.getInt(SUBMODULE_JOBS, 8));
+	}
+
 	public static <T> void execute(Pride pride, Collection<? extends T> items, ProgressAction<? super T> action) throws IOException {
-		int index = 0;
-		for (T item : items) {
-			action.execute(pride, item, index, items.size());
-			index++;
-		}
+		execute(pride, items, action, getJobs(pride.getConfiguration()));
+	}
+
+	public static <T> void execute(final Pride pride, Collection<? extends T> items, final ProgressAction<? super T> action, int jobs) throws IOException {
+		new ParallelExecutor(jobs).execute(items, new ParallelExecutor.Task<T>() {
+			@Override
+			public void started(T item, int index, int count) {
+				action.started(pride, item, index, count);
+			}
+
+			@Override
+			public void execute(T item, int index, int count) throws IOException {
+				action.execute(pride, item, index, count);
+			}
+		});
 	}
 }
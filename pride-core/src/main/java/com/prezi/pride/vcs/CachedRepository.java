@@ -0,0 +1,92 @@
+package com.prezi.pride.vcs;
+
+import java.io.File;
+import java.util.Collection;
+
+/**
+ * A mirror of a repository in the {@link RepoCache}.
+ */
+public class CachedRepository {
+	private final String name;
+	private final String url;
+	private final File directory;
+	private final String type;
+	private final long lastUsed;
+	private final long lastRefreshed;
+	private final long size;
+	private final Collection<File> referencingModules;
+
+	CachedRepository(String name, String url, File directory, String type, long lastUsed, long lastRefreshed, long size, Collection<File> referencingModules) {
+		this.name = name;
+		this.url = url;
+		this.directory = directory;
+		this.type = type;
+		this.lastUsed = lastUsed;
+		this.lastRefreshed = lastRefreshed;
+		this.size = size;
+		this.referencingModules = referencingModules;
+	}
+
+	/**
+	 * Returns the name of the mirror in the cache directory.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns the normalized URL of the mirrored repository.
+	 */
+	public String getUrl() {
+		return url;
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Returns the VCS type of the mirror.
+	 */
+	public String getType() {
+		return type;
+	}
+
+	/**
+	 * Returns when a module was last cloned from the mirror, or <code>0</code> if not known.
+	 */
+	public long getLastUsed() {
+		return lastUsed;
+	}
+
+	/**
+	 * Returns when the mirror was last created or updated, or <code>0</code> if not known.
+	 */
+	public long getLastRefreshed() {
+		return lastRefreshed;
+	}
+
+	/**
+	 * Returns the disk space used by the mirror in bytes.
+	 */
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * Returns {@code true} if modules borrowing objects from the mirror still exist.
+	 */
+	public boolean isInUse() {
+		for (File module : referencingModules) {
+			if (module.isDirectory()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		return url;
+	}
+}
@@ -0,0 +1,178 @@
+package com.prezi.pride.vcs;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.apache.commons.configuration.Configuration;
+
+import java.util.List;
+
+/**
+ * How much of a repository to clone for a module: how much history, which objects, and which paths
+ * to check out.
+ *
+ * <p>Options can be set for the whole pride in {@value #REPO_CLONE_DEPTH} and {@value #REPO_CLONE_FILTER},
+ * and for each module separately. Options not set for a module are taken from the pride. Sparse paths
+ * only make sense for a given module, and can only be set per module.</p>
+ */
+public final class CloneOptions {
+	public static final String REPO_CLONE_DEPTH = "repo.clone.depth";
+	public static final String REPO_CLONE_FILTER = "repo.clone.filter";
+
+	/**
+	 * Clone the full history, and check out every path.
+	 */
+	public static final CloneOptions FULL = new CloneOptions(0, "", ImmutableList.<String>of());
+
+	/**
+	 * Nothing set, use the options of the pride.
+	 */
+	public static final CloneOptions UNSET = new CloneOptions(null, null, null);
+
+	private final Integer depth;
+	private final String filter;
+	private final List<String> sparsePaths;
+
+	/**
+	 * Creates clone options.
+	 *
+	 * @param depth  The number of commits to clone, <code>0</code> for full history, or <code>null</code> if not set.
+	 * @param filter The partial clone filter (like <code>blob:none</code>), an empty string for no filter,
+	 *               or <code>null</code> if not set.
+	 */
+	public CloneOptions(Integer depth, String filter) {
+		this(depth, filter, null);
+	}
+
+	/**
+	 * Creates clone options.
+	 *
+	 * @param depth       The number of commits to clone, <code>0</code> for full history, or <code>null</code> if not set.
+	 * @param filter      The partial clone filter (like <code>blob:none</code>), an empty string for no filter,
+	 *                    or <code>null</code> if not set.
+	 * @param sparsePaths The directories to check out, an empty list to check out everything,
+	 *                    or <code>null</code> if not set.
+	 */
+	public CloneOptions(Integer depth, String filter, List<String> sparsePaths) {
+		this.depth = depth;
+		this.filter = filter;
+		this.sparsePaths = sparsePaths != null ? ImmutableList.copyOf(sparsePaths) : null;
+	}
+
+	/**
+	 * Returns the options set in {@value #REPO_CLONE_DEPTH} and {@value #REPO_CLONE_FILTER}.
+	 */
+	public static CloneOptions fromConfiguration(Configuration configuration) {
+		return new CloneOptions(configuration.getInt(REPO_CLONE_DEPTH, 0), configuration.getString(REPO_CLONE_FILTER, ""));
+	}
+
+	/**
+	 * Loads options of a module stored with {@link #save(Configuration, String)}.
+	 */
+	public static CloneOptions load(Configuration configuration, String prefix) {
+		Integer depth = configuration.containsKey(prefix + ".depth") ? configuration.getInt(prefix + ".depth") : null;
+		List<String> sparsePaths = null;
+		if (configuration.containsKey(prefix + ".sparse")) {
+			// An empty value turns sparse checkout off
+			sparsePaths = Lists.newArrayList();
+			for (String sparsePath : configuration.getStringArray(prefix + ".sparse")) {
+				if (!sparsePath.trim().isEmpty()) {
+					sparsePaths.add(sparsePath.trim());
+				}
+			}
+		}
+		return new CloneOptions(depth, configuration.getString(prefix + ".filter", null), sparsePaths);
+	}
+
+	/**
+	 * Stores the options of a module, leaving out the ones not set.
+	 */
+	public void save(Configuration configuration, String prefix) {
+		if (depth != null) {
+			configuration.setProperty(prefix + ".depth", depth);
+		}
+		if (filter != null) {
+			configuration.setProperty(prefix + ".filter", filter);
+		}
+		if (sparsePaths != null) {
+			configuration.setProperty(prefix + ".sparse", sparsePaths.isEmpty() ? "" : sparsePaths);
+		}
+	}
+
+	/**
+	 * Returns these options, with the options not set taken from the given defaults.
+	 */
+	public CloneOptions withDefaults(CloneOptions defaults) {
+		return new CloneOptions(depth != null ? depth : defaults.depth,
+				filter != null ? filter : defaults.filter,
+				sparsePaths != null ? sparsePaths : defaults.sparsePaths);
+	}
+
+	/**
+	 * Returns these options with the full history, keeping the sparse paths.
+	 */
+	public CloneOptions withFullHistory() {
+		return new CloneOptions(0, "", sparsePaths);
+	}
+
+	/**
+	 * Returns the number of commits to clone, or <code>0</code> to clone the full history.
+	 */
+	public int getDepth() {
+		return depth != null ? Math.max(0, depth) : 0;
+	}
+
+	/**
+	 * Returns the partial clone filter, or <code>null</code> if every object should be cloned.
+	 */
+	public String getFilter() {
+		return Strings.emptyToNull(filter);
+	}
+
+	/**
+	 * Returns the directories to check out, or an empty list if every path should be checked out.
+	 */
+	public List<String> getSparsePaths() {
+		return sparsePaths != null ? sparsePaths : ImmutableList.<String>of();
+	}
+
+	/**
+	 * Returns whether the paths to check out are set, even if to an empty list to check out everything.
+	 */
+	public boolean isSparsePathsSet() {
+		return sparsePaths != null;
+	}
+
+	/**
+	 * Returns whether the full history is to be cloned.
+	 */
+	public boolean hasFullHistory() {
+		return getDepth() == 0 && getFilter() == null;
+	}
+
+	/**
+	 * Returns whether the full history is to be cloned, and every path checked out.
+	 */
+	public boolean isFull() {
+		return hasFullHistory() && getSparsePaths().isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		if (isFull()) {
+			return "full";
+		}
+		StringBuilder result = new StringBuilder();
+		if (getDepth() > 0) {
+			result.append("depth ").append(getDepth());
+		}
+		if (getFilter() != null) {
+			result.append(result.length() > 0 ? ", " : "").append("filter ").append(getFilter());
+		}
+		if (!getSparsePaths().isEmpty()) {
+			result.append(result.length() > 0 ? ", " : "").append("sparse ").append(Joiner.on(", ").join(getSparsePaths()));
+		}
+		return result.toString();
+	}
+}
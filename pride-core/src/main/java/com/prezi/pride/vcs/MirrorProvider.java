@@ -0,0 +1,22 @@
+package com.prezi.pride.vcs;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Provides up-to-date local mirrors of remote repositories, like the ones in {@link RepoCache}.
+ *
+ * <p>Mirrors returned are kept from being updated or removed until the provider is closed, so that
+ * they can be read in the meantime.</p>
+ */
+public interface MirrorProvider extends Closeable {
+	/**
+	 * Returns the mirror of a repository, creating or updating it if necessary.
+	 *
+	 * @param repositoryUrl The URL of the remote repository.
+	 * @return the directory of the mirror.
+	 * @throws java.io.IOException If the repository cannot be mirrored.
+	 */
+	File getMirror(String repositoryUrl) throws IOException;
+}
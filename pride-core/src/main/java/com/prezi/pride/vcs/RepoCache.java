@@ -1,56 +1,553 @@
 package com.prezi.pride.vcs;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.prezi.pride.internal.InterProcessLock;
 import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.Writer;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Mirrors of repositories shared by all prides of the user.
+ *
+ * <p>The cache can be used by multiple Pride processes at the same time. Each mirror has its own
+ * lock file next to it: it is locked exclusively while the mirror is created or updated, and shared
+ * while modules are cloned from it. A second lock file is held shared for as long as the mirror is
+ * used, so that it cannot be removed between updating it and cloning from it. The mapping from
+ * repository URLs to mirrors is replaced atomically, so it can be read without locking; it is only
+ * locked while adding a new entry.</p>
+ *
+ * <p>Mirrors that have been created or updated within the time-to-live set in {@value #REPO_CACHE_TTL}
+ * are used as they are, without contacting the remote repository again.</p>
+ *
+ * <p>The cache records when each mirror was last used, and which modules borrow objects from it
+ * (see {@link RepoCacheMode#REFERENCE}). When the cache grows over its maximum size set in
+ * {@value #REPO_CACHE_MAX_SIZE}, {@link #prune(long)} removes the least recently used mirrors
+ * that no existing module borrows objects from.</p>
+ *
+ * <p>In {@link RepoCacheMode#WORKTREE} mode modules are checked out from a repository shared by all
+ * prides, stored next to the mirror. Checking out a working tree changes the shared repository, so it
+ * happens while holding the exclusive lock of the mirror.</p>
+ *
+ * <p>Sub-repositories of modules checked out through the cache are cloned from mirrors of their own.</p>
+ *
+ * <p>Mirrors can be exported to a directory with {@link #export(CachedRepository, VcsSupport, File)}, and
+ * imported into another cache with {@link #importRepository(CachedRepository, VcsSupport)} without network
+ * access, e.g. to prepare the cache of new build agents.</p>
+ */
 public class RepoCache {
 
+	public static final String REPO_CACHE_TTL = "repo.cache.ttl";
+	public static final String REPO_CACHE_MAX_SIZE = "repo.cache.max_size";
+
 	private static final Logger log = LoggerFactory.getLogger(RepoCache.class);
 	private static final String CACHE_MAPPING_FILE = "mapping";
+	private static final String LOCK_SUFFIX = ".lock";
+	private static final String USE_LOCK_SUFFIX = ".use.lock";
+	private static final String STATE_SUFFIX = ".state";
+	private static final String SHARED_SUFFIX = ".shared";
+	private static final String DATA_SUFFIX = ".data";
+	private static final String EXPORT_SUFFIX = ".bundle";
+	private static final String EXPORT_MANIFEST_FILE = "manifest";
+	private static final String TYPE = "type";
+	private static final String REFRESHED = "refreshed";
+	private static final String USED = "used";
+	private static final String REFERENCED_BY = "referenced_by.";
 	private final File cacheDirectory;
 	private final File mappingFile;
-	private final Properties cacheMapping;
+	private final long timeToLive;
 
-	public RepoCache(File cacheDirectory) throws IOException {
+	/**
+	 * Creates a repo cache.
+	 *
+	 * @param cacheDirectory The directory holding the mirrors.
+	 * @param timeToLive     How long a mirror can be used without updating it, in milliseconds.
+	 */
+	public RepoCache(File cacheDirectory, long timeToLive) throws IOException {
 		this.cacheDirectory = cacheDirectory;
 		this.mappingFile = new File(cacheDirectory, CACHE_MAPPING_FILE);
-		this.cacheMapping = loadCacheMapping(mappingFile);
+		this.timeToLive = timeToLive;
+	}
+
+	/**
+	 * Returns the configured time-to-live of mirrors in milliseconds, or <code>0</code> if mirrors should always be updated.
+	 */
+	public static long getTimeToLive(Configuration configuration) {
+		int timeToLive = configuration.getInt(REPO_CACHE_TTL, 300);
+		return timeToLive > 0 ? TimeUnit.SECONDS.toMillis(timeToLive) : 0;
+	}
+
+	/**
+	 * Returns the configured maximum size of the cache in bytes, or <code>0</code> if the size is not limited.
+	 */
+	public static long getMaximumSize(Configuration configuration) {
+		long maximumSize = configuration.getLong(REPO_CACHE_MAX_SIZE, 0);
+		return maximumSize > 0 ? maximumSize * 1024 * 1024 : 0;
 	}
 
-	public void checkoutThroughCache(VcsSupport vcsSupport, final String repositoryUrl, File targetDirectory, String branch, boolean recursive) throws IOException {
+	public void checkoutThroughCache(Vcs vcs, final String repositoryUrl, File targetDirectory, String branch, boolean recursive, RepoCacheMode mode, CloneOptions options) throws IOException {
+		VcsSupport vcsSupport = vcs.getSupport();
 		String normalizedUrl = vcsSupport.normalizeRepositoryUrl(repositoryUrl);
+		String moduleInCacheName = getModuleInCacheName(normalizedUrl);
+		File moduleInCache = new File(cacheDirectory, moduleInCacheName);
+		File stateFile = new File(cacheDirectory, moduleInCacheName + STATE_SUFFIX);
+
+		// Only one process can create or update a mirror at a time
+		MirrorLock lock = lockMirror(moduleInCacheName, false);
+		try {
+			Properties state = loadProperties(stateFile);
+			updateMirrorIfNeeded(vcs, repositoryUrl, moduleInCacheName, state);
+			if (mode == RepoCacheMode.REFERENCE || mode == RepoCacheMode.WORKTREE) {
+				String modulePath = targetDirectory.getAbsolutePath();
+				state.setProperty(REFERENCED_BY + DigestUtils.sha1Hex(modulePath).substring(0, 7), modulePath);
+			}
+			saveProperties(state, stateFile);
+
+			if (mode == RepoCacheMode.WORKTREE) {
+				File sharedRepository = new File(cacheDirectory, moduleInCacheName + SHARED_SUFFIX);
+				vcsSupport.checkoutWorktree(moduleInCache, sharedRepository, targetDirectory, branch, false, options);
+			} else {
+				// Other processes can clone the same mirror at the same time, but cannot update it meanwhile
+				lock.downgrade();
+				vcsSupport.checkoutFromMirror(moduleInCache, targetDirectory, branch, false, mode, options);
+			}
+		} finally {
+			lock.release();
+		}
+		vcsSupport.activate(repositoryUrl, targetDirectory);
+
+		// Sub-repositories are cloned from their own mirrors, once URLs relative to the remote can be resolved
+		if (recursive) {
+			MirrorProvider mirrors = getMirrorProvider(vcs);
+			try {
+				vcsSupport.updateSubmodules(targetDirectory, mirrors);
+			} finally {
+				mirrors.close();
+			}
+		}
+	}
+
+	/**
+	 * Returns a provider of mirrors in this cache, e.g. to clone sub-repositories from.
+	 * Mirrors are locked against updates until the provider is closed.
+	 */
+	public MirrorProvider getMirrorProvider(final Vcs vcs) {
+		return new MirrorProvider() {
+			// The same repository can be a sub-repository at multiple levels, but it is only locked once
+			private final Map<String, File> mirrors = Maps.newHashMap();
+			private final List<MirrorLock> locks = Lists.newArrayList();
+
+			@Override
+			public File getMirror(String repositoryUrl) throws IOException {
+				String moduleInCacheName = getModuleInCacheName(vcs.getSupport().normalizeRepositoryUrl(repositoryUrl));
+				synchronized (this) {
+					File mirror = mirrors.get(moduleInCacheName);
+					if (mirror != null) {
+						return mirror;
+					}
+				}
+				MirrorLock lock = lockMirrorForProvider(vcs, repositoryUrl, moduleInCacheName);
+				synchronized (this) {
+					locks.add(lock);
+					File mirror = new File(cacheDirectory, moduleInCacheName);
+					mirrors.put(moduleInCacheName, mirror);
+					return mirror;
+				}
+			}
 
-		String moduleInCacheName = cacheMapping.getProperty(normalizedUrl);
-		boolean newName = moduleInCacheName == null;
+			@Override
+			public synchronized void close() throws IOException {
+				for (MirrorLock lock : locks) {
+					lock.release();
+				}
+				locks.clear();
+				mirrors.clear();
+			}
+		};
+	}
+
+	/**
+	 * Creates or updates the mirror if needed, and returns a shared lock on it.
+	 *
+	 * <p>Providers keep the mirrors they returned locked, so this never waits for an exclusive lock: another
+	 * provider asking for the same mirrors in the opposite order would wait for this one, and vice versa.
+	 * If others hold the mirror, it is used as it is once they are done creating or updating it.</p>
+	 */
+	private MirrorLock lockMirrorForProvider(Vcs vcs, String repositoryUrl, String moduleInCacheName) throws IOException {
+		File stateFile = new File(cacheDirectory, moduleInCacheName + STATE_SUFFIX);
+		while (true) {
+			MirrorLock lock = tryLockMirror(moduleInCacheName, false);
+			if (lock != null) {
+				boolean locked = false;
+				try {
+					Properties state = loadProperties(stateFile);
+					updateMirrorIfNeeded(vcs, repositoryUrl, moduleInCacheName, state);
+					saveProperties(state, stateFile);
+					lock.downgrade();
+					locked = true;
+					return lock;
+				} finally {
+					if (!locked) {
+						lock.release();
+					}
+				}
+			}
 
-		if (newName) {
-			moduleInCacheName = sanitize(normalizedUrl);
+			// Shared locks only have to wait for whoever is creating or updating the mirror
+			lock = lockMirror(moduleInCacheName, true);
+			if (new File(cacheDirectory, moduleInCacheName).isDirectory()) {
+				log.debug("Using cached repository in {} without updating it, as others are using it", moduleInCacheName);
+				return lock;
+			}
+			// Whoever held the mirror could not create it, so try again
+			lock.release();
 		}
+	}
 
+	/**
+	 * Creates the mirror, or updates it if it is older than the time-to-live, and records its use in the state.
+	 * Must be called while holding the exclusive lock of the mirror.
+	 */
+	private void updateMirrorIfNeeded(Vcs vcs, String repositoryUrl, String moduleInCacheName, Properties state) throws IOException {
+		VcsSupport vcsSupport = vcs.getSupport();
 		File moduleInCache = new File(cacheDirectory, moduleInCacheName);
+		long lastRefreshed = parseTime(state.getProperty(REFRESHED));
+		long age = System.currentTimeMillis() - lastRefreshed;
 		if (!moduleInCache.exists()) {
 			log.info("Caching repository " + repositoryUrl + " as " + moduleInCacheName);
-			vcsSupport.checkout(repositoryUrl, moduleInCache, null, false, true);
+			// Clone next to the final location, so that an interrupted clone is never mistaken for a mirror
+			File incompleteModuleInCache = new File(cacheDirectory, moduleInCacheName + ".incomplete");
+			FileUtils.deleteDirectory(incompleteModuleInCache);
+			vcsSupport.checkout(repositoryUrl, incompleteModuleInCache, null, false, true, CloneOptions.FULL);
+			if (!incompleteModuleInCache.renameTo(moduleInCache)) {
+				throw new IOException("Could not move " + incompleteModuleInCache + " to " + moduleInCache);
+			}
+			state.setProperty(REFRESHED, String.valueOf(System.currentTimeMillis()));
+		} else if (age >= 0 && age < timeToLive) {
+			log.info("Using cached repository in " + moduleInCacheName + " updated " + TimeUnit.MILLISECONDS.toSeconds(age) + " seconds ago");
 		} else {
 			log.info("Updating cached repository in " + moduleInCacheName);
 			vcsSupport.update(moduleInCache, null, false, true);
+			state.setProperty(REFRESHED, String.valueOf(System.currentTimeMillis()));
 		}
+		state.setProperty(TYPE, vcs.getType());
+		state.setProperty(USED, String.valueOf(System.currentTimeMillis()));
+	}
 
-		vcsSupport.checkout(moduleInCache.getAbsolutePath(), targetDirectory, branch, recursive, false);
-		vcsSupport.activate(repositoryUrl, targetDirectory);
+	/**
+	 * Returns the directory to keep data derived from the contents of a cached repository in, like Gradle
+	 * project models, or {@code null} if the repository has no mirror in the cache. The directory is removed
+	 * together with the mirror.
+	 *
+	 * @param normalizedUrl The URL of the repository, as returned by {@link VcsSupport#normalizeRepositoryUrl(String)}.
+	 */
+	public File getDataDirectory(String normalizedUrl) throws IOException {
+		String name = loadProperties(mappingFile).getProperty(normalizedUrl);
+		if (name == null || !new File(cacheDirectory, name).isDirectory()) {
+			return null;
+		}
+		return new File(cacheDirectory, name + DATA_SUFFIX);
+	}
 
-		if (newName) {
-			cacheMapping.put(normalizedUrl, moduleInCacheName);
-			saveCacheMapping();
+	/**
+	 * Returns the mirrors in the cache.
+	 */
+	public List<CachedRepository> getRepositories() throws IOException {
+		List<CachedRepository> repositories = Lists.newArrayList();
+		for (Map.Entry<Object, Object> entry : loadProperties(mappingFile).entrySet()) {
+			String url = (String) entry.getKey();
+			String name = (String) entry.getValue();
+			File directory = new File(cacheDirectory, name);
+			if (!directory.isDirectory()) {
+				continue;
+			}
+			Properties state = loadProperties(new File(cacheDirectory, name + STATE_SUFFIX));
+			List<File> referencingModules = Lists.newArrayList();
+			for (String key : state.stringPropertyNames()) {
+				if (key.startsWith(REFERENCED_BY)) {
+					referencingModules.add(new File(state.getProperty(key)));
+				}
+			}
+			// Only Git supported mirrors before the type was recorded
+			String type = state.getProperty(TYPE, "git");
+			long size = sizeOf(directory)
+					+ sizeOf(new File(cacheDirectory, name + SHARED_SUFFIX))
+					+ sizeOf(new File(cacheDirectory, name + DATA_SUFFIX));
+			repositories.add(new CachedRepository(name, url, directory, type,
+					parseTime(state.getProperty(USED)), parseTime(state.getProperty(REFRESHED)),
+					size, referencingModules));
+		}
+		Collections.sort(repositories, new Comparator<CachedRepository>() {
+			@Override
+			public int compare(CachedRepository repository1, CachedRepository repository2) {
+				return repository1.getUrl().compareTo(repository2.getUrl());
+			}
+		});
+		return repositories;
+	}
+
+	/**
+	 * Updates a mirror from its remote repository, regardless of when it was last updated.
+	 */
+	public void refresh(CachedRepository repository, VcsSupport vcsSupport) throws IOException {
+		File stateFile = new File(cacheDirectory, repository.getName() + STATE_SUFFIX);
+		InterProcessLock lock = InterProcessLock.lock(new File(cacheDirectory, repository.getName() + LOCK_SUFFIX), false);
+		try {
+			// The mirror might have been removed since it was listed
+			if (!repository.getDirectory().isDirectory()) {
+				return;
+			}
+			vcsSupport.update(repository.getDirectory(), null, false, true);
+			Properties state = loadProperties(stateFile);
+			state.setProperty(REFRESHED, String.valueOf(System.currentTimeMillis()));
+			saveProperties(state, stateFile);
+		} finally {
+			lock.release();
+		}
+	}
+
+	/**
+	 * Writes a mirror into the export directory, and records it in the manifest of the directory,
+	 * to be imported into another cache later.
+	 *
+	 * @return {@code false} if there was nothing to export.
+	 */
+	public boolean export(CachedRepository repository, VcsSupport vcsSupport, File exportDirectory) throws IOException {
+		File exportFile = new File(exportDirectory, repository.getName() + EXPORT_SUFFIX);
+		File incompleteExportFile = new File(exportDirectory, repository.getName() + EXPORT_SUFFIX + ".incomplete");
+		FileUtils.deleteQuietly(incompleteExportFile);
+		String remoteUrl;
+		// Exporting only reads the mirror, but it must not be updated meanwhile
+		InterProcessLock lock = InterProcessLock.lock(new File(cacheDirectory, repository.getName() + LOCK_SUFFIX), true);
+		try {
+			if (!repository.getDirectory().isDirectory() || !vcsSupport.exportMirror(repository.getDirectory(), incompleteExportFile)) {
+				return false;
+			}
+			// The URL the mirror was cloned from, as normalized URLs might not work as remotes
+			remoteUrl = vcsSupport.getRepositoryUrl(repository.getDirectory());
+		} finally {
+			lock.release();
+		}
+		FileUtils.deleteQuietly(exportFile);
+		if (!incompleteExportFile.renameTo(exportFile)) {
+			throw new IOException("Could not move " + incompleteExportFile + " to " + exportFile);
+		}
+
+		File manifestFile = new File(exportDirectory, EXPORT_MANIFEST_FILE);
+		lock = InterProcessLock.lock(new File(exportDirectory, EXPORT_MANIFEST_FILE + LOCK_SUFFIX), false);
+		try {
+			Properties manifest = loadProperties(manifestFile);
+			manifest.setProperty(repository.getName() + ".url", remoteUrl != null ? remoteUrl : repository.getUrl());
+			manifest.setProperty(repository.getName() + ".type", repository.getType());
+			manifest.setProperty(repository.getName() + ".refreshed", String.valueOf(repository.getLastRefreshed()));
+			saveProperties(manifest, manifestFile);
+		} finally {
+			lock.release();
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the mirrors exported into a directory by {@link #export(CachedRepository, VcsSupport, File)}.
+	 * The URL of each returned repository is the URL of its remote, and its directory is the exported file.
+	 * Mirrors whose exported file is missing are skipped.
+	 */
+	public static List<CachedRepository> loadExportManifest(File exportDirectory) throws IOException {
+		File manifestFile = new File(exportDirectory, EXPORT_MANIFEST_FILE);
+		if (!manifestFile.isFile()) {
+			throw new FileNotFoundException("No exported cache found in " + exportDirectory);
+		}
+		Properties manifest = loadProperties(manifestFile);
+		List<CachedRepository> repositories = Lists.newArrayList();
+		for (String key : Sets.newTreeSet(manifest.stringPropertyNames())) {
+			if (!key.endsWith(".url")) {
+				continue;
+			}
+			String name = key.substring(0, key.length() - ".url".length());
+			File exportFile = new File(exportDirectory, name + EXPORT_SUFFIX);
+			if (!exportFile.isFile()) {
+				log.warn("Skipping {}, as {} is missing", manifest.getProperty(key), exportFile);
+				continue;
+			}
+			repositories.add(new CachedRepository(name, manifest.getProperty(key), exportFile,
+					manifest.getProperty(name + ".type", "git"), 0, parseTime(manifest.getProperty(name + ".refreshed")),
+					exportFile.length(), Collections.<File>emptyList()));
+		}
+		return repositories;
+	}
+
+	/**
+	 * Creates a mirror from one exported by {@link #export(CachedRepository, VcsSupport, File)}.
+	 * Mirrors already in the cache are kept as they are, as modules might be borrowing objects from them.
+	 *
+	 * @param exportedRepository The exported mirror, as returned by {@link #loadExportManifest(File)}.
+	 * @return {@code false} if the mirror was already in the cache.
+	 */
+	public boolean importRepository(CachedRepository exportedRepository, VcsSupport vcsSupport) throws IOException {
+		String moduleInCacheName = getModuleInCacheName(vcsSupport.normalizeRepositoryUrl(exportedRepository.getUrl()));
+		File moduleInCache = new File(cacheDirectory, moduleInCacheName);
+		File stateFile = new File(cacheDirectory, moduleInCacheName + STATE_SUFFIX);
+		InterProcessLock lock = InterProcessLock.lock(new File(cacheDirectory, moduleInCacheName + LOCK_SUFFIX), false);
+		try {
+			if (moduleInCache.exists()) {
+				return false;
+			}
+			File incompleteModuleInCache = new File(cacheDirectory, moduleInCacheName + ".incomplete");
+			FileUtils.deleteDirectory(incompleteModuleInCache);
+			boolean imported = false;
+			try {
+				vcsSupport.importMirror(exportedRepository.getDirectory(), incompleteModuleInCache, exportedRepository.getUrl());
+				imported = true;
+			} finally {
+				if (!imported) {
+					FileUtils.deleteQuietly(incompleteModuleInCache);
+				}
+			}
+			if (!incompleteModuleInCache.renameTo(moduleInCache)) {
+				throw new IOException("Could not move " + incompleteModuleInCache + " to " + moduleInCache);
+			}
+			// The mirror is as old as the exported one, so it is updated once its time-to-live is over
+			Properties state = loadProperties(stateFile);
+			state.setProperty(TYPE, exportedRepository.getType());
+			state.setProperty(REFRESHED, String.valueOf(exportedRepository.getLastRefreshed()));
+			saveProperties(state, stateFile);
+			return true;
+		} finally {
+			lock.release();
+		}
+	}
+
+	/**
+	 * Compacts the storage of a mirror.
+	 *
+	 * @param full Whether to optimize the mirror even if it seems to be in a good shape.
+	 */
+	public void optimize(CachedRepository repository, VcsSupport vcsSupport, boolean full) throws IOException {
+		InterProcessLock lock = InterProcessLock.lock(new File(cacheDirectory, repository.getName() + LOCK_SUFFIX), false);
+		try {
+			vcsSupport.optimizeMirror(repository.getDirectory(), full);
+		} finally {
+			lock.release();
+		}
+	}
+
+	/**
+	 * Removes the least recently used mirrors until the size of the cache goes under the given limit.
+	 * Mirrors that existing modules borrow objects from are kept.
+	 *
+	 * @param maximumSize The maximum size of the cache in bytes.
+	 * @return the removed mirrors.
+	 */
+	public List<CachedRepository> prune(long maximumSize) throws IOException {
+		List<CachedRepository> repositories = getRepositories();
+		Collections.sort(repositories, new Comparator<CachedRepository>() {
+			@Override
+			public int compare(CachedRepository repository1, CachedRepository repository2) {
+				long lastUsed1 = repository1.getLastUsed();
+				long lastUsed2 = repository2.getLastUsed();
+				return lastUsed1 > lastUsed2 ? -1 : lastUsed1 < lastUsed2 ? 1 : 0;
+			}
+		});
+
+		List<CachedRepository> removedRepositories = Lists.newArrayList();
+		long size = 0;
+		for (CachedRepository repository : repositories) {
+			if (size + repository.getSize() <= maximumSize) {
+				size += repository.getSize();
+			} else if (remove(repository)) {
+				removedRepositories.add(repository);
+			} else {
+				size += repository.getSize();
+			}
+		}
+		return removedRepositories;
+	}
+
+	/**
+	 * Removes a mirror, unless it is in use.
+	 *
+	 * @return {@code false} if the mirror is in use, and was kept.
+	 */
+	private boolean remove(CachedRepository repository) throws IOException {
+		// Modules might have started using the mirror since it was listed
+		InterProcessLock useLock = InterProcessLock.tryLock(new File(cacheDirectory, repository.getName() + USE_LOCK_SUFFIX), false);
+		if (useLock == null) {
+			log.warn("Keeping cached repository {}, as it is being used", repository);
+			return false;
+		}
+		InterProcessLock lock = null;
+		try {
+			lock = InterProcessLock.lock(new File(cacheDirectory, repository.getName() + LOCK_SUFFIX), false);
+			Properties state = loadProperties(new File(cacheDirectory, repository.getName() + STATE_SUFFIX));
+			for (String key : state.stringPropertyNames()) {
+				if (key.startsWith(REFERENCED_BY) && new File(state.getProperty(key)).isDirectory()) {
+					log.warn("Keeping cached repository {}, as modules are still borrowing objects from it", repository);
+					return false;
+				}
+			}
+
+			log.info("Removing cached repository {}", repository);
+			FileUtils.deleteDirectory(repository.getDirectory());
+			FileUtils.deleteDirectory(new File(cacheDirectory, repository.getName() + SHARED_SUFFIX));
+			FileUtils.deleteDirectory(new File(cacheDirectory, repository.getName() + DATA_SUFFIX));
+			FileUtils.deleteQuietly(new File(cacheDirectory, repository.getName() + STATE_SUFFIX));
+		} finally {
+			try {
+				if (lock != null) {
+					lock.release();
+				}
+			} finally {
+				useLock.release();
+			}
+		}
+
+		lock = InterProcessLock.lock(new File(cacheDirectory, CACHE_MAPPING_FILE + LOCK_SUFFIX), false);
+		try {
+			Properties cacheMapping = loadProperties(mappingFile);
+			cacheMapping.remove(repository.getUrl());
+			saveProperties(cacheMapping, mappingFile);
+		} finally {
+			lock.release();
+		}
+		return true;
+	}
+
+	private String getModuleInCacheName(String normalizedUrl) throws IOException {
+		String moduleInCacheName = loadProperties(mappingFile).getProperty(normalizedUrl);
+		if (moduleInCacheName != null) {
+			return moduleInCacheName;
+		}
+
+		InterProcessLock lock = InterProcessLock.lock(new File(cacheDirectory, CACHE_MAPPING_FILE + LOCK_SUFFIX), false);
+		try {
+			// Another process might have added the repository in the meantime
+			Properties cacheMapping = loadProperties(mappingFile);
+			moduleInCacheName = cacheMapping.getProperty(normalizedUrl);
+			if (moduleInCacheName == null) {
+				moduleInCacheName = sanitize(normalizedUrl);
+				cacheMapping.setProperty(normalizedUrl, moduleInCacheName);
+				saveProperties(cacheMapping, mappingFile);
+			}
+			return moduleInCacheName;
+		} finally {
+			lock.release();
 		}
 	}
 
@@ -60,26 +557,122 @@ public class RepoCache {
 		return repositoryUrl.replaceAll("[^a-zA-Z0-9]+", "-") + "-" + hash;
 	}
 
-	private static Properties loadCacheMapping(File mappingFile) throws IOException {
-		final Properties mapping = new Properties();
-		if (mappingFile.exists()) {
-			Reader reader = new FileReader(mappingFile);
+	private static long sizeOf(File file) throws IOException {
+		// Unlike FileUtils.sizeOfDirectory(), this tolerates files being removed while walking
+		File[] children = file.listFiles();
+		if (children == null) {
+			return file.length();
+		}
+		long size = 0;
+		for (File child : children) {
+			if (!FileUtils.isSymlink(child)) {
+				size += sizeOf(child);
+			}
+		}
+		return size;
+	}
+
+	private static long parseTime(String time) {
+		if (time == null) {
+			return 0;
+		}
+		try {
+			return Long.parseLong(time);
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	private static Properties loadProperties(File file) throws IOException {
+		final Properties properties = new Properties();
+		try {
+			Reader reader = new FileReader(file);
 			try {
-				mapping.load(reader);
+				properties.load(reader);
 			} finally {
 				reader.close();
 			}
+		} catch (FileNotFoundException e) {
+			// Nothing stored yet
 		}
 
-		return mapping;
+		return properties;
 	}
 
-	private void saveCacheMapping() throws IOException {
-		Writer writer = new FileWriter(mappingFile);
+	private static void saveProperties(Properties properties, File file) throws IOException {
+		// Write to a temporary file first, so that readers never see a partial file
+		File tempFile = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
 		try {
-			cacheMapping.store(writer, null);
+			Writer writer = new FileWriter(tempFile);
+			try {
+				properties.store(writer, null);
+			} finally {
+				writer.close();
+			}
+			if (!tempFile.renameTo(file)) {
+				FileUtils.deleteQuietly(file);
+				if (!tempFile.renameTo(file)) {
+					throw new IOException("Could not write " + file);
+				}
+			}
 		} finally {
-			writer.close();
+			FileUtils.deleteQuietly(tempFile);
+		}
+	}
+
+	/**
+	 * Locks a mirror for using it, waiting as long as needed: exclusively to create or update it, or shared
+	 * to read it. The mirror cannot be removed while it is locked, not even while the lock is downgraded.
+	 */
+	private MirrorLock lockMirror(String moduleInCacheName, boolean shared) throws IOException {
+		return acquireMirrorLock(moduleInCacheName, shared, true);
+	}
+
+	/**
+	 * Locks a mirror like {@link #lockMirror(String, boolean)}, unless others hold a conflicting lock on it.
+	 *
+	 * @return the lock, or {@code null} if the mirror is locked by others.
+	 */
+	private MirrorLock tryLockMirror(String moduleInCacheName, boolean shared) throws IOException {
+		return acquireMirrorLock(moduleInCacheName, shared, false);
+	}
+
+	private MirrorLock acquireMirrorLock(String moduleInCacheName, boolean shared, boolean wait) throws IOException {
+		InterProcessLock useLock = InterProcessLock.lock(new File(cacheDirectory, moduleInCacheName + USE_LOCK_SUFFIX), true);
+		InterProcessLock lock = null;
+		try {
+			File lockFile = new File(cacheDirectory, moduleInCacheName + LOCK_SUFFIX);
+			lock = wait ? InterProcessLock.lock(lockFile, shared) : InterProcessLock.tryLock(lockFile, shared);
+		} finally {
+			if (lock == null) {
+				useLock.release();
+			}
+		}
+		return lock != null ? new MirrorLock(useLock, lock) : null;
+	}
+
+	private static class MirrorLock {
+		private final InterProcessLock useLock;
+		private final InterProcessLock lock;
+
+		public MirrorLock(InterProcessLock useLock, InterProcessLock lock) {
+			this.useLock = useLock;
+			this.lock = lock;
+		}
+
+		/**
+		 * Lets other processes read the mirror, too, but not update it.
+		 */
+		public void downgrade() throws IOException {
+			lock.downgrade();
+		}
+
+		public void release() throws IOException {
+			try {
+				lock.release();
+			} finally {
+				useLock.release();
+			}
 		}
 	}
 }
@@ -0,0 +1,48 @@
+package com.prezi.pride.vcs;
+
+import com.prezi.pride.PrideException;
+import org.apache.commons.configuration.Configuration;
+
+/**
+ * How modules are cloned from their mirrors in the {@link RepoCache}.
+ */
+public enum RepoCacheMode {
+	/**
+	 * Clone the mirror with a full copy of its objects.
+	 */
+	COPY,
+
+	/**
+	 * Borrow objects from the mirror instead of copying them. Modules cloned this way
+	 * stop working if the mirror is removed from the cache.
+	 */
+	REFERENCE,
+
+	/**
+	 * Borrow objects from the mirror while cloning, then copy the objects the module
+	 * needs, so that it doesn't depend on the mirror afterwards.
+	 */
+	DISSOCIATE,
+
+	/**
+	 * Check out modules as working trees of a single repository per mirror, shared by the modules
+	 * of every pride. Modules share objects as well as fetched branches, and checking out a module
+	 * doesn't need a clone. Like with {@link #REFERENCE}, modules stop working if the mirror is
+	 * removed from the cache.
+	 */
+	WORKTREE;
+
+	public static final String REPO_CACHE_MODE = "repo.cache.mode";
+
+	/**
+	 * Returns the mode set in {@value #REPO_CACHE_MODE}.
+	 */
+	public static RepoCacheMode fromConfiguration(Configuration configuration) {
+		String mode = configuration.getString(REPO_CACHE_MODE, "copy");
+		try {
+			return valueOf(mode.trim().toUpperCase());
+		} catch (IllegalArgumentException e) {
+			throw new PrideException("Invalid value for " + REPO_CACHE_MODE + ": \"" + mode + "\", use one of copy, reference, dissociate or worktree");
+		}
+	}
+}
@@ -1,40 +1,58 @@
 package com.prezi.pride.vcs;
 
+import com.google.common.base.Joiner;
+import com.google.common.base.Strings;
 import com.prezi.pride.PrideException;
 import com.prezi.pride.vcs.file.FileVcsSupportFactory;
 import org.apache.commons.configuration.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.ServiceLoader;
 import java.util.Set;
 
 public final class VcsManager {
+	public static final String BACKEND_SUFFIX = ".backend";
 
-	private final Map<String, VcsSupportFactory> vcss = new LinkedHashMap<String, VcsSupportFactory>();
+	private static final Logger logger = LoggerFactory.getLogger(VcsManager.class);
+
+	private final Map<String, Map<String, VcsSupportFactory>> vcss = new LinkedHashMap<String, Map<String, VcsSupportFactory>>();
+	private final Set<String> unknownBackends = Collections.synchronizedSet(new HashSet<String>());
 
 	public VcsManager() {
 		for (VcsSupportFactory factory : ServiceLoader.load(VcsSupportFactory.class)) {
-			vcss.put(factory.getType(), factory);
+			register(factory);
 		}
 		// Make sure file support is always the last VCS tried
-		VcsSupportFactory fileSupport = new FileVcsSupportFactory();
-		vcss.put(fileSupport.getType(), fileSupport);
+		register(new FileVcsSupportFactory());
+	}
+
+	private void register(VcsSupportFactory factory) {
+		Map<String, VcsSupportFactory> backends = vcss.get(factory.getType());
+		if (backends == null) {
+			backends = new LinkedHashMap<String, VcsSupportFactory>();
+			vcss.put(factory.getType(), backends);
+		}
+		backends.put(factory.getBackend(), factory);
 	}
 
 	public Vcs getVcs(final String type, Configuration configuration) {
-		VcsSupportFactory vcsFactory = vcss.get(type);
-		if (vcsFactory == null) {
+		Map<String, VcsSupportFactory> backends = vcss.get(type);
+		if (backends == null) {
 			throw new PrideException("No support for VCS type \"" + type + "\"");
 		}
 
-		return new Vcs(type, vcsFactory.createVcsSupport(configuration));
+		return new Vcs(type, getFactory(type, backends, configuration).createVcsSupport(configuration));
 	}
 
 	public Vcs findSupportingVcs(File directory, Configuration configuration) {
-		for (VcsSupportFactory factory : vcss.values()) {
+		for (Map.Entry<String, Map<String, VcsSupportFactory>> entry : vcss.entrySet()) {
+			VcsSupportFactory factory = getFactory(entry.getKey(), entry.getValue(), configuration);
 			if (factory.canSupport(directory)) {
 				return new Vcs(factory.getType(), factory.createVcsSupport(configuration));
 			}
@@ -45,4 +63,23 @@ public final class VcsManager {
 	public Set<String> getSupportedTypes() {
 		return Collections.unmodifiableSet(vcss.keySet());
 	}
+
+	/**
+	 * Returns the backend configured in <code>&lt;type&gt;.backend</code>, or the first one registered for the type.
+	 */
+	private VcsSupportFactory getFactory(String type, Map<String, VcsSupportFactory> backends, Configuration configuration) {
+		String backend = configuration.getString(type + BACKEND_SUFFIX, null);
+		if (Strings.isNullOrEmpty(backend)) {
+			return backends.values().iterator().next();
+		}
+		VcsSupportFactory factory = backends.get(backend);
+		if (factory == null) {
+			factory = backends.values().iterator().next();
+			if (unknownBackends.add(type + BACKEND_SUFFIX + "=" + backend)) {
+				logger.warn("No backend \"{}\" for VCS type \"{}\", using \"{}\" instead (available backends: {})",
+						backend, type, factory.getBackend(), Joiner.on(", ").join(backends.keySet()));
+			}
+		}
+		return factory;
+	}
 }
@@ -0,0 +1,60 @@
+package com.prezi.pride.vcs;
+
+import org.apache.commons.configuration.Configuration;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Kinds of VCS operations that have their own configurable timeout.
+ */
+public enum VcsOperation {
+	/**
+	 * Creating a new working copy or mirror.
+	 */
+	CLONE("vcs.timeout.clone", 3600),
+
+	/**
+	 * Retrieving changes from a remote repository.
+	 */
+	FETCH("vcs.timeout.fetch", 600),
+
+	/**
+	 * Querying the state of a working copy.
+	 */
+	STATUS("vcs.timeout.status", 120),
+
+	/**
+	 * Compacting the storage of a repository.
+	 */
+	MAINTENANCE("vcs.timeout.maintenance", 3600);
+
+	private final String timeoutProperty;
+	private final int defaultTimeout;
+
+	VcsOperation(String timeoutProperty, int defaultTimeout) {
+		this.timeoutProperty = timeoutProperty;
+		this.defaultTimeout = defaultTimeout;
+	}
+
+	/**
+	 * Returns the configuration property holding the timeout in seconds.
+	 */
+	public String getTimeoutProperty() {
+		return timeoutProperty;
+	}
+
+	/**
+	 * Returns the default timeout in seconds.
+	 */
+	public int getDefaultTimeout() {
+		return defaultTimeout;
+	}
+
+	/**
+	 * Returns the configured timeout in milliseconds, or <code>0</code> if the operation should not time out.
+	 */
+	public long getTimeout(Configuration configuration) {
+		int timeout = configuration.getInt(timeoutProperty, defaultTimeout);
+		return timeout > 0 ? TimeUnit.SECONDS.toMillis(timeout) : 0;
+	}
+}
@@ -8,16 +8,24 @@ public final class VcsStatus {
 	private final String revision;
 	private final boolean hasUnpublishedChanges;
 	private final boolean hasUncommittedChanges;
+	private final int commitsAhead;
+	private final int commitsBehind;
+	private final int changedFiles;
+	private final int untrackedFiles;
 
 	public static Builder builder(String revision) {
 		return new Builder(revision);
 	}
 
-	private VcsStatus(String revision, String branch, boolean hasUnpublishedChanges, boolean hasUncommittedChanges) {
-		this.revision = revision;
-		this.branch = branch;
-		this.hasUnpublishedChanges = hasUnpublishedChanges;
-		this.hasUncommittedChanges = hasUncommittedChanges;
+	private VcsStatus(Builder builder) {
+		this.revision = builder.revision;
+		this.branch = builder.branch;
+		this.hasUnpublishedChanges = builder.hasUnpublishedChanges;
+		this.hasUncommittedChanges = builder.hasUncommittedChanges;
+		this.commitsAhead = builder.commitsAhead;
+		this.commitsBehind = builder.commitsBehind;
+		this.changedFiles = builder.changedFiles;
+		this.untrackedFiles = builder.untrackedFiles;
 	}
 
 	/**
@@ -48,18 +56,50 @@ public final class VcsStatus {
 		return hasUncommittedChanges;
 	}
 
+	/**
+	 * Returns the number of local commits not yet in the upstream branch, or <code>0</code> if unknown.
+	 */
+	public int getCommitsAhead() {
+		return commitsAhead;
+	}
+
+	/**
+	 * Returns the number of upstream commits not yet in the local branch, or <code>0</code> if unknown.
+	 */
+	public int getCommitsBehind() {
+		return commitsBehind;
+	}
+
+	/**
+	 * Returns the number of tracked files with uncommitted changes, or <code>0</code> if unknown.
+	 */
+	public int getChangedFiles() {
+		return changedFiles;
+	}
+
+	/**
+	 * Returns the number of untracked files, or <code>0</code> if unknown.
+	 */
+	public int getUntrackedFiles() {
+		return untrackedFiles;
+	}
+
 	public static final class Builder {
 		private final String revision;
 		private String branch;
 		private boolean hasUnpublishedChanges;
 		private boolean hasUncommittedChanges;
+		private int commitsAhead;
+		private int commitsBehind;
+		private int changedFiles;
+		private int untrackedFiles;
 
 		public Builder(String revision) {
 			this.revision = revision;
 		}
 
 		public VcsStatus build() {
-			return new VcsStatus(revision, branch, hasUnpublishedChanges, hasUncommittedChanges);
+			return new VcsStatus(this);
 		}
 
 		public Builder withBranch(String branch) {
@@ -76,5 +116,25 @@ public final class VcsStatus {
 			this.hasUncommittedChanges = hasCommittedChanges;
 			return this;
 		}
+
+		public Builder withCommitsAhead(int commitsAhead) {
+			this.commitsAhead = commitsAhead;
+			return this;
+		}
+
+		public Builder withCommitsBehind(int commitsBehind) {
+			this.commitsBehind = commitsBehind;
+			return this;
+		}
+
+		public Builder withChangedFiles(int changedFiles) {
+			this.changedFiles = changedFiles;
+			return this;
+		}
+
+		public Builder withUntrackedFiles(int untrackedFiles) {
+			this.untrackedFiles = untrackedFiles;
+			return this;
+		}
 	}
 }
@@ -0,0 +1,319 @@
+package com.prezi.pride.vcs;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps the VCS status of modules between runs.
+ *
+ * <p>Each status is stored together with a fingerprint of the size and modification time of
+ * the state files of the VCS (see {@link VcsSupport#getStateFiles(File)}), and of the modification
+ * time of the directories in the working tree. The directories are listed when the status is
+ * queried, and stored with it, so that checking the fingerprint later only needs a {@code stat()}
+ * call for each of them. Files are not checked one by one: that would cost about as much as asking
+ * the VCS. Files added, removed or renamed, including editors saving files by replacing them, update
+ * their directory; changes written to an existing file in place are only noticed once the VCS state
+ * changes, e.g. when the file is staged.</p>
+ *
+ * <p>Directories ignored by the VCS (see {@link VcsSupport#getIgnoredPaths(File)}), like build output,
+ * are not fingerprinted. Ignored paths are stored with the status, and are only looked up again when
+ * new directories show up in the working tree.</p>
+ *
+ * <p>File systems store modification times with limited precision, so a change right after the
+ * fingerprint was taken could go unnoticed. Statuses of modules changed in the last few seconds are
+ * therefore not cached.</p>
+ */
+public class VcsStatusCache {
+	private static final Logger logger = LoggerFactory.getLogger(VcsStatusCache.class);
+
+	public static final String STATUS_CACHE_ENABLED = "vcs.status.cache";
+
+	private static final long TIMESTAMP_PRECISION = 2000;
+
+	private static final String FINGERPRINT = "fingerprint";
+	private static final String TREE_FINGERPRINT = "tree";
+	private static final String REVISION = "revision";
+	private static final String BRANCH = "branch";
+	private static final String UNPUBLISHED = "unpublished";
+	private static final String UNCOMMITTED = "uncommitted";
+	private static final String AHEAD = "ahead";
+	private static final String BEHIND = "behind";
+	private static final String CHANGED = "changed";
+	private static final String UNTRACKED = "untracked";
+	private static final String IGNORED = "ignored";
+	private static final String DIRECTORIES = "directories";
+
+	private final File cacheFile;
+	private final ConcurrentMap<String, Entry> entries = Maps.newConcurrentMap();
+	private boolean loaded;
+	private volatile boolean dirty;
+
+	public VcsStatusCache(File cacheFile) {
+		this.cacheFile = cacheFile;
+	}
+
+	/**
+	 * Returns the status of the module, using the cached status if the module didn't change since.
+	 */
+	public VcsStatus getStatus(String moduleName, File moduleDirectory, VcsSupport vcsSupport) throws IOException {
+		Collection<File> stateFiles = vcsSupport.getStateFiles(moduleDirectory);
+		if (stateFiles == null) {
+			return vcsSupport.getStatus(moduleDirectory);
+		}
+		load();
+
+		long startTime = System.currentTimeMillis();
+		Entry entry = entries.get(moduleName);
+		Fingerprint fingerprint = null;
+		if (entry != null) {
+			fingerprint = Fingerprint.of(moduleDirectory, stateFiles, entry.directories);
+			if (entry.stateFingerprint.equals(fingerprint.stateHash) && entry.treeFingerprint.equals(fingerprint.treeHash)) {
+				logger.debug("Using cached status for {}", moduleName);
+				return entry.status;
+			}
+		}
+
+		VcsStatus status = vcsSupport.getStatus(moduleDirectory);
+		Set<String> ignoredPaths;
+		List<String> directories;
+		if (entry != null && entry.treeFingerprint.equals(fingerprint.treeHash)) {
+			// Only the state of the VCS changed, there are no new directories to look at
+			ignoredPaths = entry.ignoredPaths;
+			directories = entry.directories;
+		} else {
+			// New ignored paths, like build output, show up as new directories, so only look them up then
+			directories = entry != null ? listDirectories(moduleDirectory, stateFiles, entry.ignoredPaths) : null;
+			if (directories != null && Sets.newHashSet(entry.directories).containsAll(directories)) {
+				ignoredPaths = entry.ignoredPaths;
+			} else {
+				ignoredPaths = ImmutableSet.copyOf(vcsSupport.getIgnoredPaths(moduleDirectory));
+				directories = listDirectories(moduleDirectory, stateFiles, ignoredPaths);
+			}
+			fingerprint = Fingerprint.of(moduleDirectory, stateFiles, directories);
+		}
+		if (fingerprint.lastModified < startTime - TIMESTAMP_PRECISION) {
+			entries.put(moduleName, new Entry(fingerprint.stateHash, fingerprint.treeHash, status, ignoredPaths, directories));
+		} else {
+			logger.debug("Not caching status for {}, as it has just been modified", moduleName);
+			entries.remove(moduleName);
+		}
+		dirty = true;
+		return status;
+	}
+
+	/**
+	 * Stores the cached statuses, dropping modules that are no longer part of the pride.
+	 */
+	public synchronized void save(Collection<String> moduleNames) throws IOException {
+		if (!dirty) {
+			return;
+		}
+		Properties properties = new Properties();
+		for (Map.Entry<String, Entry> mapEntry : entries.entrySet()) {
+			String moduleName = mapEntry.getKey();
+			if (!moduleNames.contains(moduleName)) {
+				continue;
+			}
+			Entry entry = mapEntry.getValue();
+			VcsStatus status = entry.status;
+			properties.setProperty(key(FINGERPRINT, moduleName), entry.stateFingerprint);
+			properties.setProperty(key(TREE_FINGERPRINT, moduleName), entry.treeFingerprint);
+			properties.setProperty(key(REVISION, moduleName), Strings.nullToEmpty(status.getRevision()));
+			properties.setProperty(key(BRANCH, moduleName), Strings.nullToEmpty(status.getBranch()));
+			properties.setProperty(key(UNPUBLISHED, moduleName), String.valueOf(status.hasUnpublishedChanges()));
+			properties.setProperty(key(UNCOMMITTED, moduleName), String.valueOf(status.hasUncommittedChanges()));
+			properties.setProperty(key(AHEAD, moduleName), String.valueOf(status.getCommitsAhead()));
+			properties.setProperty(key(BEHIND, moduleName), String.valueOf(status.getCommitsBehind()));
+			properties.setProperty(key(CHANGED, moduleName), String.valueOf(status.getChangedFiles()));
+			properties.setProperty(key(UNTRACKED, moduleName), String.valueOf(status.getUntrackedFiles()));
+			properties.setProperty(key(IGNORED, moduleName), Joiner.on('\n').join(entry.ignoredPaths));
+			properties.setProperty(key(DIRECTORIES, moduleName), Joiner.on('\n').join(entry.directories));
+		}
+
+		// Write to a temporary file first, so that concurrent readers never see a partial cache
+		FileUtils.forceMkdir(cacheFile.getParentFile());
+		File tempFile = File.createTempFile(cacheFile.getName(), ".tmp", cacheFile.getParentFile());
+		try {
+			OutputStream output = new FileOutputStream(tempFile);
+			try {
+				properties.store(output, "VCS status cache");
+			} finally {
+				output.close();
+			}
+			if (!tempFile.renameTo(cacheFile)) {
+				FileUtils.deleteQuietly(cacheFile);
+				if (!tempFile.renameTo(cacheFile)) {
+					throw new IOException("Could not write " + cacheFile);
+				}
+			}
+		} finally {
+			FileUtils.deleteQuietly(tempFile);
+		}
+		dirty = false;
+	}
+
+	private synchronized void load() {
+		if (loaded) {
+			return;
+		}
+		loaded = true;
+		if (!cacheFile.isFile()) {
+			return;
+		}
+		Properties properties = new Properties();
+		try {
+			InputStream input = new FileInputStream(cacheFile);
+			try {
+				properties.load(input);
+			} finally {
+				IOUtils.closeQuietly(input);
+			}
+		} catch (IOException e) {
+			logger.debug("Could not read status cache {}", cacheFile, e);
+			return;
+		}
+
+		Set<String> moduleNames = Sets.newHashSet();
+		for (String key : properties.stringPropertyNames()) {
+			if (key.startsWith(FINGERPRINT + ".")) {
+				moduleNames.add(key.substring(FINGERPRINT.length() + 1));
+			}
+		}
+		for (String moduleName : moduleNames) {
+			try {
+				VcsStatus status = VcsStatus.builder(Strings.emptyToNull(properties.getProperty(key(REVISION, moduleName))))
+						.withBranch(Strings.emptyToNull(properties.getProperty(key(BRANCH, moduleName))))
+						.withUnpublishedChanges(Boolean.parseBoolean(properties.getProperty(key(UNPUBLISHED, moduleName))))
+						.withUncommittedChanges(Boolean.parseBoolean(properties.getProperty(key(UNCOMMITTED, moduleName))))
+						.withCommitsAhead(Integer.parseInt(properties.getProperty(key(AHEAD, moduleName), "0")))
+						.withCommitsBehind(Integer.parseInt(properties.getProperty(key(BEHIND, moduleName), "0")))
+						.withChangedFiles(Integer.parseInt(properties.getProperty(key(CHANGED, moduleName), "0")))
+						.withUntrackedFiles(Integer.parseInt(properties.getProperty(key(UNTRACKED, moduleName), "0")))
+						.build();
+				String ignoredPaths = properties.getProperty(key(IGNORED, moduleName), "");
+				String directories = properties.getProperty(key(DIRECTORIES, moduleName), "");
+				entries.put(moduleName, new Entry(properties.getProperty(key(FINGERPRINT, moduleName)),
+						properties.getProperty(key(TREE_FINGERPRINT, moduleName), ""), status,
+						ImmutableSet.copyOf(Splitter.on('\n').omitEmptyStrings().split(ignoredPaths)),
+						Lists.newArrayList(Splitter.on('\n').omitEmptyStrings().split(directories))));
+			} catch (NumberFormatException e) {
+				logger.debug("Ignoring invalid status cache entry for {}", moduleName, e);
+			}
+		}
+	}
+
+	private static String key(String field, String moduleName) {
+		return field + "." + moduleName;
+	}
+
+	/**
+	 * Lists the directories of the working tree that are not ignored, relative to the module directory.
+	 */
+	private static List<String> listDirectories(File moduleDirectory, Collection<File> stateFiles, Collection<String> ignoredPaths) throws IOException {
+		Set<String> skippedPaths = Sets.newHashSet(ignoredPaths);
+		String modulePath = moduleDirectory.getAbsolutePath() + File.separator;
+		for (File stateFile : stateFiles) {
+			// Don't walk VCS metadata as part of the working tree
+			String statePath = stateFile.getAbsolutePath();
+			if (statePath.startsWith(modulePath)) {
+				String relativePath = statePath.substring(modulePath.length());
+				int separator = relativePath.indexOf(File.separatorChar);
+				skippedPaths.add(separator == -1 ? relativePath : relativePath.substring(0, separator));
+			}
+		}
+		List<String> directories = Lists.newArrayList();
+		addDirectories("", moduleDirectory, skippedPaths, directories);
+		return directories;
+	}
+
+	private static void addDirectories(String path, File directory, Set<String> skippedPaths, List<String> directories) throws IOException {
+		String[] names = directory.list();
+		if (names == null) {
+			return;
+		}
+		Arrays.sort(names);
+		for (String name : names) {
+			String childPath = path.isEmpty() ? name : path + "/" + name;
+			if (skippedPaths.contains(childPath)) {
+				continue;
+			}
+			File child = new File(directory, name);
+			if (child.isDirectory() && !FileUtils.isSymlink(child)) {
+				directories.add(childPath);
+				addDirectories(childPath, child, skippedPaths, directories);
+			}
+		}
+	}
+
+	private static class Entry {
+		private final String stateFingerprint;
+		private final String treeFingerprint;
+		private final VcsStatus status;
+		private final Set<String> ignoredPaths;
+		private final List<String> directories;
+
+		public Entry(String stateFingerprint, String treeFingerprint, VcsStatus status, Set<String> ignoredPaths, List<String> directories) {
+			this.stateFingerprint = stateFingerprint;
+			this.treeFingerprint = treeFingerprint;
+			this.status = status;
+			this.ignoredPaths = ignoredPaths;
+			this.directories = directories;
+		}
+	}
+
+	private static class Fingerprint {
+		private String stateHash;
+		private String treeHash;
+		private long lastModified;
+
+		public static Fingerprint of(File moduleDirectory, Collection<File> stateFiles, Collection<String> directories) {
+			Fingerprint fingerprint = new Fingerprint();
+			Hasher stateHasher = Hashing.murmur3_128().newHasher();
+			for (File stateFile : stateFiles) {
+				fingerprint.add(stateHasher, stateFile.getPath(), stateFile);
+			}
+			fingerprint.stateHash = stateHasher.hash().toString();
+
+			Hasher treeHasher = Hashing.murmur3_128().newHasher();
+			fingerprint.add(treeHasher, "/", moduleDirectory);
+			// Removed directories have no modification time, and change the fingerprint, too
+			for (String directory : directories) {
+				fingerprint.add(treeHasher, "/" + directory, new File(moduleDirectory, directory));
+			}
+			fingerprint.treeHash = treeHasher.hash().toString();
+			return fingerprint;
+		}
+
+		private void add(Hasher hasher, String path, File file) {
+			long fileLastModified = file.lastModified();
+			hasher.putString(path, Charsets.UTF_8).putLong(file.length()).putLong(fileLastModified);
+			lastModified = Math.max(lastModified, fileLastModified);
+		}
+	}
+}
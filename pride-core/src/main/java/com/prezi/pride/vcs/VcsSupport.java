@@ -2,6 +2,8 @@ package com.prezi.pride.vcs;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
 
 public interface VcsSupport {
 	/**
@@ -12,9 +14,58 @@ public interface VcsSupport {
 	 * @param revision        The revision to check out, can be a branch name.
 	 * @param recursive       Clone sub-repositories as well.
 	 * @param mirrored        Whether to create a mirror (to be used as a cache).
+	 * @param options         How much of the repository to clone, ignored for mirrors.
 	 * @throws java.io.IOException If an I/O error occurs.
 	 */
-	void checkout(String repositoryUrl, File targetDirectory, String revision, boolean recursive, boolean mirrored) throws IOException;
+	void checkout(String repositoryUrl, File targetDirectory, String revision, boolean recursive, boolean mirrored, CloneOptions options) throws IOException;
+
+	/**
+	 * Clone a mirror created by {@link #checkout(String, File, String, boolean, boolean, CloneOptions)} into the pride.
+	 * Only called if {@link #isMirroringSupported()} returns {@code true}.
+	 *
+	 * @param mirrorDirectory The directory of the mirror in the cache.
+	 * @param targetDirectory The directory where the local clone will reside.
+	 * @param revision        The revision to check out, can be a branch name.
+	 * @param recursive       Clone sub-repositories as well.
+	 * @param mode            Whether to copy objects from the mirror or borrow them.
+	 * @param options         Which paths to check out; the full history is always cloned from mirrors.
+	 * @throws java.io.IOException If an I/O error occurs.
+	 */
+	void checkoutFromMirror(File mirrorDirectory, File targetDirectory, String revision, boolean recursive, RepoCacheMode mode, CloneOptions options) throws IOException;
+
+	/**
+	 * Check out a module as a working tree of a repository shared by all prides (see {@link RepoCacheMode#WORKTREE}).
+	 * The shared repository is created from the mirror when it doesn't exist yet.
+	 * Only called if {@link #isMirroringSupported()} returns {@code true}.
+	 *
+	 * @param mirrorDirectory The directory of the mirror in the cache, already up to date.
+	 * @param sharedDirectory The directory of the shared repository in the cache.
+	 * @param targetDirectory The directory where the working tree will reside.
+	 * @param revision        The revision to check out, can be a branch name.
+	 * @param recursive       Check out sub-repositories as well.
+	 * @param options         Which paths to check out; the full history is always available from mirrors.
+	 * @throws java.io.IOException If an I/O error occurs.
+	 */
+	void checkoutWorktree(File mirrorDirectory, File sharedDirectory, File targetDirectory, String revision, boolean recursive, CloneOptions options) throws IOException;
+
+	/**
+	 * Restricts the working copy to the given directories, or checks out every path if none are given.
+	 *
+	 * @param targetDirectory The directory of the working copy.
+	 * @param sparsePaths     The directories to check out, relative to the root of the working copy.
+	 * @throws java.io.IOException If an I/O error occurs.
+	 */
+	void setSparsePaths(File targetDirectory, List<String> sparsePaths) throws IOException;
+
+	/**
+	 * Checks out the sub-repositories of a working copy recursively, like Git submodules.
+	 *
+	 * @param targetDirectory The directory of the working copy.
+	 * @param mirrors         Provides mirrors to clone sub-repositories from, or {@code null} to clone
+	 *                        them from their remotes.
+	 * @throws java.io.IOException If an I/O error occurs.
+	 */
+	void updateSubmodules(File targetDirectory, MirrorProvider mirrors) throws IOException;
 
 	/**
 	 * Updates a local clone of a repository. If there are local changes, they should be
@@ -29,6 +80,64 @@ public interface VcsSupport {
 	 */
 	void update(File targetDirectory, String revision, boolean recursive, boolean mirrored) throws IOException;
 
+	/**
+	 * Downloads changes from the remote repository without touching the working copy.
+	 * This is the network-bound part of {@link #update(File, String, boolean, boolean)}, and
+	 * is safe to run for multiple repositories in parallel. VCSs that cannot download changes
+	 * without updating the working copy should do nothing here.
+	 *
+	 * @param targetDirectory The directory where the local clone resides.
+	 * @param mirrored        Whether to update a real clone or a cached repository.
+	 * @throws java.io.IOException If an I/O error occurs.
+	 */
+	void fetch(File targetDirectory, boolean mirrored) throws IOException;
+
+	/**
+	 * Compacts the storage of a cached mirror, e.g. by repacking objects. Objects that are
+	 * no longer reachable in the mirror should be kept, as clones might be borrowing them.
+	 * Only called if {@link #isMirroringSupported()} returns {@code true}.
+	 *
+	 * @param mirrorDirectory The directory of the mirror in the cache.
+	 * @param full            Whether to optimize the mirror even if it seems to be in a good shape.
+	 * @throws java.io.IOException If an I/O error occurs.
+	 */
+	void optimizeMirror(File mirrorDirectory, boolean full) throws IOException;
+
+	/**
+	 * Writes a cached mirror to a single file, to be restored by {@link #importMirror(File, File, String)}
+	 * without network access. Only called if {@link #isMirroringSupported()} returns {@code true}.
+	 *
+	 * @param mirrorDirectory The directory of the mirror in the cache.
+	 * @param exportFile      The file to write.
+	 * @return {@code false} if the mirror is empty, and nothing was written.
+	 * @throws java.io.IOException If an I/O error occurs.
+	 */
+	boolean exportMirror(File mirrorDirectory, File exportFile) throws IOException;
+
+	/**
+	 * Creates a cached mirror from a file written by {@link #exportMirror(File, File)}. The mirror
+	 * should be updated from the given remote repository later, as if it was created by
+	 * {@link #checkout(String, File, String, boolean, boolean, CloneOptions)}.
+	 * Only called if {@link #isMirroringSupported()} returns {@code true}.
+	 *
+	 * @param exportFile      The file to restore the mirror from.
+	 * @param mirrorDirectory The directory of the mirror in the cache.
+	 * @param repositoryUrl   The URL of the remote repository.
+	 * @throws java.io.IOException If an I/O error occurs.
+	 */
+	void importMirror(File exportFile, File mirrorDirectory, String repositoryUrl) throws IOException;
+
+	/**
+	 * Updates the working copy with the changes downloaded by {@link #fetch(File, boolean)}.
+	 * Local changes should be preserved.
+	 *
+	 * @param targetDirectory The directory where the local clone resides.
+	 * @param revision        The revision to check out, can be a branch name.
+	 * @param recursive       Update sub-repositories as well.
+	 * @throws java.io.IOException If an I/O error occurs.
+	 */
+	void updateWorkingCopy(File targetDirectory, String revision, boolean recursive) throws IOException;
+
 	/**
 	 * Returns true if the working copy / local repository has uncommitted or unpublished changes.
 	 *
@@ -47,6 +156,27 @@ public interface VcsSupport {
 	 */
 	VcsStatus getStatus(File targetDirectory) throws IOException;
 
+	/**
+	 * Returns the files that record the state of the local clone, like the index and the
+	 * current ref in Git. As long as neither these files nor the files of the working tree
+	 * change, {@link #getStatus(File)} is expected to return the same result.
+	 *
+	 * @param targetDirectory The directory where the local clone resides.
+	 * @return the state files (they don't need to exist), or {@code null} if the status should not be cached.
+	 * @throws java.io.IOException If an I/O error occurs.
+	 */
+	Collection<File> getStateFiles(File targetDirectory) throws IOException;
+
+	/**
+	 * Returns the paths in the working copy that are ignored by the VCS, like build output. Changes
+	 * to files under these paths, including new files, don't affect {@link #getStatus(File)}.
+	 *
+	 * @param targetDirectory The directory where the local clone resides.
+	 * @return the ignored paths, relative to <code>targetDirectory</code> and separated by <code>/</code>.
+	 * @throws java.io.IOException If an I/O error occurs.
+	 */
+	Collection<String> getIgnoredPaths(File targetDirectory) throws IOException;
+
 	/**
 	 * Activates a clone just cloned form a cache to work as if it was cloned from
 	 * the original URL. In Git this would do {@code git remote set-url origin <repositoryUrl>}.
@@ -12,6 +12,14 @@ public interface VcsSupportFactory {
 	 */
 	String getType();
 
+	/**
+	 * Returns the name of the implementation. When there are multiple factories for the same type,
+	 * the one to use can be selected by setting <code>&lt;type&gt;.backend</code> to this name.
+	 *
+	 * @return the backend identifier of this factory.
+	 */
+	String getBackend();
+
 	/**
 	 * Creates the {@link VcsSupport}.
 	 *
@@ -0,0 +1,312 @@
+package com.prezi.pride.vcs.file;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.prezi.pride.PrideException;
+import com.prezi.pride.ProcessUtils;
+import com.prezi.pride.internal.ParallelExecutor;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.SystemUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SortedMap;
+
+/**
+ * Copies a local directory, and keeps the copy in sync with it.
+ *
+ * <p>The copy has a manifest recording where it was copied from, and the size and modification time
+ * of each file at the time it was copied. Updates only copy files that changed in the source since,
+ * and leave files changed in the copy alone.</p>
+ *
+ * <p>Where the file system supports it, the first copy is made with copy-on-write clones (reflinks),
+ * which take no time and no extra space. Otherwise files are copied in parallel.</p>
+ *
+ * <p>Symbolic links are followed both when scanning and when copying, so the copy has the files
+ * and directories they point to, like the manifest says.</p>
+ */
+class FileSync {
+	static final String MANIFEST_FILE = ".pride-file-sync";
+
+	private static final Logger log = LoggerFactory.getLogger(FileSync.class);
+	private static final String SOURCE = "source";
+	private static final String FILE_PREFIX = "file.";
+
+	private final int jobs;
+
+	FileSync(int jobs) {
+		this.jobs = jobs;
+	}
+
+	/**
+	 * Copies the source directory into the target directory.
+	 */
+	public void copy(File sourceDirectory, File targetDirectory) throws IOException {
+		if (!sourceDirectory.isDirectory()) {
+			throw new FileNotFoundException("Cannot find " + sourceDirectory);
+		}
+		FileUtils.forceMkdir(targetDirectory);
+		List<String> directories = Lists.newArrayList();
+		SortedMap<String, FileState> files = scan(sourceDirectory, directories);
+		if (!cloneDirectory(sourceDirectory, targetDirectory)) {
+			copyFiles(sourceDirectory, targetDirectory, directories, files.keySet());
+		}
+		// The manifest of the source, if it is a copy itself, doesn't belong to this copy
+		FileUtils.deleteQuietly(new File(targetDirectory, MANIFEST_FILE));
+		saveManifest(targetDirectory, sourceDirectory.getAbsolutePath(), files);
+	}
+
+	/**
+	 * Copies files changed in the source since the last sync into the target directory.
+	 *
+	 * @return {@code false} if the target directory has no manifest, and cannot be updated.
+	 */
+	public boolean update(File targetDirectory) throws IOException {
+		Properties manifest = loadManifest(targetDirectory);
+		if (manifest == null) {
+			return false;
+		}
+		File sourceDirectory = new File(manifest.getProperty(SOURCE));
+		if (!sourceDirectory.isDirectory()) {
+			throw new FileNotFoundException("Cannot find " + sourceDirectory);
+		}
+		Map<String, FileState> synced = Maps.newTreeMap();
+		for (String key : manifest.stringPropertyNames()) {
+			if (key.startsWith(FILE_PREFIX)) {
+				synced.put(key.substring(FILE_PREFIX.length()), FileState.parse(manifest.getProperty(key)));
+			}
+		}
+
+		List<String> directories = Lists.newArrayList();
+		SortedMap<String, FileState> current = scan(sourceDirectory, directories);
+		SortedMap<String, FileState> result = Maps.newTreeMap();
+		List<String> changedFiles = Lists.newArrayList();
+		for (Map.Entry<String, FileState> entry : current.entrySet()) {
+			String path = entry.getKey();
+			FileState syncedState = synced.get(path);
+			if (entry.getValue().equals(syncedState)) {
+				result.put(path, syncedState);
+			} else if (isChangedLocally(targetDirectory, path, syncedState)) {
+				log.warn("Keeping local changes to {} in {}", path, targetDirectory.getName());
+				if (syncedState != null) {
+					result.put(path, syncedState);
+				}
+			} else {
+				changedFiles.add(path);
+				result.put(path, entry.getValue());
+			}
+		}
+		int removedFiles = 0;
+		for (Map.Entry<String, FileState> entry : synced.entrySet()) {
+			String path = entry.getKey();
+			if (current.containsKey(path)) {
+				continue;
+			}
+			if (isChangedLocally(targetDirectory, path, entry.getValue())) {
+				log.warn("Keeping {} in {}, as it has been changed locally", path, targetDirectory.getName());
+			} else {
+				FileUtils.deleteQuietly(new File(targetDirectory, path));
+				removedFiles++;
+			}
+		}
+
+		log.debug("Updating {} files and removing {} files in {}", changedFiles.size(), removedFiles, targetDirectory);
+		copyFiles(sourceDirectory, targetDirectory, directories, changedFiles);
+		saveManifest(targetDirectory, sourceDirectory.getAbsolutePath(), result);
+		return true;
+	}
+
+	/**
+	 * Returns the directory the target directory was copied from, or {@code null} if it is not known.
+	 */
+	public String getSource(File targetDirectory) throws IOException {
+		Properties manifest = loadManifest(targetDirectory);
+		return manifest != null ? manifest.getProperty(SOURCE) : null;
+	}
+
+	/**
+	 * Makes updates copy files from a different source directory with the same contents, like the
+	 * original of a cached copy.
+	 */
+	public void setSource(File targetDirectory, String sourceDirectory) throws IOException {
+		Properties manifest = loadManifest(targetDirectory);
+		if (manifest != null) {
+			manifest.setProperty(SOURCE, new File(sourceDirectory).getAbsolutePath());
+			saveProperties(manifest, new File(targetDirectory, MANIFEST_FILE));
+		}
+	}
+
+	private static boolean isChangedLocally(File targetDirectory, String path, FileState syncedState) {
+		File targetFile = new File(targetDirectory, path);
+		if (syncedState == null) {
+			// Not copied before, so anything there has been added locally
+			return targetFile.exists();
+		}
+		return targetFile.exists() && !FileState.of(targetFile).equals(syncedState);
+	}
+
+	/**
+	 * Clones the directory with copy-on-write clones of files if the file system supports it.
+	 */
+	private static boolean cloneDirectory(File sourceDirectory, File targetDirectory) {
+		List<String> commandLine;
+		if (SystemUtils.IS_OS_LINUX) {
+			commandLine = ImmutableList.of("cp", "-R", "-L", "--reflink=always", "--preserve=timestamps",
+					sourceDirectory.getPath() + "/.", targetDirectory.getPath());
+		} else if (SystemUtils.IS_OS_MAC_OSX) {
+			commandLine = ImmutableList.of("cp", "-R", "-L", "-c", "-p", sourceDirectory.getPath() + "/", targetDirectory.getPath());
+		} else {
+			return false;
+		}
+		try {
+			ProcessUtils.executeIn(null, commandLine, false, true);
+			return true;
+		} catch (Exception ex) {
+			log.debug("Could not clone {}, copying it instead", sourceDirectory, ex);
+			return false;
+		}
+	}
+
+	private void copyFiles(final File sourceDirectory, final File targetDirectory, Collection<String> directories, Collection<String> paths) throws IOException {
+		// Only files are copied below, so empty directories would be missed
+		for (String directory : directories) {
+			FileUtils.forceMkdir(new File(targetDirectory, directory));
+		}
+		new ParallelExecutor(jobs).execute(paths, new ParallelExecutor.Task<String>() {
+			@Override
+			public void started(String path, int index, int count) {
+			}
+
+			@Override
+			public void execute(String path, int index, int count) throws IOException {
+				// Keeps the modification time, so that the copy is in the same state as recorded
+				FileUtils.copyFile(new File(sourceDirectory, path), new File(targetDirectory, path));
+			}
+		});
+	}
+
+	/**
+	 * Returns the files in the source directory, and collects the directories in it.
+	 */
+	private static SortedMap<String, FileState> scan(File sourceDirectory, Collection<String> directories) throws IOException {
+		SortedMap<String, FileState> files = Maps.newTreeMap();
+		scan(sourceDirectory, "", files, directories);
+		return files;
+	}
+
+	private static void scan(File directory, String prefix, Map<String, FileState> files, Collection<String> directories) throws IOException {
+		File[] children = directory.listFiles();
+		if (children == null) {
+			throw new IOException("Could not list " + directory);
+		}
+		for (File child : children) {
+			if (prefix.isEmpty() && MANIFEST_FILE.equals(child.getName())) {
+				continue;
+			}
+			String path = prefix + child.getName();
+			if (child.isDirectory()) {
+				directories.add(path);
+				scan(child, path + "/", files, directories);
+			} else {
+				files.put(path, FileState.of(child));
+			}
+		}
+	}
+
+	private static Properties loadManifest(File targetDirectory) throws IOException {
+		File manifestFile = new File(targetDirectory, MANIFEST_FILE);
+		if (!manifestFile.isFile()) {
+			return null;
+		}
+		Properties manifest = new Properties();
+		Reader reader = new FileReader(manifestFile);
+		try {
+			manifest.load(reader);
+		} finally {
+			reader.close();
+		}
+		if (manifest.getProperty(SOURCE) == null) {
+			throw new PrideException("Invalid manifest: " + manifestFile);
+		}
+		return manifest;
+	}
+
+	private static void saveManifest(File targetDirectory, String sourceDirectory, Map<String, FileState> files) throws IOException {
+		Properties manifest = new Properties();
+		manifest.setProperty(SOURCE, sourceDirectory);
+		for (Map.Entry<String, FileState> entry : files.entrySet()) {
+			manifest.setProperty(FILE_PREFIX + entry.getKey(), entry.getValue().toString());
+		}
+		saveProperties(manifest, new File(targetDirectory, MANIFEST_FILE));
+	}
+
+	private static void saveProperties(Properties properties, File file) throws IOException {
+		Writer writer = new FileWriter(file);
+		try {
+			properties.store(writer, null);
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * The size and modification time of a file.
+	 */
+	private static class FileState {
+		private final long size;
+		private final long modified;
+
+		private FileState(long size, long modified) {
+			this.size = size;
+			this.modified = modified;
+		}
+
+		public static FileState of(File file) {
+			return new FileState(file.length(), file.lastModified());
+		}
+
+		public static FileState parse(String value) {
+			int separator = value.indexOf(' ');
+			try {
+				return new FileState(Long.parseLong(value.substring(0, separator)), Long.parseLong(value.substring(separator + 1)));
+			} catch (RuntimeException ex) {
+				// Copy the file again
+				return new FileState(-1, -1);
+			}
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (o == null || getClass() != o.getClass()) {
+				return false;
+			}
+			FileState that = (FileState) o;
+			return size == that.size && modified == that.modified;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * (int) (size ^ (size >>> 32)) + (int) (modified ^ (modified >>> 32));
+		}
+
+		@Override
+		public String toString() {
+			return size + " " + modified;
+		}
+	}
+}
@@ -1,24 +1,35 @@
 package com.prezi.pride.vcs.file;
 
+import com.prezi.pride.vcs.CloneOptions;
+import com.prezi.pride.vcs.MirrorProvider;
+import com.prezi.pride.vcs.RepoCacheMode;
 import com.prezi.pride.vcs.VcsStatus;
 import com.prezi.pride.vcs.VcsSupport;
 import com.prezi.pride.vcs.VcsSupportFactory;
 import org.apache.commons.configuration.Configuration;
-import org.apache.commons.io.FileUtils;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 
 public class FileVcsSupportFactory implements VcsSupportFactory {
+	public static final String FILE_JOBS = "vcs.file.jobs";
+
 	@Override
 	public String getType() {
 		return "file";
 	}
 
+	@Override
+	public String getBackend() {
+		return "default";
+	}
+
 	@Override
 	public VcsSupport createVcsSupport(Configuration configuration) {
-		return new FileVcsSupport();
+		return new FileVcsSupport(new FileSync(Math.max(1, configuration.getInt(FILE_JOBS, 4))));
 	}
 
 	@Override
@@ -27,20 +38,69 @@ public class FileVcsSupportFactory implements VcsSupportFactory {
 	}
 
 	private static class FileVcsSupport implements VcsSupport {
+		private final FileSync sync;
+
+		public FileVcsSupport(FileSync sync) {
+			this.sync = sync;
+		}
+
+		@Override
+		public void checkout(String repositoryUrl, File targetDirectory, String revision, boolean recursive, boolean mirrored, CloneOptions options) throws IOException {
+			sync.copy(new File(repositoryUrl), targetDirectory);
+		}
+
+		@Override
+		public void checkoutFromMirror(File mirrorDirectory, File targetDirectory, String revision, boolean recursive, RepoCacheMode mode, CloneOptions options) throws IOException {
+			checkout(mirrorDirectory.getPath(), targetDirectory, revision, recursive, false, CloneOptions.FULL);
+		}
+
+		@Override
+		public void checkoutWorktree(File mirrorDirectory, File sharedDirectory, File targetDirectory, String revision, boolean recursive, CloneOptions options) throws IOException {
+			checkout(mirrorDirectory.getPath(), targetDirectory, revision, recursive, false, CloneOptions.FULL);
+		}
+
 		@Override
-		public void checkout(String repositoryUrl, File targetDirectory, String revision, boolean recursive, boolean mirrored) throws IOException {
-			File sourceDirectory = new File(repositoryUrl);
-			if (!sourceDirectory.exists()) {
-				throw new FileNotFoundException("Cannot find " + sourceDirectory);
-			}
-			FileUtils.copyDirectory(sourceDirectory, targetDirectory);
+		public void setSparsePaths(File targetDirectory, List<String> sparsePaths) throws IOException {
+			// Every file is copied
+		}
+
+		@Override
+		public void updateSubmodules(File targetDirectory, MirrorProvider mirrors) throws IOException {
+			// Sub-directories are copied with the rest
 		}
 
 		@Override
 		public void update(File targetDirectory, String revision, boolean recursive, boolean mirrored) throws IOException {
+			// Modules copied before the sync manifest was introduced are left as they are
+			sync.update(targetDirectory);
+		}
+
+		@Override
+		public void fetch(File targetDirectory, boolean mirrored) throws IOException {
 			// Do nothing
 		}
 
+		@Override
+		public void optimizeMirror(File mirrorDirectory, boolean full) throws IOException {
+			// Do nothing
+		}
+
+		@Override
+		public boolean exportMirror(File mirrorDirectory, File exportFile) throws IOException {
+			// Sources are local, mirrors can be copied from them again
+			return false;
+		}
+
+		@Override
+		public void importMirror(File exportFile, File mirrorDirectory, String repositoryUrl) throws IOException {
+			checkout(repositoryUrl, mirrorDirectory, null, false, true, CloneOptions.FULL);
+		}
+
+		@Override
+		public void updateWorkingCopy(File targetDirectory, String revision, boolean recursive) throws IOException {
+			sync.update(targetDirectory);
+		}
+
 		@Override
 		public boolean hasChanges(File targetDirectory) throws IOException {
 			return false;
@@ -51,9 +111,20 @@ public class FileVcsSupportFactory implements VcsSupportFactory {
 			return VcsStatus.builder("none").build();
 		}
 
+		@Override
+		public Collection<File> getStateFiles(File targetDirectory) throws IOException {
+			// The status never changes, no need to cache it
+			return null;
+		}
+
+		@Override
+		public Collection<String> getIgnoredPaths(File targetDirectory) throws IOException {
+			return Collections.emptyList();
+		}
+
 		@Override
 		public void activate(String repositoryUrl, File targetDirectory) throws IOException {
-			// Do nothing
+			sync.setSource(targetDirectory, repositoryUrl);
 		}
 
 		@Override
@@ -63,7 +134,8 @@ public class FileVcsSupportFactory implements VcsSupportFactory {
 
 		@Override
 		public String getRepositoryUrl(File targetDirectory) throws IOException {
-			return targetDirectory.getAbsolutePath();
+			String source = sync.getSource(targetDirectory);
+			return source != null ? source : targetDirectory.getAbsolutePath();
 		}
 
 		@Override
@@ -0,0 +1,87 @@
+package com.prezi.pride
+
+import org.apache.commons.lang.SystemUtils
+import spock.lang.IgnoreIf
+import spock.lang.Specification
+import spock.lang.Timeout
+
+import java.util.concurrent.CopyOnWriteArrayList
+
+class ProcessUtilsTest extends Specification {
+	def "large output on both streams does not block the process"() {
+		def errors = new CopyOnWriteArrayList<String>()
+		def outputCount = 0
+
+		when:
+		def result = ProcessUtils.executeIn(null, ["sh", "-c", 'i=0; while [ $i -lt 20000 ]; do echo "err $i" >&2; echo "out $i"; i=$((i+1)); done'], false, new ProcessUtils.OutputHandler() {
+			@Override
+			void handleOutput(String line) {
+				outputCount++
+			}
+
+			@Override
+			void handleError(String line) {
+				errors.add(line)
+			}
+		})
+
+		then:
+		result.exitCode == 0
+		outputCount == 20000
+		errors.size() == 20000
+		// Only the end of the output is kept when it is passed to a handler
+		result.outputLines.size() == ProcessUtils.OUTPUT_TAIL_LINES
+		result.errorLines.size() == ProcessUtils.OUTPUT_TAIL_LINES
+		result.outputLines.last() == "out 19999"
+		result.errorLines.first() == "err " + (20000 - ProcessUtils.OUTPUT_TAIL_LINES)
+	}
+
+	def "whole output is captured without a handler"() {
+		when:
+		def result = ProcessUtils.executeIn(null, ["sh", "-c", 'i=0; while [ $i -lt 1000 ]; do echo "out $i"; i=$((i+1)); done'], false, false)
+
+		then:
+		result.outputLines.size() == 1000
+		result.outputLines.first() == "out 0"
+	}
+
+	def "failure includes captured output"() {
+		when:
+		ProcessUtils.executeIn(null, ["sh", "-c", "echo problem >&2; exit 3"], false, false)
+
+		then:
+		def e = thrown PrideException
+		e.message.contains "exit code: 3"
+		e.message.contains "problem"
+	}
+
+	@Timeout(30)
+	@IgnoreIf({ SystemUtils.IS_OS_WINDOWS })
+	def "timed out processes are killed together with their children"() {
+		def output = new CopyOnWriteArrayList<String>()
+
+		when:
+		ProcessUtils.executeIn(null, ["sh", "-c", 'sleep 60 & echo $!; wait'], true, new ProcessUtils.OutputHandler() {
+			@Override
+			void handleOutput(String line) {
+				output.add(line)
+			}
+
+			@Override
+			void handleError(String line) {
+			}
+		}, 1000)
+
+		then:
+		def e = thrown PrideException
+		e.message.startsWith "Timed out after 1 seconds"
+		output.size() == 1
+		!isRunning(output[0])
+	}
+
+	private static boolean isRunning(String pid) {
+		// Killed processes might stay around as zombies for a while if nobody reaps them
+		def state = ["ps", "-o", "stat=", "-p", pid].execute().text.trim()
+		return !state.empty && !state.startsWith("Z")
+	}
+}
@@ -0,0 +1,62 @@
+package com.prezi.pride.filters
+
+import com.prezi.pride.Module
+import com.prezi.pride.vcs.VcsStatus
+import spock.lang.Specification
+
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.regex.Pattern
+
+class FiltersTest extends Specification {
+	def modules = ["app", "legacy-api", "legacy-web", "lib"].collect { new Module(it, null) }
+	def branches = ["app": "feature/a", "legacy-api": "feature/b", "legacy-web": "master", "lib": "master"]
+	def queried = new CopyOnWriteArrayList<String>()
+	def context = new FilterContext(null, 4) {
+		@Override
+		protected VcsStatus queryStatus(Module module) throws IOException {
+			queried.add(module.name)
+			return VcsStatus.builder("abcdef0").withBranch(branches[module.name]).build()
+		}
+	}
+
+	def "status is only queried for modules matching the name filters"() {
+		def filter = Filters.and(
+				new BranchFilter(Pattern.compile("feature/.*")),
+				Filters.not(new NameMatcherFilter(Pattern.compile("legacy-.*"))))
+
+		expect:
+		filter.filter(context, modules)*.name == ["app"]
+		queried.sort() == ["app", "lib"]
+	}
+
+	def "status is queried once for multiple status filters"() {
+		def filter = Filters.and(
+				new BranchFilter(Pattern.compile("feature/.*")),
+				new ChangedFilter(true, true))
+
+		expect:
+		filter.filter(context, modules).empty
+		queried.sort() == ["app", "legacy-api", "legacy-web", "lib"]
+	}
+
+	def "or only queries status for modules not matched by name"() {
+		def filter = Filters.or(
+				new BranchFilter(Pattern.compile("master")),
+				new NameMatcherFilter(Pattern.compile("legacy-.*")))
+
+		expect:
+		filter.filter(context, modules)*.name == ["legacy-api", "legacy-web", "lib"]
+		queried.sort() == ["app", "lib"]
+	}
+
+	def "cheaper filters are evaluated first"() {
+		def filter = Filters.and(
+				new ChangedFilter(true, false),
+				new NameMatcherFilter(Pattern.compile("app")),
+				Filters.all())
+
+		expect:
+		filter.cost == FilterCost.VCS_STATUS
+		filter.toString() == "(ALL) AND (NAME = /app/) AND (HAS uncommitted CHANGES)"
+	}
+}
@@ -0,0 +1,102 @@
+package com.prezi.pride.internal
+
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class InterProcessLockTest extends Specification {
+	def lockFile = File.createTempFile("pride", ".lock")
+
+	def cleanup() {
+		lockFile.delete()
+	}
+
+	def "lock is exclusive between threads"() {
+		def lock = InterProcessLock.lock(lockFile, false)
+		def acquired = new CountDownLatch(1)
+		def thread = Thread.start {
+			InterProcessLock.lock(lockFile, true).release()
+			acquired.countDown()
+		}
+
+		expect:
+		!acquired.await(200, TimeUnit.MILLISECONDS)
+
+		when:
+		lock.release()
+
+		then:
+		acquired.await(5, TimeUnit.SECONDS)
+
+		cleanup:
+		thread.join()
+	}
+
+	def "shared locks can be held by multiple threads"() {
+		def lock = InterProcessLock.lock(lockFile, true)
+		def acquired = new CountDownLatch(1)
+		def thread = Thread.start {
+			InterProcessLock.lock(lockFile, true).release()
+			acquired.countDown()
+		}
+
+		expect:
+		acquired.await(5, TimeUnit.SECONDS)
+		InterProcessLock.tryLock(lockFile, false) == null
+
+		cleanup:
+		thread.join()
+		lock.release()
+	}
+
+	def "lock can be released by another thread"() {
+		def lock = InterProcessLock.lock(lockFile, false)
+
+		when:
+		Thread.start { lock.release() }.join()
+		def otherLock = InterProcessLock.tryLock(lockFile, false)
+
+		then:
+		otherLock != null
+
+		cleanup:
+		otherLock?.release()
+	}
+
+	def "exclusive lock can be downgraded without letting others in"() {
+		def lock = InterProcessLock.lock(lockFile, false)
+		def acquired = new CountDownLatch(1)
+		def thread = Thread.start {
+			InterProcessLock.lock(lockFile, false).release()
+			acquired.countDown()
+		}
+
+		when:
+		lock.downgrade()
+		def sharedLock = InterProcessLock.tryLock(lockFile, true)
+
+		then:
+		sharedLock != null
+		!acquired.await(200, TimeUnit.MILLISECONDS)
+
+		when:
+		sharedLock.release()
+		lock.release()
+
+		then:
+		acquired.await(5, TimeUnit.SECONDS)
+
+		cleanup:
+		thread.join()
+	}
+
+	def "lock can be acquired again after release"() {
+		when:
+		InterProcessLock.lock(lockFile, false).release()
+		InterProcessLock.lock(lockFile, true).release()
+
+		then:
+		noExceptionThrown()
+	}
+}
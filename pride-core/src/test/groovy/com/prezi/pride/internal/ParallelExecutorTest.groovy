@@ -0,0 +1,87 @@
+package com.prezi.pride.internal
+
+import com.prezi.pride.PrideException
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.atomic.AtomicInteger
+
+class ParallelExecutorTest extends Specification {
+	@Unroll
+	def "tasks are started in order with #jobs jobs"() {
+		def started = new CopyOnWriteArrayList<String>()
+		def executed = new CopyOnWriteArrayList<String>()
+
+		when:
+		new ParallelExecutor(jobs).execute(["a", "b", "c", "d", "e"], new ParallelExecutor.Task<String>() {
+			@Override
+			void started(String item, int index, int count) {
+				started.add("${index + 1}/${count} ${item}".toString())
+			}
+
+			@Override
+			void execute(String item, int index, int count) throws IOException {
+				Thread.sleep((5 - index) * 10)
+				executed.add(item)
+			}
+		})
+
+		then:
+		started == ["1/5 a", "2/5 b", "3/5 c", "4/5 d", "5/5 e"]
+		executed.sort() == ["a", "b", "c", "d", "e"]
+
+		where:
+		jobs << [1, 3, 10]
+	}
+
+	def "single failure is rethrown as is"() {
+		when:
+		new ParallelExecutor(4).execute(["a", "b", "c"], new ParallelExecutor.Task<String>() {
+			@Override
+			void started(String item, int index, int count) {
+			}
+
+			@Override
+			void execute(String item, int index, int count) throws IOException {
+				if (item == "b") {
+					throw new IOException("Cannot do b")
+				}
+			}
+		})
+
+		then:
+		def ex = thrown IOException
+		ex.message == "Cannot do b"
+	}
+
+	def "failures are aggregated, and queued tasks are cancelled"() {
+		def executed = new CopyOnWriteArrayList<String>()
+		def arrived = new AtomicInteger()
+
+		when:
+		new ParallelExecutor(2).execute(["a", "b", "c", "d"], new ParallelExecutor.Task<String>() {
+			@Override
+			void started(String item, int index, int count) {
+			}
+
+			@Override
+			void execute(String item, int index, int count) throws IOException {
+				executed.add(item)
+				// Wait for both running tasks without being interruptible
+				arrived.incrementAndGet()
+				while (arrived.get() < 2) {
+					Thread.yield()
+				}
+				throw new PrideException("Cannot do " + item)
+			}
+		})
+
+		then:
+		def ex = thrown PrideException
+		ex.message.startsWith("Failed to process 2 items")
+		ex.message.contains("a: Cannot do a")
+		ex.message.contains("b: Cannot do b")
+		executed.sort() == ["a", "b"]
+	}
+}
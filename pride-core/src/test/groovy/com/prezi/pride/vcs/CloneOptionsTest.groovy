@@ -0,0 +1,60 @@
+package com.prezi.pride.vcs
+
+import org.apache.commons.configuration.PropertiesConfiguration
+import spock.lang.Specification
+
+class CloneOptionsTest extends Specification {
+	def "sparse paths not set are not stored"() {
+		def configuration = new PropertiesConfiguration()
+		CloneOptions.UNSET.save(configuration, "modules.0")
+
+		when:
+		def options = CloneOptions.load(reload(configuration), "modules.0")
+
+		then:
+		!configuration.containsKey("modules.0.sparse")
+		!options.sparsePathsSet
+		options.sparsePaths == []
+	}
+
+	def "sparse paths set to an empty list are stored"() {
+		def configuration = new PropertiesConfiguration()
+		new CloneOptions(null, null, []).save(configuration, "modules.0")
+
+		when:
+		def options = CloneOptions.load(reload(configuration), "modules.0")
+
+		then:
+		options.sparsePathsSet
+		options.sparsePaths == []
+	}
+
+	def "sparse paths are stored"() {
+		def configuration = new PropertiesConfiguration()
+		new CloneOptions(null, null, ["services/billing", "libs/common"]).save(configuration, "modules.0")
+
+		when:
+		def options = CloneOptions.load(reload(configuration), "modules.0")
+
+		then:
+		options.sparsePathsSet
+		options.sparsePaths == ["services/billing", "libs/common"]
+	}
+
+	def "sparse paths of the module are not overridden by defaults"() {
+		def defaults = new CloneOptions(1, "blob:none", ["other"])
+
+		expect:
+		!CloneOptions.UNSET.withDefaults(CloneOptions.FULL).sparsePaths
+		new CloneOptions(null, null, []).withDefaults(defaults).sparsePaths == []
+		new CloneOptions(null, null, ["dir"]).withDefaults(defaults).sparsePaths == ["dir"]
+	}
+
+	private static PropertiesConfiguration reload(PropertiesConfiguration configuration) {
+		def writer = new StringWriter()
+		configuration.save(writer)
+		def loaded = new PropertiesConfiguration()
+		loaded.load(new StringReader(writer.toString()))
+		return loaded
+	}
+}
@@ -0,0 +1,158 @@
+package com.prezi.pride.vcs
+
+import com.prezi.pride.internal.InterProcessLock
+import com.prezi.pride.vcs.file.FileVcsSupportFactory
+import org.apache.commons.configuration.BaseConfiguration
+import org.apache.commons.io.FileUtils
+import spock.lang.Specification
+import spock.lang.Timeout
+
+import java.util.concurrent.CountDownLatch
+
+class RepoCacheTest extends Specification {
+	def root = File.createTempFile("pride", "")
+	def vcs = new Vcs("file", new FileVcsSupportFactory().createVcsSupport(new BaseConfiguration()))
+
+	def setup() {
+		root.delete()
+		root.mkdirs()
+	}
+
+	def cleanup() {
+		FileUtils.deleteDirectory(root)
+	}
+
+	def "least recently used repositories are pruned first"() {
+		def cache = new RepoCache(new File(root, "cache"), 0)
+		["a", "b", "c"].each { name ->
+			addModule(cache, name, RepoCacheMode.COPY)
+		}
+		// Use "a" again
+		addModule(cache, "a", RepoCacheMode.COPY)
+
+		when:
+		def removed = cache.prune(2500)
+
+		then:
+		removed*.url == [source("b").path]
+		cache.repositories*.url == [source("a").path, source("c").path]
+	}
+
+	def "repositories borrowed from are kept"() {
+		def cache = new RepoCache(new File(root, "cache"), 0)
+		addModule(cache, "a", RepoCacheMode.REFERENCE)
+		addModule(cache, "b", RepoCacheMode.COPY)
+
+		when:
+		def removed = cache.prune(1)
+
+		then:
+		removed*.url == [source("b").path]
+		cache.repositories*.inUse == [true]
+
+		when:
+		FileUtils.deleteDirectory(new File(root, "module-a"))
+
+		then:
+		cache.prune(1)*.url == [source("a").path]
+	}
+
+	def "repositories being used are not pruned"() {
+		def cache = new RepoCache(new File(root, "cache"), 0)
+		addModule(cache, "a", RepoCacheMode.COPY)
+		def repository = cache.repositories[0]
+		// Modules hold this lock shared while they are checked out from the mirror
+		def useLock = InterProcessLock.lock(new File(repository.directory.parentFile, repository.name + ".use.lock"), true)
+
+		expect:
+		cache.prune(0) == []
+
+		when:
+		useLock.release()
+
+		then:
+		cache.prune(0)*.url == [source("a").path]
+	}
+
+	def "mirrors stay locked until the provider is closed"() {
+		def cache = new RepoCache(new File(root, "cache"), 0)
+		addModule(cache, "a", RepoCacheMode.COPY)
+		def mirrors = cache.getMirrorProvider(vcs)
+		def mirror = mirrors.getMirror(source("a").path)
+		def lockFile = new File(mirror.parentFile, mirror.name + ".lock")
+
+		expect:
+		InterProcessLock.tryLock(lockFile, false) == null
+
+		when:
+		mirrors.close()
+		def lock = InterProcessLock.tryLock(lockFile, false)
+
+		then:
+		lock != null
+
+		cleanup:
+		lock?.release()
+	}
+
+	@Timeout(30)
+	def "providers asking for the same mirrors in opposite order don't wait for each other"() {
+		def cache = new RepoCache(new File(root, "cache"), 0)
+		["a", "b"].each { name -> addModule(cache, name, RepoCacheMode.COPY) }
+		def firstMirrorsLocked = new CountDownLatch(2)
+		def mirrorsFound = Collections.synchronizedList([])
+		def threads = [["a", "b"], ["b", "a"]].collect { names ->
+			Thread.start {
+				def mirrors = cache.getMirrorProvider(vcs)
+				try {
+					mirrors.getMirror(source(names[0]).path)
+					firstMirrorsLocked.countDown()
+					firstMirrorsLocked.await()
+					mirrorsFound.add(new File(mirrors.getMirror(source(names[1]).path), "data").isFile())
+				} finally {
+					mirrors.close()
+				}
+			}
+		}
+
+		when:
+		threads*.join()
+
+		then:
+		mirrorsFound == [true, true]
+	}
+
+	def "data directories are removed with their mirror"() {
+		def cache = new RepoCache(new File(root, "cache"), 0)
+		addModule(cache, "a", RepoCacheMode.COPY)
+		def dataDirectory = cache.getDataDirectory(source("a").path)
+		FileUtils.writeStringToFile(new File(dataDirectory, "model"), "data")
+
+		expect:
+		cache.getDataDirectory(source("b").path) == null
+
+		when:
+		cache.prune(0)
+
+		then:
+		!dataDirectory.exists()
+		cache.getDataDirectory(source("a").path) == null
+	}
+
+	private void addModule(RepoCache cache, String name, RepoCacheMode mode) {
+		def source = source(name)
+		if (!source.exists()) {
+			source.mkdirs()
+			new File(source, "data").bytes = new byte[1000]
+		}
+		def module = new File(root, "module-" + name)
+		FileUtils.deleteDirectory(module)
+		cache.checkoutThroughCache(vcs, source.path, module, null, false, mode, CloneOptions.FULL)
+		// Make sure last used times differ
+		Thread.sleep(10)
+	}
+
+	private File source(String name) {
+		return new File(root, "source-" + name)
+	}
+}
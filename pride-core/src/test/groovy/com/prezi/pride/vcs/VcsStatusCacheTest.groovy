@@ -0,0 +1,134 @@
+package com.prezi.pride.vcs
+
+import org.apache.commons.io.FileUtils
+import spock.lang.Specification
+
+class VcsStatusCacheTest extends Specification {
+	def root = File.createTempFile("pride", "status")
+	def cacheFile = new File(root, ".pride/status")
+	def statusQueries = 0
+	def ignoredPathQueries = 0
+	def vcsSupport = [
+			getStatus      : { File directory -> statusQueries++; VcsStatus.builder("r" + statusQueries).build() },
+			getStateFiles  : { File directory -> [new File(directory, ".vcs/state")] },
+			getIgnoredPaths: { File directory -> ignoredPathQueries++; ["build"] },
+	] as VcsSupport
+
+	def setup() {
+		root.delete()
+		["a", "b"].each { name ->
+			FileUtils.writeStringToFile(new File(root, "$name/.vcs/state"), "state")
+			FileUtils.writeStringToFile(new File(root, "$name/src/Source.java"), "class Source {}")
+			FileUtils.writeStringToFile(new File(root, "$name/build/Source.class"), "compiled")
+		}
+		age(root, 60000)
+	}
+
+	def cleanup() {
+		FileUtils.deleteDirectory(root)
+	}
+
+	def "status is cached while nothing changes"() {
+		def cache = new VcsStatusCache(cacheFile)
+		def status = cache.getStatus("a", new File(root, "a"), vcsSupport)
+
+		expect:
+		cache.getStatus("a", new File(root, "a"), vcsSupport).revision == status.revision
+		statusQueries == 1
+	}
+
+	def "status is queried again when files are added to the working tree"() {
+		def cache = new VcsStatusCache(cacheFile)
+		cache.getStatus("a", new File(root, "a"), vcsSupport)
+
+		when:
+		change(new File(root, "a/src/Other.java"))
+
+		then:
+		cache.getStatus("a", new File(root, "a"), vcsSupport).revision == "r2"
+	}
+
+	def "status is queried again when the state of the VCS changes"() {
+		def cache = new VcsStatusCache(cacheFile)
+		cache.getStatus("a", new File(root, "a"), vcsSupport)
+
+		when:
+		change(new File(root, "a/.vcs/state"))
+
+		then:
+		cache.getStatus("a", new File(root, "a"), vcsSupport).revision == "r2"
+	}
+
+	def "ignored paths are not checked for changes"() {
+		def cache = new VcsStatusCache(cacheFile)
+		cache.getStatus("a", new File(root, "a"), vcsSupport)
+
+		when:
+		change(new File(root, "a/build/Source.class"))
+		change(new File(root, "a/build/Other.class"))
+
+		then:
+		cache.getStatus("a", new File(root, "a"), vcsSupport).revision == "r1"
+	}
+
+	def "ignored paths are only queried again when new directories show up"() {
+		def cache = new VcsStatusCache(cacheFile)
+		cache.getStatus("a", new File(root, "a"), vcsSupport)
+
+		when:
+		change(new File(root, "a/.vcs/state"))
+		cache.getStatus("a", new File(root, "a"), vcsSupport)
+
+		then:
+		statusQueries == 2
+		ignoredPathQueries == 1
+
+		when:
+		change(new File(root, "a/src/main/Source.java"))
+		cache.getStatus("a", new File(root, "a"), vcsSupport)
+
+		then:
+		statusQueries == 3
+		ignoredPathQueries == 2
+	}
+
+	def "status of recently modified modules is not cached"() {
+		def cache = new VcsStatusCache(cacheFile)
+		FileUtils.writeStringToFile(new File(root, "a/src/Other.java"), "class Other {}")
+		cache.getStatus("a", new File(root, "a"), vcsSupport)
+
+		when:
+		def status = cache.getStatus("a", new File(root, "a"), vcsSupport)
+
+		then:
+		status.revision == "r2"
+	}
+
+	def "statuses are kept between runs, except for removed modules"() {
+		def cache = new VcsStatusCache(cacheFile)
+		cache.getStatus("a", new File(root, "a"), vcsSupport)
+		cache.getStatus("b", new File(root, "b"), vcsSupport)
+		cache.save(["a"])
+
+		when:
+		def loadedCache = new VcsStatusCache(cacheFile)
+
+		then:
+		loadedCache.getStatus("a", new File(root, "a"), vcsSupport).revision == "r1"
+		loadedCache.getStatus("b", new File(root, "b"), vcsSupport).revision == "r3"
+	}
+
+	private static void change(File file) {
+		file.parentFile.mkdirs()
+		file.text = file.exists() ? file.text + " changed" : "new"
+		age(file.parentFile, 30000)
+	}
+
+	private static void age(File file, long millis) {
+		long lastModified = System.currentTimeMillis() - millis
+		if (file.isDirectory()) {
+			file.listFiles().each { age(it, millis) }
+		}
+		file.setLastModified(lastModified)
+	}
+}
@@ -0,0 +1,112 @@
+package com.prezi.pride.vcs.file
+
+import org.apache.commons.io.FileUtils
+import org.apache.commons.lang.SystemUtils
+import spock.lang.IgnoreIf
+import spock.lang.Specification
+
+class FileSyncTest extends Specification {
+	def root = File.createTempFile("pride", "sync")
+	def source = new File(root, "source")
+	def target = new File(root, "target")
+	def sync = new FileSync(2)
+
+	def setup() {
+		root.delete()
+		write(source, "a.txt", "a")
+		write(source, "dir/b.txt", "b")
+		write(source, "dir/c.txt", "c")
+		sync.copy(source, target)
+	}
+
+	def cleanup() {
+		FileUtils.deleteDirectory(root)
+	}
+
+	def "copy records its source"() {
+		expect:
+		read(target, "a.txt") == "a"
+		read(target, "dir/b.txt") == "b"
+		sync.getSource(target) == source.absolutePath
+	}
+
+	def "update copies changed files and keeps local changes"() {
+		write(source, "a.txt", "a2")
+		write(source, "dir/d.txt", "d")
+		new File(source, "dir/c.txt").delete()
+		write(target, "dir/b.txt", "local")
+		write(source, "dir/b.txt", "b2")
+
+		when:
+		def updated = sync.update(target)
+
+		then:
+		updated
+		read(target, "a.txt") == "a2"
+		read(target, "dir/d.txt") == "d"
+		!new File(target, "dir/c.txt").exists()
+		read(target, "dir/b.txt") == "local"
+	}
+
+	def "empty directories are copied"() {
+		new File(source, "empty").mkdirs()
+		def copy = new File(root, "copy")
+
+		when:
+		sync.copy(source, copy)
+
+		then:
+		new File(copy, "empty").isDirectory()
+
+		when:
+		new File(source, "dir/new-empty").mkdirs()
+		sync.update(copy)
+
+		then:
+		new File(copy, "dir/new-empty").isDirectory()
+	}
+
+	@IgnoreIf({ SystemUtils.IS_OS_WINDOWS })
+	def "symbolic links are copied as what they point to"() {
+		write(root, "linked/e.txt", "e")
+		symlink(new File(source, "linked"), new File(root, "linked"))
+		symlink(new File(source, "f.txt"), new File(source, "a.txt"))
+		def copy = new File(root, "copy")
+
+		when:
+		sync.copy(source, copy)
+
+		then:
+		!FileUtils.isSymlink(new File(copy, "linked"))
+		read(copy, "linked/e.txt") == "e"
+		!FileUtils.isSymlink(new File(copy, "f.txt"))
+		read(copy, "f.txt") == "a"
+
+		when:
+		write(root, "linked/e.txt", "e2")
+		sync.update(copy)
+
+		then:
+		read(copy, "linked/e.txt") == "e2"
+	}
+
+	def "update skips directories without a manifest"() {
+		expect:
+		!sync.update(source)
+	}
+
+	private static void write(File directory, String path, String contents) {
+		def file = new File(directory, path)
+		FileUtils.writeStringToFile(file, contents)
+		// Make sure the change is noticed even on file systems with coarse timestamps
+		file.setLastModified(file.lastModified() + 2000)
+	}
+
+	private static void symlink(File link, File target) {
+		assert ["ln", "-s", target.absolutePath, link.absolutePath].execute().waitFor() == 0
+	}
+
+	private static String read(File directory, String path) {
+		return FileUtils.readFileToString(new File(directory, path))
+	}
+}
@@ -0,0 +1,122 @@
+package com.prezi.pride.vcs.git;
+
+import com.prezi.pride.vcs.VcsStatus;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parses the output of <code>git status --porcelain=v2 --branch</code>.
+ */
+final class GitStatus {
+	private static final String INITIAL_OID = "(initial)";
+	private static final String DETACHED_HEAD = "(detached)";
+	private static final Pattern AHEAD_BEHIND = Pattern.compile("\\+(\\d+) -(\\d+)");
+
+	private String oid;
+	private String branch;
+	private String upstream;
+	private int ahead;
+	private int behind;
+	private int changedFiles;
+	private int untrackedFiles;
+
+	private GitStatus() {
+	}
+
+	public static GitStatus parse(Iterable<String> lines) {
+		GitStatus status = new GitStatus();
+		for (String line : lines) {
+			if (line.startsWith("# ")) {
+				status.parseHeader(line.substring(2));
+			} else if (line.startsWith("1 ") || line.startsWith("2 ") || line.startsWith("u ")) {
+				status.changedFiles++;
+			} else if (line.startsWith("? ")) {
+				status.untrackedFiles++;
+			}
+		}
+		return status;
+	}
+
+	private void parseHeader(String header) {
+		int separator = header.indexOf(' ');
+		if (separator == -1) {
+			return;
+		}
+		String key = header.substring(0, separator);
+		String value = header.substring(separator + 1);
+		if ("branch.oid".equals(key)) {
+			oid = INITIAL_OID.equals(value) ? null : value;
+		} else if ("branch.head".equals(key)) {
+			branch = DETACHED_HEAD.equals(value) ? null : value;
+		} else if ("branch.upstream".equals(key)) {
+			upstream = value;
+		} else if ("branch.ab".equals(key)) {
+			Matcher matcher = AHEAD_BEHIND.matcher(value);
+			if (matcher.matches()) {
+				ahead = Integer.parseInt(matcher.group(1));
+				behind = Integer.parseInt(matcher.group(2));
+			}
+		}
+	}
+
+	/**
+	 * Returns the abbreviated commit ID of <code>HEAD</code>, or <code>null</code> if there are no commits yet.
+	 */
+	public String getRevision() {
+		if (oid == null) {
+			return null;
+		}
+		return oid.length() > 7 ? oid.substring(0, 7) : oid;
+	}
+
+	/**
+	 * Returns the current branch, or <code>null</code> if <code>HEAD</code> is detached.
+	 */
+	public String getBranch() {
+		return branch;
+	}
+
+	/**
+	 * Returns the upstream of the current branch, or <code>null</code> if there is none.
+	 */
+	public String getUpstream() {
+		return upstream;
+	}
+
+	public int getAhead() {
+		return ahead;
+	}
+
+	public int getBehind() {
+		return behind;
+	}
+
+	public int getChangedFiles() {
+		return changedFiles;
+	}
+
+	public int getUntrackedFiles() {
+		return untrackedFiles;
+	}
+
+	public boolean hasUncommittedChanges() {
+		return changedFiles > 0 || untrackedFiles > 0;
+	}
+
+	public boolean hasUnpublishedChanges() {
+		return ahead > 0;
+	}
+
+	public VcsStatus toVcsStatus() {
+		return VcsStatus.builder(getRevision())
+				.withBranch(branch)
+				.withUncommittedChanges(hasUncommittedChanges())
+				.withUnpublishedChanges(hasUnpublishedChanges())
+				.withCommitsAhead(ahead)
+				.withCommitsBehind(behind)
+				.withChangedFiles(changedFiles)
+				.withUntrackedFiles(untrackedFiles)
+				.build();
+	}
+}
@@ -1,14 +1,20 @@
 package com.prezi.pride.vcs.git;
 
-import com.google.common.base.Charsets;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import com.google.common.io.ByteStreams;
-import com.google.common.io.CharStreams;
-import com.google.common.io.LineProcessor;
+import com.google.common.collect.Sets;
+import com.prezi.pride.PrideException;
+import com.prezi.pride.ProcessResult;
 import com.prezi.pride.ProcessUtils;
+import com.prezi.pride.internal.ParallelExecutor;
+import com.prezi.pride.internal.ProgressUtils;
+import com.prezi.pride.vcs.CloneOptions;
+import com.prezi.pride.vcs.MirrorProvider;
+import com.prezi.pride.vcs.RepoCacheMode;
+import com.prezi.pride.vcs.VcsOperation;
 import com.prezi.pride.vcs.VcsStatus;
 import com.prezi.pride.vcs.VcsSupport;
 import org.apache.commons.configuration.Configuration;
@@ -18,8 +24,9 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.regex.Matcher;
@@ -40,8 +47,12 @@ public class GitVcsSupport implements VcsSupport {
 				+ "(?:\\.git)?"								// optional .git suffix
 				+ "/?"										// optional trailing slash
 				+ "$", Pattern.COMMENTS);
-	private static final Pattern STATUS_AHEAD = Pattern.compile(".*\\[ahead \\d+\\]");
 	private static final Pattern REMOTE_LINE = Pattern.compile("(\\S+)\\s+(\\S+)\\s+\\((\\S+)\\)");
+	private static final Pattern COMMIT_ID = Pattern.compile("[0-9a-f]{7,40}");
+	private static final String SUBMODULE_URL_KEY = "^submodule\\..*\\.url$";
+	private static final String SUBMODULE_PATH_KEY = "^submodule\\..*\\.path$";
+	private static final int INITIAL_DEEPEN = 64;
+	private static final int MAX_DEEPEN_ATTEMPTS = 6;
 
 	private final Configuration configuration;
 
@@ -50,130 +61,505 @@ public class GitVcsSupport implements VcsSupport {
 	}
 
 	@Override
-	public void checkout(String repositoryUrl, File targetDirectory, String revision, boolean recursive, boolean mirrored) throws IOException {
+	public void checkout(String repositoryUrl, File targetDirectory, String revision, boolean recursive, boolean mirrored, CloneOptions cloneOptions) throws IOException {
+		ImmutableList.Builder<String> options = ImmutableList.builder();
+		if (mirrored) {
+			options.add("--mirror");
+		} else {
+			if (cloneOptions.getDepth() > 0) {
+				options.add("--depth", String.valueOf(cloneOptions.getDepth()));
+				if (recursive) {
+					options.add("--shallow-submodules");
+				}
+			}
+			if (cloneOptions.getFilter() != null) {
+				options.add("--filter=" + cloneOptions.getFilter());
+			}
+		}
+		List<String> sparsePaths = mirrored ? ImmutableList.<String>of() : cloneOptions.getSparsePaths();
+		clone(repositoryUrl, targetDirectory, revision, recursive && !mirrored, sparsePaths, options.build());
+	}
+
+	@Override
+	public void checkoutFromMirror(File mirrorDirectory, File targetDirectory, String revision, boolean recursive, RepoCacheMode mode, CloneOptions cloneOptions) throws IOException {
+		ImmutableList.Builder<String> options = ImmutableList.builder();
+		switch (mode) {
+			case REFERENCE:
+				// Objects borrowed by clones must never be removed from the mirror, even when they become
+				// unreachable there because a branch was deleted or rewritten upstream
+				ProcessUtils.executeIn(mirrorDirectory, Arrays.asList("git", "config", "gc.pruneExpire", "never"));
+				options.add("--shared");
+				break;
+			case DISSOCIATE:
+				options.add("--shared", "--dissociate");
+				break;
+			default:
+				break;
+		}
+		clone(mirrorDirectory.getAbsolutePath(), targetDirectory, revision, recursive, cloneOptions.getSparsePaths(), options.build());
+	}
+
+	@Override
+	public void checkoutWorktree(File mirrorDirectory, File sharedDirectory, File targetDirectory, String revision, boolean recursive, CloneOptions cloneOptions) throws IOException {
+		// The shared repository borrows objects from the mirror
+		ProcessUtils.executeIn(mirrorDirectory, Arrays.asList("git", "config", "gc.pruneExpire", "never"));
+		if (!sharedDirectory.isDirectory()) {
+			log.debug("Creating shared repository {} for {}", sharedDirectory, mirrorDirectory);
+			File incompleteSharedDirectory = new File(sharedDirectory.getPath() + ".incomplete");
+			FileUtils.deleteDirectory(incompleteSharedDirectory);
+			ProcessUtils.executeIn(null, Arrays.asList("git", "init", "--quiet", "--bare", incompleteSharedDirectory.getPath()));
+			FileUtils.writeStringToFile(new File(incompleteSharedDirectory, "objects/info/alternates"),
+					new File(mirrorDirectory.getAbsoluteFile(), "objects").getPath() + "\n");
+			ProcessUtils.executeIn(incompleteSharedDirectory, Arrays.asList("git", "config", "remote.origin.fetch", "+refs/heads/*:refs/remotes/origin/*"));
+			if (!incompleteSharedDirectory.renameTo(sharedDirectory)) {
+				throw new IOException("Could not move " + incompleteSharedDirectory + " to " + sharedDirectory);
+			}
+		}
+
+		// Objects are already there, so this only updates the remote-tracking branches
+		ProcessUtils.executeIn(sharedDirectory, Arrays.asList("git", "fetch", "--quiet", "--prune",
+				mirrorDirectory.getAbsolutePath(), "+refs/heads/*:refs/remotes/origin/*"), timeout(VcsOperation.FETCH));
+		// Forget about working trees of modules that have been removed since, including the one
+		// in the target directory, so that its branch can be checked out there again
+		FileUtils.forceMkdir(targetDirectory.getParentFile());
+		FileUtils.deleteQuietly(targetDirectory);
+		ProcessUtils.executeIn(sharedDirectory, Arrays.asList("git", "worktree", "prune"));
+
+		String branch = revision;
+		if (Strings.isNullOrEmpty(branch)) {
+			ProcessResult head = ProcessUtils.executeIn(mirrorDirectory, Arrays.asList("git", "symbolic-ref", "--short", "HEAD"), false, false);
+			branch = head.getOutput().trim();
+		}
+
+		log.debug("Adding working tree {} of {}", targetDirectory, sharedDirectory);
+		ImmutableList.Builder<String> worktreeCommandLine = ImmutableList.builder();
+		worktreeCommandLine.add("git", "worktree", "add");
+		List<String> sparsePaths = cloneOptions.getSparsePaths();
+		if (!sparsePaths.isEmpty()) {
+			worktreeCommandLine.add("--no-checkout");
+		}
+		if (!hasCommit(sharedDirectory, "refs/remotes/origin/" + branch)) {
+			// A tag or a commit
+			worktreeCommandLine.add("--detach", targetDirectory.getAbsolutePath(), branch);
+		} else if (isCheckedOut(sharedDirectory, branch)) {
+			// Git doesn't allow the same branch to be checked out in two working trees
+			log.info("Branch {} is already checked out in another pride, borrowing objects from the cached repository instead", branch);
+			checkoutFromMirror(mirrorDirectory, targetDirectory, branch, recursive, RepoCacheMode.REFERENCE, cloneOptions);
+			return;
+		} else {
+			// Start from the remote branch, like a fresh clone would
+			ProcessUtils.executeIn(sharedDirectory, Arrays.asList("git", "branch", "--quiet", "--force", "--track", branch, "origin/" + branch));
+			worktreeCommandLine.add(targetDirectory.getAbsolutePath(), branch);
+		}
+		ProcessUtils.executeIn(sharedDirectory, worktreeCommandLine.build(), timeout(VcsOperation.CLONE));
+
+		if (!sparsePaths.isEmpty()) {
+			setSparsePaths(targetDirectory, sparsePaths);
+			ProcessUtils.executeIn(targetDirectory, Arrays.asList("git", "checkout"), timeout(VcsOperation.CLONE));
+		}
+		if (recursive) {
+			updateSubmodules(targetDirectory, null);
+		}
+	}
+
+	private static boolean isCheckedOut(File sharedDirectory, String branch) throws IOException {
+		// worktree /path/to/module
+		// HEAD 7d6a3b1c...
+		// branch refs/heads/master
+		ProcessResult result = ProcessUtils.executeIn(sharedDirectory, Arrays.asList("git", "worktree", "list", "--porcelain"), false, false);
+		return result.getOutputLines().contains("branch refs/heads/" + branch);
+	}
+
+	/**
+	 * Returns whether the working copy is a linked working tree created by <code>git worktree</code>.
+	 */
+	static boolean isLinkedWorkingTree(File targetDirectory) throws IOException {
+		return new File(getGitDirectory(targetDirectory), "commondir").isFile();
+	}
+
+	private void clone(String repositoryUrl, File targetDirectory, String revision, boolean recursive, List<String> sparsePaths, List<String> options) throws IOException {
 		FileUtils.forceMkdir(targetDirectory.getParentFile());
 		FileUtils.deleteQuietly(targetDirectory);
 
 		log.debug("Cloning {} into {}", repositoryUrl, targetDirectory);
 		ImmutableList.Builder<String> cloneCommandLine = ImmutableList.builder();
 		cloneCommandLine.add("git", "clone", repositoryUrl, targetDirectory.getPath());
-
-		if (mirrored) {
-			cloneCommandLine.add("--mirror");
+		cloneCommandLine.addAll(options);
+		boolean commit = isCommitId(repositoryUrl, revision);
+		boolean sparse = !sparsePaths.isEmpty();
+		if (!commit && !Strings.isNullOrEmpty(revision)) {
+			// Check out branches and tags right away instead of writing the working tree twice
+			cloneCommandLine.add("--branch", revision);
+		}
+		if (commit || sparse) {
+			// Commits can only be checked out after cloning, and sparse paths can only be set up
+			// after cloning, so don't check out anything until then
+			cloneCommandLine.add("--no-checkout");
 		} else if (recursive) {
-			cloneCommandLine.add("--recursive");
+			cloneCommandLine.add("--recursive", "--jobs", String.valueOf(ProgressUtils.getSubmoduleJobs(configuration)));
 		}
-		ProcessUtils.executeIn(null, cloneCommandLine.build());
+		ProcessUtils.executeIn(null, cloneCommandLine.build(), timeout(VcsOperation.CLONE));
 
-		if (!Strings.isNullOrEmpty(revision)) {
+		if (commit || sparse) {
+			if (commit && !hasCommit(targetDirectory, revision) && isShallow(targetDirectory)) {
+				log.info("Fetching the full history of {} to check out {}", targetDirectory.getName(), revision);
+				ProcessUtils.executeIn(targetDirectory, Arrays.asList("git", "fetch", "--unshallow"), timeout(VcsOperation.FETCH));
+			}
+			if (sparse) {
+				setSparsePaths(targetDirectory, sparsePaths);
+			}
 			ImmutableList.Builder<String> checkoutCommandLine = ImmutableList.builder();
-			checkoutCommandLine.add("git", "checkout", revision);
-			ProcessUtils.executeIn(targetDirectory, checkoutCommandLine.build());
+			checkoutCommandLine.add("git", "checkout");
+			if (commit) {
+				checkoutCommandLine.add(revision);
+			}
+			ProcessUtils.executeIn(targetDirectory, checkoutCommandLine.build(), timeout(VcsOperation.CLONE));
+			if (recursive) {
+				updateSubmodules(targetDirectory, null);
+			}
 		}
 	}
 
+	/**
+	 * Returns whether the revision is a commit ID. Branches and tags can look like commit IDs, too,
+	 * so only revisions that the remote has no such branch or tag for are treated as commits.
+	 */
+	private boolean isCommitId(String repositoryUrl, String revision) throws IOException {
+		if (Strings.isNullOrEmpty(revision) || !COMMIT_ID.matcher(revision).matches()) {
+			return false;
+		}
+		ProcessResult refs = ProcessUtils.executeIn(null, Arrays.asList("git", "ls-remote", repositoryUrl,
+				"refs/heads/" + revision, "refs/tags/" + revision), false, false, timeout(VcsOperation.FETCH));
+		return refs.getOutput().trim().isEmpty();
+	}
+
 	@Override
-	public void update(File targetDirectory, String revision, boolean recursive, boolean mirrored) throws IOException {
-		// Cached repositories need to update all branches
-		if (!mirrored) {
-			// Fetch changes
-			ProcessUtils.executeIn(targetDirectory, Arrays.asList("git", "remote", "update"));
+	public void setSparsePaths(File targetDirectory, List<String> sparsePaths) throws IOException {
+		ProcessResult current = ProcessUtils.executeIn(targetDirectory, Arrays.asList("git", "config", "--bool", "core.sparseCheckout"),
+				false, false, Arrays.asList(0, 1));
+		boolean enabled = "true".equals(current.getOutput().trim());
+		if (sparsePaths.isEmpty()) {
+			if (enabled) {
+				log.debug("Checking out every path in {}", targetDirectory);
+				ProcessUtils.executeIn(targetDirectory, Arrays.asList("git", "sparse-checkout", "disable"), timeout(VcsOperation.CLONE));
+			}
+			return;
+		}
 
-			if (!Strings.isNullOrEmpty(revision) && !revision.equals(getBranch(targetDirectory))) {
-				ProcessUtils.executeIn(targetDirectory, Arrays.asList("git", "checkout", revision));
-			} else {
-				// Update working copy
-				String updateCommand = configuration.getString(GIT_UPDATE, "git rebase --autostash");
-				ProcessUtils.executeIn(targetDirectory, Arrays.asList(updateCommand.split(" ")));
+		if (enabled) {
+			ProcessResult list = ProcessUtils.executeIn(targetDirectory, Arrays.asList("git", "sparse-checkout", "list"), false, false);
+			if (Sets.newHashSet(list.getOutputLines()).equals(Sets.newHashSet(sparsePaths))) {
+				return;
 			}
+		} else {
+			// Cone mode only matches whole directories, which is much faster than arbitrary patterns
+			ProcessUtils.executeIn(targetDirectory, Arrays.asList("git", "sparse-checkout", "init", "--cone"));
+		}
+		log.debug("Checking out {} in {}", sparsePaths, targetDirectory);
+		ImmutableList.Builder<String> sparseCommandLine = ImmutableList.builder();
+		sparseCommandLine.add("git", "sparse-checkout", "set", "--");
+		sparseCommandLine.addAll(sparsePaths);
+		ProcessUtils.executeIn(targetDirectory, sparseCommandLine.build(), timeout(VcsOperation.CLONE));
+	}
 
-			// Update submodules if necessary
-			if (recursive) {
-				ProcessUtils.executeIn(targetDirectory, Arrays.asList("git", "submodule", "update", "--init", "--recursive"));
+	@Override
+	public void updateSubmodules(File targetDirectory, final MirrorProvider mirrors) throws IOException {
+		int jobs = ProgressUtils.getSubmoduleJobs(configuration);
+		if (mirrors == null) {
+			ProcessUtils.executeIn(targetDirectory, Arrays.asList("git", "submodule", "update", "--init", "--recursive", "--jobs", String.valueOf(jobs)), timeout(VcsOperation.CLONE));
+			return;
+		}
+
+		// Record the URLs of submodules, resolving the ones relative to the remote of the module
+		ProcessUtils.executeIn(targetDirectory, Arrays.asList("git", "submodule", "init"));
+		Collection<String> urls = Sets.newTreeSet(getConfigValues(targetDirectory, null, SUBMODULE_URL_KEY));
+		if (urls.isEmpty()) {
+			return;
+		}
+
+		// Fetching from the remotes is what takes time, so update the mirrors in parallel
+		final Map<String, File> mirrorDirectories = Maps.newConcurrentMap();
+		new ParallelExecutor(jobs).execute(urls, new ParallelExecutor.Task<String>() {
+			@Override
+			public void started(String url, int index, int count) {
+			}
+
+			@Override
+			public void execute(String url, int index, int count) throws IOException {
+				try {
+					mirrorDirectories.put(url, mirrors.getMirror(url));
+				} catch (Exception ex) {
+					log.warn("Could not cache submodule {}, cloning it from its remote: {}", url, ex.getMessage());
+					log.debug("Exception while caching submodule {}", url, ex);
+				}
+			}
+		});
+
+		ImmutableList.Builder<String> updateCommandLine = ImmutableList.builder();
+		updateCommandLine.add("git");
+		// Mirrors are local repositories, which newer versions of Git don't clone submodules from by default
+		updateCommandLine.add("-c", "protocol.file.allow=always");
+		for (String url : urls) {
+			// Only rewrites URLs for this command, submodules still fetch from their remotes later.
+			// Rewrites match the longest prefix of a URL, so every URL gets its own rule: otherwise the rule
+			// for https://host/repo would also rewrite https://host/repo-other if that could not be mirrored.
+			File mirrorDirectory = mirrorDirectories.get(url);
+			String replacement = mirrorDirectory != null ? mirrorDirectory.getAbsolutePath() : url;
+			updateCommandLine.add("-c", "url." + replacement + ".insteadOf=" + url);
+		}
+		updateCommandLine.add("submodule", "update", "--init", "--jobs", String.valueOf(jobs));
+		try {
+			ProcessUtils.executeIn(targetDirectory, updateCommandLine.build(), timeout(VcsOperation.CLONE));
+		} catch (PrideException ex) {
+			// A mirror used within its time-to-live might not have the commit the module points to yet
+			log.warn("Could not check out submodules of {} from the repo cache, cloning them from their remotes", targetDirectory.getName());
+			log.debug("Exception while checking out submodules of {}", targetDirectory, ex);
+			ProcessUtils.executeIn(targetDirectory, Arrays.asList("git", "submodule", "update", "--init", "--jobs", String.valueOf(jobs)), timeout(VcsOperation.CLONE));
+		}
+
+		// Nested submodules can only be found once their parents are checked out
+		for (String path : getConfigValues(targetDirectory, ".gitmodules", SUBMODULE_PATH_KEY)) {
+			File submoduleDirectory = new File(targetDirectory, path);
+			if (new File(submoduleDirectory, ".gitmodules").isFile()) {
+				updateSubmodules(submoduleDirectory, mirrors);
+			}
+		}
+	}
+
+	/**
+	 * Returns the values of the configuration keys matching the given pattern, read from the given file
+	 * or from the configuration of the repository.
+	 */
+	private static List<String> getConfigValues(File targetDirectory, String file, String keyPattern) throws IOException {
+		ImmutableList.Builder<String> configCommandLine = ImmutableList.builder();
+		configCommandLine.add("git", "config");
+		if (file != null) {
+			configCommandLine.add("--file", file);
+		}
+		configCommandLine.add("--get-regexp", keyPattern);
+		// Exit code 1 means no keys match
+		ProcessResult result = ProcessUtils.executeIn(targetDirectory, configCommandLine.build(), false, false, Arrays.asList(0, 1));
+		List<String> values = Lists.newArrayList();
+		for (String line : result.getOutputLines()) {
+			int separator = line.indexOf(' ');
+			if (separator != -1) {
+				values.add(line.substring(separator + 1));
 			}
+		}
+		return values;
+	}
+
+	@Override
+	public void update(File targetDirectory, String revision, boolean recursive, boolean mirrored) throws IOException {
+		fetch(targetDirectory, mirrored);
+		// Cached repositories have no working copy
+		if (!mirrored) {
+			updateWorkingCopy(targetDirectory, revision, recursive);
+		}
+	}
+
+	@Override
+	public void fetch(File targetDirectory, boolean mirrored) throws IOException {
+		if (!mirrored) {
+			ProcessUtils.executeIn(targetDirectory, Arrays.asList("git", "remote", "update"), timeout(VcsOperation.FETCH));
 		} else {
-			// Update the remote
-			ProcessUtils.executeIn(targetDirectory, Arrays.asList("git", "remote", "update", "--prune"));
+			// Cached repositories need to update all branches
+			ProcessUtils.executeIn(targetDirectory, Arrays.asList("git", "remote", "update", "--prune"), timeout(VcsOperation.FETCH));
 		}
 	}
 
 	@Override
-	public boolean hasChanges(File targetDirectory) throws IOException {
-		VcsStatus.Builder builder = VcsStatus.builder("");
-		getStatusInternal(targetDirectory, builder);
-		VcsStatus status = builder.build();
-		return status.hasUncommittedChanges() || status.hasUnpublishedChanges();
+	public void optimizeMirror(File mirrorDirectory, boolean full) throws IOException {
+		// Unlike 'git repack -a -d', 'git gc' respects gc.pruneExpire, and keeps objects borrowed by clones
+		ImmutableList.Builder<String> gcCommandLine = ImmutableList.builder();
+		gcCommandLine.add("git", "-c", "repack.writeBitmaps=true", "gc", "--quiet");
+		if (!full) {
+			gcCommandLine.add("--auto");
+		}
+		ProcessUtils.executeIn(mirrorDirectory, gcCommandLine.build(), timeout(VcsOperation.MAINTENANCE));
 	}
 
 	@Override
-	public VcsStatus getStatus(File targetDirectory) throws IOException {
-		final VcsStatus.Builder status = VcsStatus.builder(getRevision(targetDirectory));
-		status.withBranch(getBranch(targetDirectory));
-		getStatusInternal(targetDirectory, status);
-		return status.build();
+	public boolean exportMirror(File mirrorDirectory, File exportFile) throws IOException {
+		// Git refuses to write a bundle without refs
+		ProcessResult refs = ProcessUtils.executeIn(mirrorDirectory, Arrays.asList("git", "for-each-ref", "--count=1"), false, false);
+		if (refs.getOutput().trim().isEmpty()) {
+			return false;
+		}
+		ProcessUtils.executeIn(mirrorDirectory, Arrays.asList("git", "bundle", "create", "--quiet", exportFile.getAbsolutePath(), "--all"),
+				timeout(VcsOperation.MAINTENANCE));
+		return true;
 	}
 
-	private void getStatusInternal(File targetDirectory, final VcsStatus.Builder status) throws IOException {
-		// ## master...origin/master [ahead 1]
-		//  M non-added-modification.txt
-		// M  added-modification.txt
-		// ?? non-added-file.txt
-		Process process = ProcessUtils.executeIn(targetDirectory, Arrays.asList("git", "status", "--branch", "--porcelain"), false, false);
+	@Override
+	public void importMirror(File exportFile, File mirrorDirectory, String repositoryUrl) throws IOException {
+		ProcessUtils.executeIn(null, Arrays.asList("git", "clone", "--quiet", "--mirror", exportFile.getAbsolutePath(), mirrorDirectory.getPath()),
+				timeout(VcsOperation.CLONE));
+		// Fetch from the remote from now on, like a mirror cloned from it
+		ProcessUtils.executeIn(mirrorDirectory, Arrays.asList("git", "remote", "set-url", "origin", repositoryUrl));
+	}
 
-		CharStreams.readLines(new InputStreamReader(process.getInputStream(), Charsets.UTF_8), new LineProcessor<Void>() {
-			@Override
-			@SuppressWarnings("NullableProblems")
-			public boolean processLine(String line) throws IOException {
-				if (line.startsWith("#")) {
-					// Check if we have commits to be pushed
-					if (STATUS_AHEAD.matcher(line).matches()) {
-						status.withUnpublishedChanges(true);
-					}
-				} else if (!line.isEmpty()) {
-					// Check if we have uncommitted files
-					status.withUncommittedChanges(true);
-					return false;
-				}
-				return true;
+	@Override
+	public void updateWorkingCopy(File targetDirectory, String revision, boolean recursive) throws IOException {
+		boolean shallow = isShallow(targetDirectory);
+		if (!Strings.isNullOrEmpty(revision) && !revision.equals(getBranch(targetDirectory))) {
+			if (shallow && !hasCommit(targetDirectory, revision) && !hasCommit(targetDirectory, "refs/remotes/origin/" + revision)) {
+				// Shallow clones only fetch the branch they were cloned with
+				ProcessUtils.executeIn(targetDirectory, Arrays.asList("git", "remote", "set-branches", "--add", "origin", revision));
+				ProcessUtils.executeIn(targetDirectory, Arrays.asList("git", "remote", "update"), timeout(VcsOperation.FETCH));
+			}
+			ProcessUtils.executeIn(targetDirectory, Arrays.asList("git", "checkout", revision));
+		} else {
+			if (shallow) {
+				deepenToUpstream(targetDirectory);
 			}
+			// Update working copy
+			String updateCommand = configuration.getString(GIT_UPDATE, "git rebase --autostash");
+			ProcessUtils.executeIn(targetDirectory, Arrays.asList(updateCommand.split(" ")));
+		}
 
-			@Override
-			public Void getResult() {
-				return null;
+		// Update submodules if necessary
+		if (recursive) {
+			updateSubmodules(targetDirectory, null);
+		}
+	}
+
+	/**
+	 * Fetches more history into a shallow clone until the current branch and its upstream have a common ancestor,
+	 * so that the branch can be rebased.
+	 */
+	private void deepenToUpstream(File targetDirectory) throws IOException {
+		int deepen = INITIAL_DEEPEN;
+		for (int attempt = 0; attempt < MAX_DEEPEN_ATTEMPTS; attempt++) {
+			// Exit code 1 means there is no common ancestor, anything else (like a missing upstream) is left to the update
+			ProcessResult mergeBase = ProcessUtils.executeIn(targetDirectory, Arrays.asList("git", "merge-base", "HEAD", "@{upstream}"),
+					false, false, Arrays.asList(0, 1, 128), timeout(VcsOperation.STATUS));
+			if (mergeBase.getExitCode() != 1 || !isShallow(targetDirectory)) {
+				return;
 			}
-		});
+			log.debug("Fetching {} more commits into {}", deepen, targetDirectory);
+			ProcessUtils.executeIn(targetDirectory, Arrays.asList("git", "fetch", "--deepen=" + deepen), timeout(VcsOperation.FETCH));
+			deepen *= 2;
+		}
+		log.info("Fetching the full history of {} to update it", targetDirectory.getName());
+		ProcessUtils.executeIn(targetDirectory, Arrays.asList("git", "fetch", "--unshallow"), timeout(VcsOperation.FETCH));
+	}
+
+	private static boolean hasCommit(File targetDirectory, String revision) throws IOException {
+		ProcessResult result = ProcessUtils.executeIn(targetDirectory, Arrays.asList("git", "rev-parse", "--quiet", "--verify", revision + "^{commit}"),
+				false, false, Arrays.asList(0, 1));
+		return result.getExitCode() == 0;
+	}
+
+	private static boolean isShallow(File targetDirectory) throws IOException {
+		return new File(getCommonDirectory(targetDirectory), "shallow").isFile();
 	}
 
-	private String getRevision(File targetDirectory) throws IOException {
-		Process process = ProcessUtils.executeIn(targetDirectory, Arrays.asList("git", "rev-parse", "HEAD"), false, false);
-		String result = new String(ByteStreams.toByteArray(process.getInputStream()), Charsets.UTF_8);
-		return result.trim().substring(0, 7);
+	@Override
+	public boolean hasChanges(File targetDirectory) throws IOException {
+		GitStatus status = readStatus(targetDirectory);
+		return status.hasUncommittedChanges() || status.hasUnpublishedChanges();
+	}
+
+	@Override
+	public VcsStatus getStatus(File targetDirectory) throws IOException {
+		return readStatus(targetDirectory).toVcsStatus();
 	}
 
 	@Override
 	public String getBranch(File targetDirectory) throws IOException {
-		Process process = ProcessUtils.executeIn(targetDirectory, Arrays.asList("git", "branch", "--list"), false, false);
-		return CharStreams.readLines(new InputStreamReader(process.getInputStream(), Charsets.UTF_8), new LineProcessor<String>() {
-			private String branch;
+		return readStatus(targetDirectory).getBranch();
+	}
 
-			@Override
-			@SuppressWarnings("NullableProblems")
-			public boolean processLine(String line) throws IOException {
-				if (line.startsWith("* ")) {
-					String branchCandidate = line.substring(2);
-					if (!branchCandidate.startsWith("(detached from ")) {
-						this.branch = branchCandidate;
-						return false;
-					}
-				}
-				return true;
+	@Override
+	public Collection<File> getStateFiles(File targetDirectory) throws IOException {
+		File gitDirectory = getGitDirectory(targetDirectory);
+		File commonDirectory = getCommonDirectory(targetDirectory);
+
+		List<File> stateFiles = Lists.newArrayList();
+		File headFile = new File(gitDirectory, "HEAD");
+		stateFiles.add(headFile);
+		stateFiles.add(new File(gitDirectory, "index"));
+		stateFiles.add(new File(commonDirectory, "packed-refs"));
+		stateFiles.add(new File(commonDirectory, "FETCH_HEAD"));
+		// Changes what is ignored, like .gitignore files in the working tree
+		stateFiles.add(new File(commonDirectory, "info/exclude"));
+		if (headFile.isFile()) {
+			String head = FileUtils.readFileToString(headFile).trim();
+			if (head.startsWith("ref: ")) {
+				stateFiles.add(new File(commonDirectory, head.substring(5)));
 			}
+		}
+		// Remote-tracking branches determine unpublished changes
+		File remoteRefsDirectory = new File(commonDirectory, "refs/remotes");
+		if (remoteRefsDirectory.isDirectory()) {
+			stateFiles.addAll(FileUtils.listFiles(remoteRefsDirectory, null, true));
+		}
+		return stateFiles;
+	}
 
-			@Override
-			public String getResult() {
-				return branch;
+	@Override
+	public Collection<String> getIgnoredPaths(File targetDirectory) throws IOException {
+		// Ignored directories are listed as a whole, with a trailing slash. Paths with unusual characters
+		// are quoted, and won't match any file in the working tree, which is harmless.
+		ProcessResult result = ProcessUtils.executeIn(targetDirectory, Arrays.asList("git", "-c", "core.quotePath=false",
+				"ls-files", "--others", "--ignored", "--exclude-standard", "--directory"), false, false, timeout(VcsOperation.STATUS));
+		List<String> lines = Lists.newArrayList(result.getOutputLines());
+		Collections.sort(lines);
+		List<String> ignoredPaths = Lists.newArrayList();
+		for (int i = 0; i < lines.size(); i++) {
+			String line = lines.get(i);
+			// Directories with nothing but ignored files are listed too, but they are not ignored themselves:
+			// new files in them would be untracked
+			if (line.isEmpty() || (line.endsWith("/") && i + 1 < lines.size() && lines.get(i + 1).startsWith(line))) {
+				continue;
 			}
-		});
+			ignoredPaths.add(line.endsWith("/") ? line.substring(0, line.length() - 1) : line);
+		}
+		return ignoredPaths;
+	}
+
+	/**
+	 * Returns the Git directory of a working copy, following <code>gitdir:</code> links.
+	 */
+	static File getGitDirectory(File targetDirectory) throws IOException {
+		File dotGit = new File(targetDirectory, ".git");
+		if (dotGit.isFile()) {
+			String link = FileUtils.readFileToString(dotGit).trim();
+			if (link.startsWith("gitdir: ")) {
+				return resolve(targetDirectory, link.substring(8));
+			}
+		}
+		return dotGit;
+	}
+
+	/**
+	 * Returns the directory holding the refs and objects of a working copy. Linked working trees
+	 * share these with the main repository.
+	 */
+	static File getCommonDirectory(File targetDirectory) throws IOException {
+		File gitDirectory = getGitDirectory(targetDirectory);
+		File commonDirectoryFile = new File(gitDirectory, "commondir");
+		if (commonDirectoryFile.isFile()) {
+			return resolve(gitDirectory, FileUtils.readFileToString(commonDirectoryFile).trim());
+		}
+		return gitDirectory;
+	}
+
+	private static File resolve(File base, String path) {
+		File file = new File(path);
+		return file.isAbsolute() ? file : new File(base, path);
+	}
+
+	private GitStatus readStatus(File targetDirectory) throws IOException {
+		// # branch.oid 7d6a3b1c...
+		// # branch.head master
+		// # branch.upstream origin/master
+		// # branch.ab +1 -0
+		// 1 .M N... 100644 100644 100644 3e2ceb9... 3e2ceb9... non-added-modification.txt
+		// ? non-added-file.txt
+		ProcessResult result = ProcessUtils.executeIn(targetDirectory, Arrays.asList("git", "status", "--porcelain=v2", "--branch"), false, false, timeout(VcsOperation.STATUS));
+		return GitStatus.parse(result.getOutputLines());
 	}
 
 	@Override
@@ -193,8 +579,8 @@ public class GitVcsSupport implements VcsSupport {
 
 	@Override
 	public String getRepositoryUrl(File targetDirectory) throws IOException {
-		Process process = ProcessUtils.executeIn(targetDirectory, Arrays.asList("git", "remote", "-v"), false, false);
-		List<String> remoteLines = CharStreams.readLines(new InputStreamReader(process.getInputStream(), Charsets.UTF_8));
+		ProcessResult result = ProcessUtils.executeIn(targetDirectory, Arrays.asList("git", "remote", "-v"), false, false, timeout(VcsOperation.STATUS));
+		List<String> remoteLines = result.getOutputLines();
 		Map<String, String> remoteUrls = Maps.newLinkedHashMap();
 		for (String remoteLine : remoteLines) {
 			Matcher matcher = REMOTE_LINE.matcher(remoteLine);
@@ -209,6 +595,13 @@ public class GitVcsSupport implements VcsSupport {
 			remoteUrls.put(remote, url);
 		}
 
+		return selectRepositoryUrl(remoteUrls);
+	}
+
+	/**
+	 * Selects the URL to use from the fetch URLs of the remotes of a repository.
+	 */
+	static String selectRepositoryUrl(Map<String, String> remoteUrls) {
 		if (remoteUrls.size() == 0) {
 			// We found no remotes
 			return null;
@@ -241,4 +634,8 @@ public class GitVcsSupport implements VcsSupport {
 			return null;
 		}
 	}
+
+	private long timeout(VcsOperation operation) {
+		return operation.getTimeout(configuration);
+	}
 }
@@ -12,6 +12,11 @@ public class GitVcsSupportFactory implements VcsSupportFactory {
 		return "git";
 	}
 
+	@Override
+	public String getBackend() {
+		return "cli";
+	}
+
 	@Override
 	public VcsSupport createVcsSupport(Configuration configuration) {
 		return new GitVcsSupport(configuration);
@@ -19,6 +24,7 @@ public class GitVcsSupportFactory implements VcsSupportFactory {
 
 	@Override
 	public boolean canSupport(File targetDirectory) {
-		return new File(targetDirectory, ".git").isDirectory();
+		// Linked working trees have a .git file pointing to the repository instead
+		return new File(targetDirectory, ".git").exists();
 	}
 }
@@ -0,0 +1,132 @@
+package com.prezi.pride.vcs.git;
+
+import com.google.common.collect.Maps;
+import com.prezi.pride.vcs.VcsStatus;
+import org.apache.commons.configuration.Configuration;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.Status;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.BranchTrackingStatus;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.transport.RemoteConfig;
+import org.eclipse.jgit.transport.URIish;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.Map;
+
+/**
+ * Git support that reads the state of working copies in-process using JGit instead of forking
+ * <code>git</code>. Operations that change the repository (clone, fetch, checkout, rebase)
+ * are still executed by the <code>git</code> command line client, as is everything in linked
+ * working trees created by <code>git worktree</code>, which JGit doesn't support.
+ */
+public class JGitVcsSupport extends GitVcsSupport {
+	JGitVcsSupport(Configuration configuration) {
+		super(configuration);
+	}
+
+	@Override
+	public boolean hasChanges(File targetDirectory) throws IOException {
+		if (isLinkedWorkingTree(targetDirectory)) {
+			return super.hasChanges(targetDirectory);
+		}
+		VcsStatus status = getStatus(targetDirectory);
+		return status.hasUncommittedChanges() || status.hasUnpublishedChanges();
+	}
+
+	@Override
+	public VcsStatus getStatus(File targetDirectory) throws IOException {
+		if (isLinkedWorkingTree(targetDirectory)) {
+			return super.getStatus(targetDirectory);
+		}
+		Repository repository = openRepository(targetDirectory);
+		try {
+			ObjectId head = repository.resolve(Constants.HEAD);
+			String branch = getBranch(repository);
+			VcsStatus.Builder builder = VcsStatus.builder(head != null ? head.abbreviate(7).name() : null);
+			builder.withBranch(branch);
+
+			if (branch != null) {
+				BranchTrackingStatus trackingStatus = BranchTrackingStatus.of(repository, branch);
+				if (trackingStatus != null) {
+					builder.withUnpublishedChanges(trackingStatus.getAheadCount() > 0);
+					builder.withCommitsAhead(trackingStatus.getAheadCount());
+					builder.withCommitsBehind(trackingStatus.getBehindCount());
+				}
+			}
+
+			Status status;
+			try {
+				status = Git.wrap(repository).status().call();
+			} catch (GitAPIException e) {
+				throw new IOException("Could not read status of " + targetDirectory, e);
+			}
+			int changedFiles = status.getUncommittedChanges().size();
+			int untrackedFiles = status.getUntracked().size();
+			builder.withUncommittedChanges(changedFiles > 0 || untrackedFiles > 0);
+			builder.withChangedFiles(changedFiles);
+			builder.withUntrackedFiles(untrackedFiles);
+			return builder.build();
+		} finally {
+			repository.close();
+		}
+	}
+
+	@Override
+	public String getBranch(File targetDirectory) throws IOException {
+		if (isLinkedWorkingTree(targetDirectory)) {
+			return super.getBranch(targetDirectory);
+		}
+		Repository repository = openRepository(targetDirectory);
+		try {
+			return getBranch(repository);
+		} finally {
+			repository.close();
+		}
+	}
+
+	@Override
+	public String getRepositoryUrl(File targetDirectory) throws IOException {
+		if (isLinkedWorkingTree(targetDirectory)) {
+			return super.getRepositoryUrl(targetDirectory);
+		}
+		Repository repository = openRepository(targetDirectory);
+		try {
+			// Sort by name, the same way 'git remote' lists remotes
+			Map<String, String> remoteUrls = Maps.newTreeMap();
+			for (RemoteConfig remote : RemoteConfig.getAllRemoteConfigs(repository.getConfig())) {
+				for (URIish uri : remote.getURIs()) {
+					if (!remoteUrls.containsKey(remote.getName())) {
+						remoteUrls.put(remote.getName(), uri.toString());
+					}
+				}
+			}
+			return selectRepositoryUrl(remoteUrls);
+		} catch (URISyntaxException e) {
+			throw new IOException("Invalid remote URL in " + targetDirectory, e);
+		} finally {
+			repository.close();
+		}
+	}
+
+	private static String getBranch(Repository repository) throws IOException {
+		String fullBranch = repository.getFullBranch();
+		if (fullBranch == null || !fullBranch.startsWith(Constants.R_HEADS)) {
+			// Detached HEAD
+			return null;
+		}
+		return Repository.shortenRefName(fullBranch);
+	}
+
+	private static Repository openRepository(File targetDirectory) throws IOException {
+		return new FileRepositoryBuilder()
+				.setWorkTree(targetDirectory)
+				.setMustExist(true)
+				.build();
+	}
+}
@@ -0,0 +1,20 @@
+package com.prezi.pride.vcs.git;
+
+import com.prezi.pride.vcs.VcsSupport;
+import org.apache.commons.configuration.Configuration;
+
+/**
+ * Creates Git support that reads the state of working copies in-process with JGit.
+ * Select it by setting <code>git.backend</code> to <code>jgit</code>.
+ */
+public class JGitVcsSupportFactory extends GitVcsSupportFactory {
+	@Override
+	public String getBackend() {
+		return "jgit";
+	}
+
+	@Override
+	public VcsSupport createVcsSupport(Configuration configuration) {
+		return new JGitVcsSupport(configuration);
+	}
+}
@@ -0,0 +1,74 @@
+package com.prezi.pride.vcs.git
+
+import com.prezi.pride.vcs.CloneOptions
+import org.apache.commons.configuration.MapConfiguration
+
+class GitCloneTest extends GitSpecification {
+	def support = new GitVcsSupport(new MapConfiguration([:]))
+	def app
+	def firstCommit
+	def module
+
+	def setup() {
+		app = createRepository("app")
+		firstCommit = git(app, "rev-parse", "HEAD")
+		commit(app, "file.txt", "second")
+		commit(app, "file.txt", "third")
+		git(app, "config", "uploadpack.allowFilter", "true")
+		module = new File(root, "module")
+	}
+
+	def "only the given number of commits are cloned"() {
+		when:
+		support.checkout(url(app), module, null, false, false, new CloneOptions(1, null))
+
+		then:
+		git(module, "rev-list", "--count", "HEAD") == "1"
+		new File(module, ".git/shallow").isFile()
+		new File(module, "file.txt").text == "third"
+	}
+
+	def "only objects matching the filter are cloned"() {
+		when:
+		support.checkout(url(app), module, null, false, false, new CloneOptions(null, "blob:none"))
+
+		then:
+		git(module, "config", "remote.origin.partialclonefilter") == "blob:none"
+		git(module, "rev-list", "--count", "HEAD") == "3"
+		new File(module, "file.txt").text == "third"
+	}
+
+	def "commits are checked out detached"() {
+		when:
+		support.checkout(url(app), module, firstCommit, false, false, CloneOptions.FULL)
+
+		then:
+		git(module, "rev-parse", "HEAD") == firstCommit
+		git(module, "rev-parse", "--abbrev-ref", "HEAD") == "HEAD"
+	}
+
+	def "commits missing from a shallow clone are fetched"() {
+		when:
+		support.checkout(url(app), module, firstCommit.substring(0, 10), false, false, new CloneOptions(1, null))
+
+		then:
+		git(module, "rev-parse", "HEAD") == firstCommit
+		!new File(module, ".git/shallow").exists()
+	}
+
+	def "branches that look like commit IDs are checked out as branches"() {
+		git(app, "branch", "cafe123", firstCommit)
+
+		when:
+		support.checkout(url(app), module, "cafe123", false, false, new CloneOptions(1, null))
+
+		then:
+		git(module, "rev-parse", "--abbrev-ref", "HEAD") == "cafe123"
+		git(module, "rev-parse", "HEAD") == firstCommit
+	}
+
+	private static String url(File repository) {
+		// Local paths are cloned without the network protocol, which ignores --depth and --filter
+		return "file://" + repository.absolutePath
+	}
+}
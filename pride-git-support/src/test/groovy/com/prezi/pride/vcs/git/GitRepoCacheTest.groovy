@@ -0,0 +1,209 @@
+package com.prezi.pride.vcs.git
+
+import com.prezi.pride.PrideException
+import com.prezi.pride.vcs.CloneOptions
+import com.prezi.pride.vcs.RepoCache
+import com.prezi.pride.vcs.RepoCacheMode
+import com.prezi.pride.vcs.Vcs
+import org.apache.commons.configuration.MapConfiguration
+import org.apache.commons.io.FileUtils
+
+class GitRepoCacheTest extends GitSpecification {
+	def vcs = new Vcs("git", new GitVcsSupport(new MapConfiguration([:])))
+	def cacheDirectory
+	def cache
+
+	def setup() {
+		cacheDirectory = new File(root, "cache")
+		cache = new RepoCache(cacheDirectory, 0)
+	}
+
+	def "submodules are checked out from their mirrors"() {
+		def library = createRepository("library")
+		def app = createRepository("app")
+		// Adding a local submodule needs the same permission as checking it out from a mirror
+		git(app, "-c", "protocol.file.allow=always", "submodule", "add", library.path, "library")
+		git(app, "commit", "-m", "Add library")
+		def module = new File(root, "module")
+
+		when:
+		cache.checkoutThroughCache(vcs, app.path, module, null, true, RepoCacheMode.COPY, CloneOptions.FULL)
+
+		then:
+		new File(module, "library/file.txt").text == "library"
+		// Submodules are only cloned from the mirror, and fetch from their remote later
+		git(new File(module, "library"), "config", "remote.origin.url") == library.path
+		cache.repositories*.url.sort() == [app.path, library.path].sort()
+	}
+
+	def "referencing modules borrow objects from the mirror"() {
+		def app = createRepository("app")
+		def module = new File(root, "module")
+
+		when:
+		cache.checkoutThroughCache(vcs, app.path, module, null, false, RepoCacheMode.REFERENCE, CloneOptions.FULL)
+		def mirror = cacheDirectory.listFiles().find { it.isDirectory() }
+
+		then:
+		new File(module, ".git/objects/info/alternates").text.trim() == new File(mirror, "objects").path
+		git(mirror, "config", "gc.pruneExpire") == "never"
+		git(module, "config", "remote.origin.url") == app.path
+		new File(module, "file.txt").text == "app"
+	}
+
+	def "dissociated modules keep working after the mirror is removed"() {
+		def app = createRepository("app")
+		def head = commit(app, "other.txt", "other")
+		def module = new File(root, "module")
+
+		when:
+		cache.checkoutThroughCache(vcs, app.path, module, null, false, RepoCacheMode.DISSOCIATE, CloneOptions.FULL)
+
+		then:
+		!new File(module, ".git/objects/info/alternates").exists()
+		git(module, "config", "remote.origin.url") == app.path
+
+		when:
+		FileUtils.deleteDirectory(cacheDirectory)
+
+		then:
+		git(module, "rev-parse", "HEAD") == head
+		git(module, "fsck", "--full", "--no-dangling") == ""
+		git(module, "status", "--porcelain") == ""
+	}
+
+	def "modules are checked out as working trees of a shared repository"() {
+		def app = createRepository("app")
+		def module = new File(root, "module")
+
+		when:
+		cache.checkoutThroughCache(vcs, app.path, module, null, false, RepoCacheMode.WORKTREE, CloneOptions.FULL)
+
+		then:
+		GitVcsSupport.isLinkedWorkingTree(module)
+		new File(module, "file.txt").text == "app"
+		git(module, "rev-parse", "--abbrev-ref", "HEAD") == "master"
+		git(module, "rev-parse", "--abbrev-ref", "@{upstream}") == "origin/master"
+	}
+
+	def "working trees can be checked out again in the same directory"() {
+		def app = createRepository("app")
+		def module = new File(root, "module")
+		cache.checkoutThroughCache(vcs, app.path, module, null, false, RepoCacheMode.WORKTREE, CloneOptions.FULL)
+		new File(module, "local.txt").text = "local"
+
+		when:
+		cache.checkoutThroughCache(vcs, app.path, module, null, false, RepoCacheMode.WORKTREE, CloneOptions.FULL)
+
+		then:
+		GitVcsSupport.isLinkedWorkingTree(module)
+		!new File(module, "local.txt").exists()
+		git(module, "rev-parse", "--abbrev-ref", "HEAD") == "master"
+	}
+
+	def "objects are borrowed from the mirror when the branch is checked out in another working tree"() {
+		def app = createRepository("app")
+		def module = new File(root, "pride-1/module")
+		def otherModule = new File(root, "pride-2/module")
+		cache.checkoutThroughCache(vcs, app.path, module, null, false, RepoCacheMode.WORKTREE, CloneOptions.FULL)
+
+		when:
+		cache.checkoutThroughCache(vcs, app.path, otherModule, null, false, RepoCacheMode.WORKTREE, CloneOptions.FULL)
+
+		then:
+		GitVcsSupport.isLinkedWorkingTree(module)
+		!GitVcsSupport.isLinkedWorkingTree(otherModule)
+		new File(otherModule, ".git/objects/info/alternates").isFile()
+		new File(otherModule, "file.txt").text == "app"
+		git(otherModule, "rev-parse", "--abbrev-ref", "HEAD") == "master"
+	}
+
+	def "sparse paths are applied in cone mode and can be turned off"() {
+		def app = createRepository("app")
+		commit(app, "services/billing/build.gradle", "")
+		commit(app, "services/search/build.gradle", "")
+		def module = new File(root, "module")
+
+		when:
+		cache.checkoutThroughCache(vcs, app.path, module, null, false, RepoCacheMode.COPY, new CloneOptions(null, null, ["services/billing"]))
+
+		then:
+		git(module, "config", "--bool", "core.sparseCheckoutCone") == "true"
+		new File(module, "file.txt").isFile()
+		new File(module, "services/billing/build.gradle").isFile()
+		!new File(module, "services/search").exists()
+
+		when:
+		vcs.support.setSparsePaths(module, [])
+
+		then:
+		git(module, "config", "--bool", "core.sparseCheckout") == "false"
+		new File(module, "services/search/build.gradle").isFile()
+	}
+
+	def "mirrors can be exported and imported into another cache"() {
+		def app = createRepository("app")
+		commit(app, "other.txt", "other")
+		git(app, "branch", "feature")
+		def library = createRepository("library")
+		cache.checkoutThroughCache(vcs, app.path, new File(root, "module-app"), null, false, RepoCacheMode.COPY, CloneOptions.FULL)
+		cache.checkoutThroughCache(vcs, library.path, new File(root, "module-library"), null, false, RepoCacheMode.COPY, CloneOptions.FULL)
+		def exportDirectory = new File(root, "export")
+		exportDirectory.mkdirs()
+		def otherCache = new RepoCache(new File(root, "other-cache"), 0)
+
+		when:
+		def exported = cache.repositories.collect { cache.export(it, vcs.support, exportDirectory) }
+		def imported = RepoCache.loadExportManifest(exportDirectory).collect { otherCache.importRepository(it, vcs.support) }
+
+		then:
+		exported == [true, true]
+		imported == [true, true]
+		otherCache.repositories*.url == cache.repositories*.url
+		otherCache.repositories.every { it.type == "git" }
+		refs(otherCache.repositories.find { it.url == app.path }.directory) == refs(app)
+		refs(otherCache.repositories.find { it.url == library.path }.directory) == refs(library)
+		// Imported mirrors fetch from the original remote
+		git(otherCache.repositories.find { it.url == app.path }.directory, "config", "remote.origin.url") == app.path
+
+		when:
+		def importedAgain = RepoCache.loadExportManifest(exportDirectory).collect { otherCache.importRepository(it, vcs.support) }
+
+		then:
+		importedAgain == [false, false]
+	}
+
+	def "missing exported mirrors are skipped, and corrupt ones are not imported"() {
+		def names = ["a", "b", "c"]
+		def repositories = names.collect { createRepository(it) }
+		repositories.each { repository ->
+			cache.checkoutThroughCache(vcs, repository.path, new File(root, "module-" + repository.name), null, false, RepoCacheMode.COPY, CloneOptions.FULL)
+		}
+		def exportDirectory = new File(root, "export")
+		exportDirectory.mkdirs()
+		cache.repositories.each { cache.export(it, vcs.support, exportDirectory) }
+		def exportedFiles = RepoCache.loadExportManifest(exportDirectory)*.directory
+		exportedFiles[1].delete()
+		exportedFiles[2].text = "not a bundle"
+		def otherCache = new RepoCache(new File(root, "other-cache"), 0)
+
+		when:
+		def exportedRepositories = RepoCache.loadExportManifest(exportDirectory)
+
+		then:
+		exportedRepositories*.url == [repositories[0].path, repositories[2].path]
+
+		when:
+		otherCache.importRepository(exportedRepositories[0], vcs.support)
+		otherCache.importRepository(exportedRepositories[1], vcs.support)
+
+		then:
+		thrown PrideException
+		otherCache.repositories*.url == [repositories[0].path]
+		!new File(root, "other-cache").list().any { it.endsWith(".incomplete") }
+	}
+
+	private static String refs(File repository) {
+		return git(repository, "for-each-ref", "--format=%(objectname) %(refname)", "refs/heads", "refs/tags")
+	}
+}
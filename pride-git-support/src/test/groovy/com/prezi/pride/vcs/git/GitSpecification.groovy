@@ -0,0 +1,48 @@
+package com.prezi.pride.vcs.git
+
+import org.apache.commons.io.FileUtils
+import spock.lang.Specification
+
+/**
+ * Runs tests against local Git repositories in a temporary directory.
+ */
+abstract class GitSpecification extends Specification {
+	def root = File.createTempFile("pride", "git")
+
+	def setup() {
+		root.delete()
+		root.mkdirs()
+	}
+
+	def cleanup() {
+		FileUtils.deleteDirectory(root)
+	}
+
+	protected File createRepository(String name) {
+		def repository = new File(root, name)
+		repository.mkdirs()
+		git(repository, "init", "--quiet")
+		commit(repository, "file.txt", name)
+		return repository
+	}
+
+	/**
+	 * Commits a change to a file, and returns the ID of the new commit.
+	 */
+	protected static String commit(File repository, String path, String content) {
+		def file = new File(repository, path)
+		file.parentFile.mkdirs()
+		file.text = content
+		git(repository, "add", path)
+		git(repository, "commit", "--quiet", "-m", "Change " + path)
+		return git(repository, "rev-parse", "HEAD")
+	}
+
+	protected static String git(File directory, String... args) {
+		def command = ["git", "-c", "user.name=Test", "-c", "user.email=test@example.com"] + args.toList()
+		def process = new ProcessBuilder(command).directory(directory).redirectErrorStream(true).start()
+		def output = process.inputStream.text
+		assert process.waitFor() == 0 : output
+		return output.trim()
+	}
+}
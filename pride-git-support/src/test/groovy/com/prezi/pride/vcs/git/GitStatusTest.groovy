@@ -0,0 +1,74 @@
+package com.prezi.pride.vcs.git
+
+import spock.lang.Specification
+
+class GitStatusTest extends Specification {
+	def "clean branch with upstream"() {
+		def status = GitStatus.parse([
+				"# branch.oid 7d6a3b1c2e4f5a6b7c8d9e0f1a2b3c4d5e6f7a8b",
+				"# branch.head master",
+				"# branch.upstream origin/master",
+				"# branch.ab +0 -0",
+		])
+
+		expect:
+		status.revision == "7d6a3b1"
+		status.branch == "master"
+		status.upstream == "origin/master"
+		status.ahead == 0
+		status.behind == 0
+		!status.hasUncommittedChanges()
+		!status.hasUnpublishedChanges()
+	}
+
+	def "changes and divergence"() {
+		def status = GitStatus.parse([
+				"# branch.oid 7d6a3b1c2e4f5a6b7c8d9e0f1a2b3c4d5e6f7a8b",
+				"# branch.head feature/x",
+				"# branch.upstream origin/feature/x",
+				"# branch.ab +2 -3",
+				"1 .M N... 100644 100644 100644 3e2ceb9 3e2ceb9 non-added-modification.txt",
+				"1 M. N... 100644 100644 100644 3e2ceb9 4f3dfc0 added-modification.txt",
+				"2 R. N... 100644 100644 100644 3e2ceb9 3e2ceb9 R100 new name.txt\told name.txt",
+				"u UU N... 100644 100644 100644 100644 1111111 2222222 3333333 conflict.txt",
+				"? non-added-file.txt",
+				"! ignored-file.txt",
+		])
+		def vcsStatus = status.toVcsStatus()
+
+		expect:
+		vcsStatus.branch == "feature/x"
+		vcsStatus.commitsAhead == 2
+		vcsStatus.commitsBehind == 3
+		vcsStatus.changedFiles == 4
+		vcsStatus.untrackedFiles == 1
+		vcsStatus.hasUncommittedChanges()
+		vcsStatus.hasUnpublishedChanges()
+	}
+
+	def "detached head without upstream"() {
+		def status = GitStatus.parse([
+				"# branch.oid 7d6a3b1c2e4f5a6b7c8d9e0f1a2b3c4d5e6f7a8b",
+				"# branch.head (detached)",
+		])
+
+		expect:
+		status.revision == "7d6a3b1"
+		status.branch == null
+		status.upstream == null
+		!status.hasUnpublishedChanges()
+	}
+
+	def "repository without commits"() {
+		def status = GitStatus.parse([
+				"# branch.oid (initial)",
+				"# branch.head master",
+				"? new-file.txt",
+		])
+
+		expect:
+		status.revision == null
+		status.branch == "master"
+		status.hasUncommittedChanges()
+	}
+}
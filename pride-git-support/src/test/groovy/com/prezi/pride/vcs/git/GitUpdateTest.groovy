@@ -0,0 +1,59 @@
+package com.prezi.pride.vcs.git
+
+import com.prezi.pride.vcs.CloneOptions
+import org.apache.commons.configuration.MapConfiguration
+
+class GitUpdateTest extends GitSpecification {
+	def support = new GitVcsSupport(new MapConfiguration([:]))
+	def app
+	def module
+
+	def setup() {
+		app = createRepository("app")
+		module = new File(root, "module")
+		support.checkout(app.path, module, null, false, false, CloneOptions.FULL)
+	}
+
+	def "fetching leaves the working copy alone until it is updated"() {
+		def oldHead = git(module, "rev-parse", "HEAD")
+		def newHead = commit(app, "file.txt", "changed")
+
+		when:
+		support.fetch(module, false)
+
+		then:
+		git(module, "rev-parse", "HEAD") == oldHead
+		git(module, "rev-parse", "origin/master") == newHead
+		new File(module, "file.txt").text == "app"
+
+		when:
+		support.updateWorkingCopy(module, null, false)
+
+		then:
+		git(module, "rev-parse", "HEAD") == newHead
+		new File(module, "file.txt").text == "changed"
+	}
+
+	def "updating the working copy switches to a fetched branch"() {
+		git(app, "checkout", "--quiet", "-b", "feature")
+		def featureHead = commit(app, "feature.txt", "feature")
+
+		when:
+		support.fetch(module, false)
+		support.updateWorkingCopy(module, "feature", false)
+
+		then:
+		support.getBranch(module) == "feature"
+		git(module, "rev-parse", "HEAD") == featureHead
+	}
+
+	def "update fetches and updates the working copy"() {
+		def newHead = commit(app, "file.txt", "changed")
+
+		when:
+		support.update(module, null, false, false)
+
+		then:
+		git(module, "rev-parse", "HEAD") == newHead
+	}
+}
@@ -29,4 +29,23 @@ class GitVcsSupportTest extends Specification {
 		"ftps://github.com/prezi/lajos.git"           | "lajos"
 		"rsync://github.com/prezi/lajos/"             | "lajos"
 	}
+
+	def "ignored paths leave out directories that only contain ignored files"() {
+		def root = File.createTempFile("pride", "ignored")
+		root.delete()
+		["s1/a.log", "s2/x/build/b", "s3/build/c", "s3/t"].each { path ->
+			def file = new File(root, path)
+			file.parentFile.mkdirs()
+			file.text = ""
+		}
+		new File(root, ".gitignore").text = "build/\n*.log\n"
+		["git", "init", "--quiet"].execute(null, root).waitFor()
+		["git", "add", ".gitignore", "s3/t"].execute(null, root).waitFor()
+
+		expect:
+		support.getIgnoredPaths(root) == ["s1/a.log", "s2/x/build", "s3/build"]
+
+		cleanup:
+		root.deleteDir()
+	}
 }
@@ -0,0 +1,80 @@
+package com.prezi.pride.vcs.git
+
+import com.prezi.pride.vcs.CloneOptions
+import com.prezi.pride.vcs.VcsManager
+import com.prezi.pride.vcs.VcsStatus
+import org.apache.commons.configuration.MapConfiguration
+
+class JGitVcsSupportTest extends GitSpecification {
+	def config = new MapConfiguration([:])
+	def support = new JGitVcsSupport(config)
+	def cliSupport = new GitVcsSupport(config)
+
+	def "backend is selected by configuration"() {
+		def manager = new VcsManager()
+
+		expect:
+		!(manager.getVcs("git", new MapConfiguration([:])).support instanceof JGitVcsSupport)
+		manager.getVcs("git", new MapConfiguration(["git.backend": "cli"])).support.class == GitVcsSupport
+		manager.getVcs("git", new MapConfiguration(["git.backend": "jgit"])).support instanceof JGitVcsSupport
+		// Unknown backends fall back to the default one
+		manager.getVcs("git", new MapConfiguration(["git.backend": "unknown"])).support.class == GitVcsSupport
+	}
+
+	def "supporting VCS of a directory uses the configured backend"() {
+		def repository = createRepository("app")
+
+		expect:
+		new VcsManager().findSupportingVcs(repository, new MapConfiguration(["git.backend": "jgit"])).support instanceof JGitVcsSupport
+	}
+
+	def "status of a clone matches the git command"() {
+		def remote = createRepository("remote")
+		def module = new File(root, "module")
+
+		when:
+		support.checkout(remote.path, module, null, false, false, CloneOptions.FULL)
+
+		then:
+		support.getRepositoryUrl(module) == remote.path
+		support.getBranch(module) == cliSupport.getBranch(module)
+		sameStatus(support.getStatus(module), cliSupport.getStatus(module))
+		!support.getStatus(module).hasUncommittedChanges()
+		!support.hasChanges(module)
+
+		when:
+		commit(module, "local.txt", "local")
+		commit(remote, "remote.txt", "remote")
+		git(module, "fetch", "--quiet")
+		new File(module, "file.txt").text = "changed"
+		new File(module, "untracked.txt").text = "untracked"
+		def status = support.getStatus(module)
+
+		then:
+		sameStatus(status, cliSupport.getStatus(module))
+		status.commitsAhead == 1
+		status.commitsBehind == 1
+		status.changedFiles == 1
+		status.untrackedFiles == 1
+		support.hasChanges(module)
+
+		when:
+		git(module, "checkout", "--quiet", "--detach")
+
+		then:
+		support.getBranch(module) == null
+		sameStatus(support.getStatus(module), cliSupport.getStatus(module))
+	}
+
+	private static boolean sameStatus(VcsStatus status, VcsStatus expected) {
+		assert status.revision == expected.revision
+		assert status.branch == expected.branch
+		assert status.commitsAhead == expected.commitsAhead
+		assert status.commitsBehind == expected.commitsBehind
+		assert status.changedFiles == expected.changedFiles
+		assert status.untrackedFiles == expected.untrackedFiles
+		assert status.hasUncommittedChanges() == expected.hasUncommittedChanges()
+		assert status.hasUnpublishedChanges() == expected.hasUnpublishedChanges()
+		return true
+	}
+}
@@ -0,0 +1,63 @@
+package com.prezi.pride.vcs.svn;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.IOException;
+import java.io.StringReader;
+
+/**
+ * Parses the output of <code>svn info --xml</code>.
+ */
+final class SvnInfo {
+	private final String revision;
+	private final String url;
+	private final String repositoryRoot;
+	private final String repositoryUuid;
+
+	private SvnInfo(String revision, String url, String repositoryRoot, String repositoryUuid) {
+		this.revision = revision;
+		this.url = url;
+		this.repositoryRoot = repositoryRoot;
+		this.repositoryUuid = repositoryUuid;
+	}
+
+	public static SvnInfo parse(String xml) throws IOException {
+		Element entry;
+		try {
+			NodeList entries = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+					.parse(new InputSource(new StringReader(xml)))
+					.getElementsByTagName("entry");
+			entry = (Element) entries.item(0);
+		} catch (Exception ex) {
+			throw new IOException("Could not parse Subversion info", ex);
+		}
+		if (entry == null) {
+			throw new IOException("No entry found in Subversion info");
+		}
+		return new SvnInfo(entry.getAttribute("revision"), getText(entry, "url"), getText(entry, "root"), getText(entry, "uuid"));
+	}
+
+	private static String getText(Element parent, String name) {
+		NodeList elements = parent.getElementsByTagName(name);
+		return elements.getLength() > 0 ? elements.item(0).getTextContent().trim() : null;
+	}
+
+	public String getRevision() {
+		return revision;
+	}
+
+	public String getUrl() {
+		return url;
+	}
+
+	public String getRepositoryRoot() {
+		return repositoryRoot;
+	}
+
+	public String getRepositoryUuid() {
+		return repositoryUuid;
+	}
+}
@@ -1,26 +1,39 @@
 package com.prezi.pride.vcs.svn;
 
-import com.google.common.base.Charsets;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
-import com.google.common.io.ByteStreams;
-import com.google.common.io.CharStreams;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.prezi.pride.ProcessResult;
 import com.prezi.pride.ProcessUtils;
+import com.prezi.pride.PrideException;
+import com.prezi.pride.vcs.CloneOptions;
+import com.prezi.pride.vcs.MirrorProvider;
+import com.prezi.pride.vcs.RepoCacheMode;
+import com.prezi.pride.vcs.VcsOperation;
 import com.prezi.pride.vcs.VcsStatus;
 import com.prezi.pride.vcs.VcsSupport;
+import org.apache.commons.configuration.Configuration;
 import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class SvnVcsSupport implements VcsSupport {
+	/**
+	 * Whether Subversion modules are mirrored in the repo cache. Mirroring needs svnadmin and svnsync,
+	 * and is disabled by default.
+	 */
+	public static final String SVN_MIRROR = "svn.mirror";
 
 	private static final Pattern REPOSITORY_NAME_PATTERN = Pattern.compile("^"
 				+ "(?:svn|https?)://"						// Protocol prefix
@@ -29,29 +42,147 @@ public class SvnVcsSupport implements VcsSupport {
 				+ "(?:\\.git)?"								// optional .git suffix
 				+ "/?"										// optional trailing slash
 				+ "$", Pattern.COMMENTS);
-	private static final Pattern REVISION = Pattern.compile("Revision: (.*)");
-	private static final Pattern URL = Pattern.compile("URL: (.*)");
+	private static final String SOURCE_PATH_PROPERTY = "pride:source-path";
 
 	private static final Logger log = LoggerFactory.getLogger(SvnVcsSupport.class);
 
+	private final Configuration configuration;
+	private final ConcurrentMap<File, CachedInfo> infoCache = Maps.newConcurrentMap();
+
+	SvnVcsSupport(Configuration configuration) {
+		this.configuration = configuration;
+	}
+
+	@Override
+	public void checkout(String repositoryUrl, File targetDirectory, String revision, boolean recursive, boolean mirrored, CloneOptions options) throws IOException {
+		if (mirrored) {
+			createMirror(repositoryUrl, targetDirectory);
+			return;
+		}
+		checkoutUrl(new RepositoryUrl(repositoryUrl, revision).toUrl(), targetDirectory, recursive);
+	}
+
+	@Override
+	public void checkoutFromMirror(File mirrorDirectory, File targetDirectory, String revision, boolean recursive, RepoCacheMode mode, CloneOptions options) throws IOException {
+		// Working copies never share anything with the repository, so every mode works the same
+		String mirrorUrl = toFileUrl(mirrorDirectory);
+		ProcessResult sourcePath = ProcessUtils.executeIn(null, Arrays.asList("svn", "propget", "--revprop", "-r", "0", SOURCE_PATH_PROPERTY, mirrorUrl), false, false);
+		String moduleUrl = mirrorUrl;
+		if (!sourcePath.getOutput().trim().isEmpty()) {
+			moduleUrl += "/" + sourcePath.getOutput().trim();
+		}
+		checkoutUrl(new RepositoryUrl(moduleUrl, revision).toUrl(), targetDirectory, recursive);
+	}
+
 	@Override
-	public void checkout(String repositoryUrl, File targetDirectory, String revision, boolean recursive, boolean mirrored) throws IOException {
+	public void checkoutWorktree(File mirrorDirectory, File sharedDirectory, File targetDirectory, String revision, boolean recursive, CloneOptions options) throws IOException {
+		checkoutFromMirror(mirrorDirectory, targetDirectory, revision, recursive, RepoCacheMode.COPY, options);
+	}
+
+	private void checkoutUrl(String branchUrl, File targetDirectory, boolean recursive) throws IOException {
+		invalidateInfo(targetDirectory);
 		FileUtils.forceMkdir(targetDirectory.getParentFile());
 		FileUtils.deleteQuietly(targetDirectory);
 
-		String branchUrl = new RepositoryUrl(repositoryUrl, revision).toUrl();
-
 		log.debug("Checking out {} into {}", branchUrl, targetDirectory);
 		ImmutableList.Builder<String> checkoutCommand = ImmutableList.<String> builder().add("svn").add("checkout");
 		if (!recursive) {
 			checkoutCommand.add("--ignore-externals");
 		}
 		checkoutCommand.add(branchUrl).add(targetDirectory.getPath());
-		ProcessUtils.executeIn(null, checkoutCommand.build());
+		ProcessUtils.executeIn(null, checkoutCommand.build(), timeout(VcsOperation.CLONE));
+	}
+
+	/**
+	 * Creates a local repository kept in sync with the remote one by <code>svnsync</code>.
+	 * The mirror has the same UUID and the same paths as the remote repository, so working copies
+	 * checked out from it can be relocated to the remote.
+	 */
+	private void createMirror(String repositoryUrl, File mirrorDirectory) throws IOException {
+		FileUtils.forceMkdir(mirrorDirectory.getParentFile());
+		FileUtils.deleteQuietly(mirrorDirectory);
+
+		log.debug("Mirroring {} into {}", repositoryUrl, mirrorDirectory);
+		ProcessUtils.executeIn(null, Arrays.asList("svnadmin", "create", mirrorDirectory.getPath()));
+		ProcessUtils.executeIn(null, Arrays.asList("svnadmin", "setuuid", mirrorDirectory.getPath(),
+				getInfo(repositoryUrl).getRepositoryUuid()));
+		// svnsync keeps track of its progress in revision properties, which cannot be changed by default
+		File hook = new File(mirrorDirectory, "hooks/pre-revprop-change");
+		FileUtils.writeStringToFile(hook, "#!/bin/sh\nexit 0\n");
+		if (!hook.setExecutable(true)) {
+			throw new IOException("Could not make " + hook + " executable");
+		}
+
+		String mirrorUrl = toFileUrl(mirrorDirectory);
+		ProcessUtils.executeIn(null, Arrays.asList("svnsync", "initialize", "--non-interactive", mirrorUrl, repositoryUrl), timeout(VcsOperation.FETCH));
+		// Only the module is synchronized, but it keeps its path from the root of the remote repository
+		String repositoryRoot = getInfo(repositoryUrl).getRepositoryRoot();
+		String sourcePath = repositoryUrl.substring(repositoryRoot.length()).replaceAll("^/+|/+$", "");
+		ProcessUtils.executeIn(null, Arrays.asList("svn", "propset", "--revprop", "-r", "0", SOURCE_PATH_PROPERTY, sourcePath, mirrorUrl));
+		synchronizeMirror(mirrorDirectory, VcsOperation.CLONE);
+	}
+
+	private void synchronizeMirror(File mirrorDirectory, VcsOperation operation) throws IOException {
+		// The repo cache makes sure only one process synchronizes at a time, so locks are left over from interrupted runs
+		ProcessUtils.executeIn(null, Arrays.asList("svnsync", "synchronize", "--non-interactive", "--steal-lock", toFileUrl(mirrorDirectory)),
+				timeout(operation));
+	}
+
+	private static String toFileUrl(File directory) {
+		String path = directory.getAbsolutePath().replace(File.separatorChar, '/');
+		return "file://" + (path.startsWith("/") ? "" : "/") + path;
+	}
+
+	@Override
+	public void setSparsePaths(File targetDirectory, List<String> sparsePaths) throws IOException {
+		if (!sparsePaths.isEmpty()) {
+			log.warn("Sparse paths are not supported for Subversion, checking out everything in {}", targetDirectory);
+		}
+	}
+
+	@Override
+	public void updateSubmodules(File targetDirectory, MirrorProvider mirrors) throws IOException {
+		// Externals are not mirrored, check them out from their own repositories without moving the working copy
+		String revision = getRevision(targetDirectory);
+		invalidateInfo(targetDirectory);
+		ProcessUtils.executeIn(targetDirectory, Arrays.asList("svn", "update", "-r", revision), timeout(VcsOperation.CLONE));
 	}
 
 	@Override
 	public void update(File targetDirectory, String revision, boolean recursive, boolean mirrored) throws IOException {
+		if (mirrored) {
+			synchronizeMirror(targetDirectory, VcsOperation.FETCH);
+			return;
+		}
+		updateWorkingCopy(targetDirectory, revision, recursive);
+	}
+
+	@Override
+	public void fetch(File targetDirectory, boolean mirrored) throws IOException {
+		if (mirrored) {
+			synchronizeMirror(targetDirectory, VcsOperation.FETCH);
+		}
+		// Subversion cannot download changes without updating the working copy
+	}
+
+	@Override
+	public void optimizeMirror(File mirrorDirectory, boolean full) throws IOException {
+		ProcessUtils.executeIn(null, Arrays.asList("svnadmin", "pack", "--quiet", mirrorDirectory.getPath()), timeout(VcsOperation.MAINTENANCE));
+	}
+
+	@Override
+	public boolean exportMirror(File mirrorDirectory, File exportFile) throws IOException {
+		log.warn("Cannot export Subversion mirror {}, it will be mirrored from its remote again", mirrorDirectory.getName());
+		return false;
+	}
+
+	@Override
+	public void importMirror(File exportFile, File mirrorDirectory, String repositoryUrl) throws IOException {
+		throw new PrideException("Subversion mirrors cannot be imported from " + exportFile);
+	}
+
+	@Override
+	public void updateWorkingCopy(File targetDirectory, String revision, boolean recursive) throws IOException {
 		ImmutableList.Builder<String> updateCommand = ImmutableList.builder();
 		if (!Strings.isNullOrEmpty(revision) && !revision.equals(getBranch(targetDirectory))) {
 			updateCommand.add("svn", "switch", getRepositoryUrl(targetDirectory) + "/" + revision, ".");
@@ -61,14 +192,14 @@ public class SvnVcsSupport implements VcsSupport {
 		if (!recursive) {
 			updateCommand.add("--ignore-externals");
 		}
-		ProcessUtils.executeIn(targetDirectory, updateCommand.build());
+		invalidateInfo(targetDirectory);
+		ProcessUtils.executeIn(targetDirectory, updateCommand.build(), timeout(VcsOperation.FETCH));
 	}
 
 	@Override
 	public boolean hasChanges(File targetDirectory) throws IOException {
-		Process process = ProcessUtils.executeIn(targetDirectory, Arrays.asList("svn", "status"), false, false);
-		String result = new String(ByteStreams.toByteArray(process.getInputStream()), Charsets.UTF_8);
-		return !result.trim().isEmpty();
+		ProcessResult result = ProcessUtils.executeIn(targetDirectory, Arrays.asList("svn", "status"), false, false, timeout(VcsOperation.STATUS));
+		return !result.getOutput().trim().isEmpty();
 	}
 
 	@Override
@@ -79,18 +210,41 @@ public class SvnVcsSupport implements VcsSupport {
 		return status.build();
 	}
 
+	@Override
+	public Collection<File> getStateFiles(File targetDirectory) throws IOException {
+		// Subversion 1.7+ keeps all working copy metadata in a single database
+		return Collections.singleton(new File(targetDirectory, ".svn/wc.db"));
+	}
+
+	@Override
+	public Collection<String> getIgnoredPaths(File targetDirectory) throws IOException {
+		// I       build
+		ProcessResult result = ProcessUtils.executeIn(targetDirectory, Arrays.asList("svn", "status", "--no-ignore", "--ignore-externals"),
+				false, false, timeout(VcsOperation.STATUS));
+		List<String> ignoredPaths = Lists.newArrayList();
+		for (String line : result.getOutputLines()) {
+			if (line.startsWith("I") && line.length() > 8) {
+				ignoredPaths.add(line.substring(8).replace(File.separatorChar, '/'));
+			}
+		}
+		return ignoredPaths;
+	}
+
 	private String getRevision(File targetDirectory) throws IOException {
-		return getInfoValue(targetDirectory, REVISION);
+		return getInfo(targetDirectory).getRevision();
 	}
 
 	@Override
 	public void activate(String repositoryUrl, File targetDirectory) throws IOException {
-		throw new AssertionError("Cannot activate an SVN repository");
+		// The mirror has the same UUID and layout as the remote, so the working copy only needs a new root
+		String branchUrl = new RepositoryUrl(repositoryUrl, getBranch(targetDirectory)).toUrl();
+		invalidateInfo(targetDirectory);
+		ProcessUtils.executeIn(targetDirectory, Arrays.asList("svn", "relocate", branchUrl), timeout(VcsOperation.FETCH));
 	}
 
 	@Override
 	public boolean isMirroringSupported() {
-		return false;
+		return configuration.getBoolean(SVN_MIRROR, false);
 	}
 
 	@Override
@@ -109,21 +263,39 @@ public class SvnVcsSupport implements VcsSupport {
 	}
 
 	private RepositoryUrl getRepositoryUrlInternal(File targetDirectory) throws IOException {
-		String fullUrl = getInfoValue(targetDirectory, URL);
-		return RepositoryUrl.fromString(fullUrl);
+		return RepositoryUrl.fromString(getInfo(targetDirectory).getUrl());
 	}
 
-	private String getInfoValue(File targetDirectory, Pattern pattern) throws IOException {
-		Process process = ProcessUtils.executeIn(targetDirectory, Arrays.asList("svn", "info"), false, false);
-		List<String> infoLines = CharStreams.readLines(new InputStreamReader(process.getInputStream(), Charsets.UTF_8));
-		for (String remoteLine : infoLines) {
-			Matcher matcher = pattern.matcher(remoteLine);
-			if (!matcher.matches()) {
-				continue;
-			}
-			return matcher.group(1);
+	/**
+	 * Returns the information about a working copy, querying it only once as long as the working copy
+	 * is not changed. Working copy metadata is only checked, so local modifications don't matter here.
+	 */
+	private SvnInfo getInfo(File targetDirectory) throws IOException {
+		File directory = targetDirectory.getAbsoluteFile();
+		File database = new File(directory, ".svn/wc.db");
+		long modified = database.lastModified();
+		long length = database.length();
+		CachedInfo cached = infoCache.get(directory);
+		if (cached != null && cached.modified == modified && cached.length == length) {
+			return cached.info;
 		}
-		return null;
+		ProcessResult result = ProcessUtils.executeIn(directory, Arrays.asList("svn", "info", "--xml"), false, false, timeout(VcsOperation.STATUS));
+		SvnInfo info = SvnInfo.parse(result.getOutput());
+		infoCache.put(directory, new CachedInfo(info, modified, length));
+		return info;
+	}
+
+	private SvnInfo getInfo(String url) throws IOException {
+		ProcessResult result = ProcessUtils.executeIn(null, Arrays.asList("svn", "info", "--xml", "--non-interactive", url), false, false, timeout(VcsOperation.FETCH));
+		return SvnInfo.parse(result.getOutput());
+	}
+
+	/**
+	 * Forgets the information about a working copy that is about to change. The metadata database
+	 * might be changed within the resolution of its modification time, so it is not enough to check that.
+	 */
+	private void invalidateInfo(File targetDirectory) {
+		infoCache.remove(targetDirectory.getAbsoluteFile());
 	}
 
 	@Override
@@ -141,6 +313,22 @@ public class SvnVcsSupport implements VcsSupport {
 		}
 	}
 
+	private long timeout(VcsOperation operation) {
+		return operation.getTimeout(configuration);
+	}
+
+	private static class CachedInfo {
+		private final SvnInfo info;
+		private final long modified;
+		private final long length;
+
+		public CachedInfo(SvnInfo info, long modified, long length) {
+			this.info = info;
+			this.modified = modified;
+			this.length = length;
+		}
+	}
+
 	private static class RepositoryUrl {
 		public static final String TRUNK = "trunk";
 		private static Pattern URL_PATTERN = Pattern.compile("(.*)/(?:trunk|branches/([^/]+))/?");
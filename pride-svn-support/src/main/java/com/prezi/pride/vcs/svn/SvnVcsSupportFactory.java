@@ -12,9 +12,14 @@ public class SvnVcsSupportFactory implements VcsSupportFactory {
 		return "svn";
 	}
 
+	@Override
+	public String getBackend() {
+		return "cli";
+	}
+
 	@Override
 	public VcsSupport createVcsSupport(Configuration configuration) {
-		return new SvnVcsSupport();
+		return new SvnVcsSupport(configuration);
 	}
 
 	@Override
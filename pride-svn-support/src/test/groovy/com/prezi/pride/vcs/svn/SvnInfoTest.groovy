@@ -0,0 +1,43 @@
+package com.prezi.pride.vcs.svn
+
+import spock.lang.Specification
+
+class SvnInfoTest extends Specification {
+	def "working copy info"() {
+		def info = SvnInfo.parse('''<?xml version="1.0" encoding="UTF-8"?>
+<info>
+<entry kind="dir" path="." revision="1234">
+<url>https://svn.example.com/repo/module/branches/feature</url>
+<relative-url>^/module/branches/feature</relative-url>
+<repository>
+<root>https://svn.example.com/repo</root>
+<uuid>13f79535-47bb-0310-9956-ffa450edef68</uuid>
+</repository>
+<wc-info>
+<wcroot-abspath>/home/user/pride/module</wcroot-abspath>
+<schedule>normal</schedule>
+<depth>infinity</depth>
+</wc-info>
+<commit revision="1200">
+<author>user</author>
+<date>2015-06-01T12:34:56.000000Z</date>
+</commit>
+</entry>
+</info>
+''')
+
+		expect:
+		info.revision == "1234"
+		info.url == "https://svn.example.com/repo/module/branches/feature"
+		info.repositoryRoot == "https://svn.example.com/repo"
+		info.repositoryUuid == "13f79535-47bb-0310-9956-ffa450edef68"
+	}
+
+	def "no entry"() {
+		when:
+		SvnInfo.parse('<?xml version="1.0" encoding="UTF-8"?>\n<info>\n</info>\n')
+
+		then:
+		thrown IOException
+	}
+}
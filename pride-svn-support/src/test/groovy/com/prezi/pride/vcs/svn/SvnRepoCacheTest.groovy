@@ -0,0 +1,60 @@
+package com.prezi.pride.vcs.svn
+
+import com.prezi.pride.vcs.CloneOptions
+import com.prezi.pride.vcs.RepoCache
+import com.prezi.pride.vcs.RepoCacheMode
+import com.prezi.pride.vcs.Vcs
+import org.apache.commons.configuration.MapConfiguration
+import org.apache.commons.io.FileUtils
+import spock.lang.IgnoreIf
+import spock.lang.Specification
+
+@IgnoreIf({ !SvnRepoCacheTest.svnInstalled() })
+class SvnRepoCacheTest extends Specification {
+	def root = File.createTempFile("pride", "svn")
+	def vcs = new Vcs("svn", new SvnVcsSupport(new MapConfiguration([(SvnVcsSupport.SVN_MIRROR): true])))
+
+	def setup() {
+		root.delete()
+		root.mkdirs()
+	}
+
+	def cleanup() {
+		FileUtils.deleteDirectory(root)
+	}
+
+	def "modules are checked out from their mirror and relocated to their remote"() {
+		def repository = new File(root, "repository")
+		def repositoryUrl = "file://" + repository.absolutePath
+		run(root, "svnadmin", "create", repository.path)
+		def trunk = new File(root, "import/trunk")
+		trunk.mkdirs()
+		new File(trunk, "file.txt").text = "module"
+		run(root, "svn", "import", "--quiet", "-m", "Initial commit", new File(root, "import").path, repositoryUrl)
+		def cache = new RepoCache(new File(root, "cache"), 0)
+		def module = new File(root, "module")
+
+		when:
+		cache.checkoutThroughCache(vcs, repositoryUrl, module, null, false, RepoCacheMode.COPY, CloneOptions.FULL)
+
+		then:
+		new File(module, "file.txt").text == "module"
+		run(module, "svn", "info", "--show-item", "url") == repositoryUrl + "/trunk"
+		cache.repositories*.url == [repositoryUrl]
+	}
+
+	static boolean svnInstalled() {
+		try {
+			return ["svnadmin", "svnsync", "svn"].every { new ProcessBuilder(it, "--version", "--quiet").start().waitFor() == 0 }
+		} catch (IOException ignored) {
+			return false
+		}
+	}
+
+	private static String run(File directory, String... command) {
+		def process = new ProcessBuilder(command).directory(directory).redirectErrorStream(true).start()
+		def output = process.inputStream.text
+		assert process.waitFor() == 0 : output
+		return output.trim()
+	}
+}
@@ -1,10 +1,12 @@
 package com.prezi.pride.vcs.svn
 
+import org.apache.commons.configuration.MapConfiguration
 import spock.lang.Specification
 import spock.lang.Unroll
 
 class SvnVcsSupportTest extends Specification {
-	def support = new SvnVcsSupport()
+	def config = new MapConfiguration([:])
+	def support = new SvnVcsSupport(config)
 
 	@Unroll
 	def "module name resolution: #input vs #name"() {
@@ -20,4 +22,10 @@ class SvnVcsSupportTest extends Specification {
 		"https://github.com/prezi/lajos"              | "lajos"
 		"svn://github.com/prezi/lajos.git"            | "lajos"
 	}
+
+	def "mirroring is only enabled when configured"() {
+		expect:
+		!support.mirroringSupported
+		new SvnVcsSupport(new MapConfiguration(["svn.mirror": true])).mirroringSupported
+	}
 }
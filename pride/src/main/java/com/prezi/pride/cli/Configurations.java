@@ -1,36 +1,89 @@
 package com.prezi.pride.cli;
 
+import com.prezi.pride.cli.model.ProjectModelCache;
+import com.prezi.pride.cli.model.SharedProjectModelStore;
+import com.prezi.pride.internal.ProgressUtils;
+import com.prezi.pride.vcs.CloneOptions;
+import com.prezi.pride.vcs.RepoCache;
+import com.prezi.pride.vcs.RepoCacheMode;
+import com.prezi.pride.vcs.VcsOperation;
+import com.prezi.pride.vcs.VcsStatusCache;
+import com.prezi.pride.vcs.file.FileVcsSupportFactory;
 import org.apache.commons.configuration.MapConfiguration;
 
 import java.util.LinkedHashMap;
 
 public interface Configurations {
 	public static final String PRIDE_HOME = "pride.home";
+	public static final String PRIDE_JOBS = ProgressUtils.PRIDE_JOBS;
 	public static final String REPO_TYPE_DEFAULT = "repo.type.default";
 	public static final String REPO_BASE_URL = "repo.base.url";
 	public static final String REPO_CACHE_ALWAYS = "repo.cache.always";
+	public static final String REPO_CACHE_MODE = RepoCacheMode.REPO_CACHE_MODE;
+	public static final String REPO_CACHE_TTL = RepoCache.REPO_CACHE_TTL;
+	public static final String REPO_CACHE_MAX_SIZE = RepoCache.REPO_CACHE_MAX_SIZE;
+	public static final String REPO_CLONE_DEPTH = CloneOptions.REPO_CLONE_DEPTH;
+	public static final String REPO_CLONE_FILTER = CloneOptions.REPO_CLONE_FILTER;
 	public static final String REPO_RECURSIVE = "repo.recursive.always";
 	public static final String REPO_BRANCH = "repo.branch";
 	public static final String COMMAND_UPDATE_REFRESH_DEPENDENCIES = "command.update.refresh_dependencies.always";
+	public static final String COMMAND_UPDATE_FETCH_JOBS = "command.update.fetch_jobs";
 	public static final String COMMAND_REINIT_REFRESH_DEPENDENCIES = "command.reinit.refresh_dependencies.always";
+	public static final String COMMAND_CACHE_REFRESH_JOBS = "command.cache.refresh.jobs";
+	public static final String COMMAND_CACHE_BUNDLE_JOBS = "command.cache.bundle.jobs";
+	public static final String GIT_BACKEND = "git.backend";
+	public static final String SVN_MIRROR = "svn.mirror";
+	public static final String VCS_STATUS_CACHE = VcsStatusCache.STATUS_CACHE_ENABLED;
+	public static final String VCS_STATUS_JOBS = ProgressUtils.STATUS_JOBS;
+	public static final String VCS_SUBMODULE_JOBS = ProgressUtils.SUBMODULE_JOBS;
+	public static final String VCS_FILE_JOBS = FileVcsSupportFactory.FILE_JOBS;
+	public static final String VCS_TIMEOUT_CLONE = VcsOperation.CLONE.getTimeoutProperty();
+	public static final String VCS_TIMEOUT_FETCH = VcsOperation.FETCH.getTimeoutProperty();
+	public static final String VCS_TIMEOUT_STATUS = VcsOperation.STATUS.getTimeoutProperty();
+	public static final String VCS_TIMEOUT_MAINTENANCE = VcsOperation.MAINTENANCE.getTimeoutProperty();
 	public static final String GRADLE_VERSION = "gradle.version";
 	public static final String GRADLE_HOME = "gradle.home";
 	public static final String GRADLE_WRAPPER = "gradle.wrapper";
+	public static final String GRADLE_MODEL_CACHE = ProjectModelCache.MODEL_CACHE_ENABLED;
+	public static final String GRADLE_MODEL_INPUTS = ProjectModelCache.MODEL_CACHE_INPUTS;
+	public static final String GRADLE_MODEL_SHARED = SharedProjectModelStore.MODEL_STORE_ENABLED;
 
 	static class Defaults extends MapConfiguration {
 		public Defaults() {
 			super(new LinkedHashMap<String, Object>());
 			final String property = System.getProperty("PRIDE_HOME");
 			setProperty(PRIDE_HOME, property != null ? property : System.getProperty("user.home") + "/.pride");
+			setProperty(PRIDE_JOBS, 1);
 			setProperty(REPO_TYPE_DEFAULT, "git");
 			setProperty(REPO_CACHE_ALWAYS, true);
+			setProperty(REPO_CACHE_MODE, "copy");
+			setProperty(REPO_CACHE_TTL, 300);
+			setProperty(REPO_CACHE_MAX_SIZE, 0);
+			setProperty(REPO_CLONE_DEPTH, 0);
+			setProperty(REPO_CLONE_FILTER, "");
 			setProperty(REPO_RECURSIVE, false);
 			setProperty(REPO_BRANCH, "");
 			setProperty(COMMAND_UPDATE_REFRESH_DEPENDENCIES, false);
+			setProperty(COMMAND_UPDATE_FETCH_JOBS, 8);
 			setProperty(COMMAND_REINIT_REFRESH_DEPENDENCIES, false);
+			setProperty(COMMAND_CACHE_REFRESH_JOBS, 8);
+			setProperty(COMMAND_CACHE_BUNDLE_JOBS, 4);
+			setProperty(GIT_BACKEND, "cli");
+			setProperty(SVN_MIRROR, false);
+			setProperty(VCS_STATUS_CACHE, true);
+			setProperty(VCS_STATUS_JOBS, 8);
+			setProperty(VCS_SUBMODULE_JOBS, 8);
+			setProperty(VCS_FILE_JOBS, 4);
+			setProperty(VCS_TIMEOUT_CLONE, VcsOperation.CLONE.getDefaultTimeout());
+			setProperty(VCS_TIMEOUT_FETCH, VcsOperation.FETCH.getDefaultTimeout());
+			setProperty(VCS_TIMEOUT_STATUS, VcsOperation.STATUS.getDefaultTimeout());
+			setProperty(VCS_TIMEOUT_MAINTENANCE, VcsOperation.MAINTENANCE.getDefaultTimeout());
 			setProperty(GRADLE_VERSION, null);
 			setProperty(GRADLE_HOME, null);
 			setProperty(GRADLE_WRAPPER, true);
+			setProperty(GRADLE_MODEL_CACHE, true);
+			setProperty(GRADLE_MODEL_INPUTS, "");
+			setProperty(GRADLE_MODEL_SHARED, true);
 		}
 	}
 }
@@ -67,6 +67,14 @@ public class DefaultRuntimeConfiguration extends AbstractConfiguration implement
 		return getString(property);
 	}
 
+	@Override
+	public int override(String property, Integer override) {
+		if (override != null) {
+			setProperty(property, override);
+		}
+		return getInt(property);
+	}
+
 	@Override
 	protected void addPropertyDirect(String key, Object value) {
 		configurations.get(0).setProperty(key, value);
@@ -1,6 +1,7 @@
 package com.prezi.pride.cli;
 
 import com.prezi.pride.config.AbstractConfigurationHandler;
+import com.prezi.pride.vcs.CloneOptions;
 import com.prezi.pride.vcs.VcsManager;
 import org.apache.commons.configuration.Configuration;
 
@@ -15,7 +16,7 @@ public class ExportedConfigurationHandler extends AbstractConfigurationHandler<E
 		String moduleRemote = config.getString(prefix + ".remote");
 		String moduleRevision = config.getString(prefix + ".revision");
 		String vcsType = config.getString(prefix + ".vcs");
-		return new ExportedModule(moduleName, moduleRemote, moduleRevision, getVcsManager().getVcs(vcsType, config));
+		return new ExportedModule(moduleName, moduleRemote, moduleRevision, getVcsManager().getVcs(vcsType, config), CloneOptions.load(config, prefix));
 	}
 
 	@Override
@@ -24,5 +25,6 @@ public class ExportedConfigurationHandler extends AbstractConfigurationHandler<E
 		config.setProperty(prefix + ".remote", module.getRemote());
 		config.setProperty(prefix + ".revision", module.getRevision());
 		config.setProperty(prefix + ".vcs", module.getVcs().getType());
+		module.getCloneOptions().save(config, prefix);
 	}
 }
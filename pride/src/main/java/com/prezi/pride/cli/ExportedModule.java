@@ -1,6 +1,7 @@
 package com.prezi.pride.cli;
 
 import com.prezi.pride.Named;
+import com.prezi.pride.vcs.CloneOptions;
 import com.prezi.pride.vcs.Vcs;
 
 /**
@@ -11,12 +12,18 @@ public class ExportedModule implements Named {
 	private final String remote;
 	private final String revision;
 	private final Vcs vcs;
+	private final CloneOptions cloneOptions;
 
 	public ExportedModule(String module, String remote, String revision, Vcs vcs) {
+		this(module, remote, revision, vcs, CloneOptions.UNSET);
+	}
+
+	public ExportedModule(String module, String remote, String revision, Vcs vcs, CloneOptions cloneOptions) {
 		this.module = module;
 		this.remote = remote;
 		this.revision = revision;
 		this.vcs = vcs;
+		this.cloneOptions = cloneOptions;
 	}
 
 	@Override
@@ -40,6 +47,10 @@ public class ExportedModule implements Named {
 		return vcs;
 	}
 
+	public CloneOptions getCloneOptions() {
+		return cloneOptions;
+	}
+
 	@Override
 	public String toString() {
 		return module;
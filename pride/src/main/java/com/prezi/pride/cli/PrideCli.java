@@ -2,6 +2,7 @@ package com.prezi.pride.cli;
 
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
+import com.google.common.collect.Sets;
 import com.prezi.pride.PrideException;
 import com.prezi.pride.cli.commands.Group;
 import com.prezi.pride.cli.commands.PrideCommand;
@@ -17,6 +18,7 @@ import org.slf4j.LoggerFactory;
 
 import java.util.List;
 import java.util.ServiceLoader;
+import java.util.Set;
 import java.util.concurrent.Callable;
 
 public class PrideCli {
@@ -38,11 +40,20 @@ public class PrideCli {
 						SuggestCommand.class
 				);
 
+		Set<String> groups = Sets.newHashSet();
 		for (PridePlugin plugin : ServiceLoader.load(PridePlugin.class)) {
 			for (Class<? extends PrideCommand> command : plugin.getCommands()) {
 				Group group = command.getAnnotation(Group.class);
 				if (group != null) {
-					builder.withGroup(group.value()).withCommand(command);
+					Cli.GroupBuilder<Callable<?>> groupBuilder = builder.withGroup(group.value());
+					// Groups need a default command, and it can only be set once
+					if (groups.add(group.value())) {
+						groupBuilder.withDefaultCommand(Help.class);
+						if (!group.description().isEmpty()) {
+							groupBuilder.withDescription(group.description());
+						}
+					}
+					groupBuilder.withCommand(command);
 				} else {
 					builder.withCommand(command);
 				}
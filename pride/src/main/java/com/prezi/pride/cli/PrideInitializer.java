@@ -1,16 +1,22 @@
 package com.prezi.pride.cli;
 
+import com.google.common.base.Strings;
 import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.prezi.pride.Module;
 import com.prezi.pride.Pride;
 import com.prezi.pride.PrideException;
 import com.prezi.pride.RuntimeConfiguration;
 import com.prezi.pride.cli.gradle.GradleConnectorManager;
 import com.prezi.pride.cli.model.ProjectModelAccessor;
+import com.prezi.pride.cli.model.ProjectModelCache;
+import com.prezi.pride.cli.model.SharedProjectModelStore;
 import com.prezi.pride.internal.LoggedNamedProgressAction;
 import com.prezi.pride.internal.ProgressUtils;
 import com.prezi.pride.projectmodel.PrideProjectModel;
+import com.prezi.pride.vcs.RepoCache;
 import com.prezi.pride.vcs.VcsManager;
 import org.apache.commons.configuration.Configuration;
 import org.apache.commons.configuration.ConfigurationException;
@@ -23,6 +29,8 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -46,8 +54,14 @@ public class PrideInitializer {
 		FileUtils.forceMkdir(prideDirectory);
 
 		File configDirectory = Pride.getPrideConfigDirectory(prideDirectory);
+		// Keep cached project models, they are only used while the build of their module stays the same
+		File modelCacheFile = ProjectModelCache.getCacheFile(prideDirectory);
+		byte[] modelCache = modelCacheFile.isFile() ? FileUtils.readFileToByteArray(modelCacheFile) : null;
 		FileUtils.deleteDirectory(configDirectory);
 		FileUtils.forceMkdir(configDirectory);
+		if (modelCache != null) {
+			FileUtils.writeByteArrayToFile(modelCacheFile, modelCache);
+		}
 		FileUtils.write(Pride.getPrideVersionFile(configDirectory), "0\n");
 
 		// Create config file
@@ -88,33 +102,79 @@ public class PrideInitializer {
 			}
 
 			final ProjectModelAccessor modelAccessor = ProjectModelAccessor.create(gradleConnectorManager, verbose);
-			final Map<File, PrideProjectModel> rootProjects = Maps.newLinkedHashMap();
-			ProgressUtils.execute(pride, pride.getModules(), new LoggedNamedProgressAction<Module>("Initializing module") {
-				@Override
-				public void execute(Pride pride, Module module) {
-					File moduleDirectory = new File(pride.getRootDirectory(), module.getName());
-					if (Pride.isValidModuleDirectory(moduleDirectory)) {
-						PrideProjectModel rootProject = modelAccessor.getRootProjectModel(moduleDirectory);
-						rootProjects.put(moduleDirectory, rootProject);
+			final ProjectModelCache modelCache = createModelCache(pride);
+			final SharedProjectModelStore modelStore = createModelStore(pride);
+			// Modules can be initialized in parallel, keep them ordered by directory
+			final Map<File, PrideProjectModel> rootProjects = Collections.synchronizedMap(Maps.<File, PrideProjectModel>newTreeMap());
+			final Set<File> sparseModuleDirectories = Collections.synchronizedSet(Sets.<File>newHashSet());
+			try {
+				ProgressUtils.execute(pride, pride.getModules(), new LoggedNamedProgressAction<Module>("Initializing module") {
+					@Override
+					public void execute(Pride pride, Module module) throws IOException {
+						File moduleDirectory = new File(pride.getRootDirectory(), module.getName());
+						if (Pride.isValidModuleDirectory(moduleDirectory)) {
+							// Only evaluate modules whose build changed since they were last evaluated
+							ProjectModelCache.Fingerprint fingerprint = modelCache.getFingerprint(module.getName(), moduleDirectory);
+							PrideProjectModel rootProject = modelCache.get(module.getName(), fingerprint);
+							if (rootProject == null) {
+								// Another pride might have evaluated the same build already
+								File sharedModelFile = modelStore.getModelFile(pride, module, fingerprint);
+								rootProject = modelStore.get(sharedModelFile, moduleDirectory, fingerprint);
+								if (rootProject == null) {
+									rootProject = modelAccessor.getRootProjectModel(moduleDirectory);
+									modelStore.put(sharedModelFile, moduleDirectory, fingerprint, rootProject);
+								}
+								modelCache.put(module.getName(), fingerprint, rootProject);
+							}
+							rootProjects.put(moduleDirectory, rootProject);
+							if (!module.getCloneOptions().getSparsePaths().isEmpty()) {
+								sparseModuleDirectories.add(moduleDirectory);
+							}
+						}
 					}
-				}
 
-				@Override
-				public void execute(Pride pride, Module item, int index, int count) throws IOException {
-					super.execute(pride, item, index, count);
-					if (index < count - 1) {
-						logger.info("");
+					@Override
+					public void execute(Pride pride, Module item, int index, int count) throws IOException {
+						super.execute(pride, item, index, count);
+						if (index < count - 1) {
+							logger.info("");
+						}
 					}
-				}
-			});
+				});
+			} finally {
+				// Keep the models of modules that could be evaluated even if others failed
+				modelCache.save();
+				pride.saveStatusCache();
+			}
 
-			createSettingsFile(pride, rootProjects);
+			createSettingsFile(pride, rootProjects, sparseModuleDirectories);
 		} catch (Exception ex) {
 			throw new PrideException("There was a problem during the initialization of the pride. Fix the errors above, and try again with\n\n\tpride init --force", ex);
 		}
 	}
 
-	private void createSettingsFile(Pride pride, Map<File, PrideProjectModel> rootProjects) throws IOException {
+	private ProjectModelCache createModelCache(Pride pride) {
+		Configuration configuration = pride.getConfiguration();
+		List<String> inputs = Lists.newArrayList();
+		for (String input : configuration.getStringArray(ProjectModelCache.MODEL_CACHE_INPUTS)) {
+			if (!Strings.isNullOrEmpty(input.trim())) {
+				inputs.add(input.trim());
+			}
+		}
+		return new ProjectModelCache(
+				pride.getRootDirectory(),
+				configuration.getBoolean(ProjectModelCache.MODEL_CACHE_ENABLED, true),
+				gradleConnectorManager.getGradleVersion(),
+				inputs);
+	}
+
+	private static SharedProjectModelStore createModelStore(Pride pride) throws IOException {
+		Configuration configuration = pride.getConfiguration();
+		RepoCache repoCache = new RepoCache(new File(configuration.getString(Configurations.PRIDE_HOME) + "/cache"), RepoCache.getTimeToLive(configuration));
+		return new SharedProjectModelStore(repoCache, configuration.getBoolean(SharedProjectModelStore.MODEL_STORE_ENABLED, true));
+	}
+
+	private void createSettingsFile(Pride pride, Map<File, PrideProjectModel> rootProjects, Set<File> sparseModuleDirectories) throws IOException {
 		File settingsFile = pride.getGradleSettingsFile();
 		FileUtils.deleteQuietly(settingsFile);
 		FileUtils.write(settingsFile, DO_NOT_MODIFY_WARNING);
@@ -128,16 +188,21 @@ public class PrideInitializer {
 			// Write the root project
 			FileUtils.write(settingsFile, "include \'" + rootProject.getName() + "\'\n", true);
 			FileUtils.write(settingsFile, "project(\':" + rootProject.getName() + "\').projectDir = file(\'" + moduleDirectory.getName() + "\')\n", true);
-			writeSettingsForChildren(pride.getRootDirectory(), settingsFile, rootProject.getName(), rootProject.getChildren());
+			boolean sparse = sparseModuleDirectories.contains(moduleDirectory);
+			writeSettingsForChildren(pride.getRootDirectory(), settingsFile, rootProject.getName(), rootProject.getChildren(), sparse);
 		}
 	}
 
-	private void writeSettingsForChildren(File prideRootDir, File settingsFile, String rootProjectName, Set<PrideProjectModel> children) throws IOException {
+	private void writeSettingsForChildren(File prideRootDir, File settingsFile, String rootProjectName, Set<PrideProjectModel> children, boolean sparse) throws IOException {
 		for (PrideProjectModel child : children) {
-			FileUtils.write(settingsFile, "include \'" + rootProjectName + child.getPath() + "\'\n", true);
-			String childProjectRelativePath = prideRootDir.getCanonicalFile().toURI().relativize(new File(child.getProjectDir()).getCanonicalFile().toURI()).toString();
-			FileUtils.write(settingsFile, "project(\':" + rootProjectName + child.getPath() + "\').projectDir = file(\'" + childProjectRelativePath + "\')\n", true);
-			writeSettingsForChildren(prideRootDir, settingsFile, rootProjectName, child.getChildren());
+			File childProjectDir = new File(child.getProjectDir());
+			// Leave out projects outside the sparse paths of the module
+			if (!sparse || childProjectDir.isDirectory()) {
+				FileUtils.write(settingsFile, "include \'" + rootProjectName + child.getPath() + "\'\n", true);
+				String childProjectRelativePath = prideRootDir.getCanonicalFile().toURI().relativize(childProjectDir.getCanonicalFile().toURI()).toString();
+				FileUtils.write(settingsFile, "project(\':" + rootProjectName + child.getPath() + "\').projectDir = file(\'" + childProjectRelativePath + "\')\n", true);
+			}
+			writeSettingsForChildren(prideRootDir, settingsFile, rootProjectName, child.getChildren(), sparse);
 		}
 	}
 }
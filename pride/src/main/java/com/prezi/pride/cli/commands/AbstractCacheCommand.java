@@ -0,0 +1,46 @@
+package com.prezi.pride.cli.commands;
+
+import com.google.common.collect.Maps;
+import com.prezi.pride.RuntimeConfiguration;
+import com.prezi.pride.vcs.CachedRepository;
+import com.prezi.pride.vcs.RepoCache;
+import com.prezi.pride.vcs.VcsSupport;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Map;
+
+import static com.prezi.pride.cli.Configurations.PRIDE_HOME;
+
+@Group(value = "cache", description = "Manage cached repositories")
+public abstract class AbstractCacheCommand extends AbstractConfiguredCommand {
+	@Override
+	protected void executeWithConfiguration(RuntimeConfiguration config) throws Exception {
+		File cachePath = new File(config.getString(PRIDE_HOME) + "/cache");
+		executeInCache(config, new RepoCache(cachePath, RepoCache.getTimeToLive(config)));
+	}
+
+	protected abstract void executeInCache(RuntimeConfiguration config, RepoCache repoCache) throws Exception;
+
+	/**
+	 * Returns the VCS support for each type of the given cached repositories.
+	 */
+	protected Map<String, VcsSupport> getVcsSupports(RuntimeConfiguration config, Collection<CachedRepository> repositories) {
+		Map<String, VcsSupport> vcsSupports = Maps.newHashMap();
+		for (CachedRepository repository : repositories) {
+			if (!vcsSupports.containsKey(repository.getType())) {
+				vcsSupports.put(repository.getType(), getVcsManager().getVcs(repository.getType(), config).getSupport());
+			}
+		}
+		return vcsSupports;
+	}
+
+	protected static String getTotalSize(Collection<CachedRepository> repositories) {
+		long size = 0;
+		for (CachedRepository repository : repositories) {
+			size += repository.getSize();
+		}
+		return FileUtils.byteCountToDisplaySize(size);
+	}
+}
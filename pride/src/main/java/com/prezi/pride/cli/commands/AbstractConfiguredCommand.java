@@ -7,6 +7,7 @@ import org.apache.commons.configuration.PropertiesConfiguration;
 
 import static com.prezi.pride.cli.Configurations.GRADLE_HOME;
 import static com.prezi.pride.cli.Configurations.GRADLE_VERSION;
+import static com.prezi.pride.cli.Configurations.PRIDE_JOBS;
 
 public abstract class AbstractConfiguredCommand extends AbstractCommand {
 	@Option(name = "--gradle-version",
@@ -19,6 +20,11 @@ public abstract class AbstractConfiguredCommand extends AbstractCommand {
 			description = "Use specified Gradle home")
 	private String explicitGradleHome;
 
+	@Option(name = {"-j", "--jobs"},
+			title = "count",
+			description = "Process at most this many modules in parallel (defaults to 1)")
+	private Integer explicitJobs;
+
 	@Override
 	final public Integer call() throws Exception {
 		PropertiesConfiguration globalConfiguration = loadGlobalConfiguration();
@@ -26,6 +32,7 @@ public abstract class AbstractConfiguredCommand extends AbstractCommand {
 
 		config.override(GRADLE_VERSION, explicitGradleVersion);
 		config.override(GRADLE_HOME, explicitGradleHome);
+		config.override(PRIDE_JOBS, explicitJobs);
 
 		executeWithConfiguration(config);
 		return 0;
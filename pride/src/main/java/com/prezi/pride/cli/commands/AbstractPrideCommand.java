@@ -8,6 +8,7 @@ public abstract class AbstractPrideCommand extends AbstractConfiguredCommand {
 	final protected void executeWithConfiguration(RuntimeConfiguration globalConfig) throws Exception {
 		Pride pride = Pride.getPride(getPrideDirectory(), globalConfig, getVcsManager());
 		executeInPride(pride);
+		pride.saveStatusCache();
 	}
 
 	public abstract void executeInPride(Pride pride) throws Exception;
@@ -7,6 +7,7 @@ import com.prezi.pride.PrideException;
 import com.prezi.pride.RuntimeConfiguration;
 import com.prezi.pride.cli.ExportedModule;
 import com.prezi.pride.cli.commands.actions.AddAction;
+import com.prezi.pride.vcs.CloneOptions;
 import com.prezi.pride.vcs.Vcs;
 import com.prezi.pride.vcs.VcsSupport;
 import io.airlift.command.Arguments;
@@ -41,6 +42,10 @@ public class AddCommand extends AbstractPrideCommand {
 			description = "Do not use local repo cache")
 	private boolean explicitNoRepoCache;
 
+	@Option(name = {"--refresh-cache"},
+			description = "Update cached repositories even if they have been updated recently")
+	private boolean explicitRefreshRepoCache;
+
 	@Option(name = {"-r", "--recursive"},
 			description = "Update sub-modules recursively")
 	private Boolean explicitRecursive;
@@ -55,6 +60,21 @@ public class AddCommand extends AbstractPrideCommand {
 			description = "Branch to use")
 	private String explicitBranch;
 
+	@Option(name = {"--depth"},
+			title = "commits",
+			description = "Clone only this many commits of history")
+	private Integer explicitDepth;
+
+	@Option(name = {"--filter"},
+			title = "filter",
+			description = "Clone only objects matching the filter (like blob:none or tree:0), and fetch the rest when needed")
+	private String explicitFilter;
+
+	@Option(name = {"--sparse"},
+			title = "directory",
+			description = "Check out only this directory of the modules (can be given multiple times)")
+	private List<String> explicitSparsePaths;
+
 	@Arguments(description = "Modules to add to the pride -- either module names to be resolved against the base URL, or full repository URLs")
 	private List<String> modules;
 
@@ -63,7 +83,7 @@ public class AddCommand extends AbstractPrideCommand {
 		if (modules == null || modules.isEmpty()) {
 			throw new PrideException("No modules specified");
 		}
-		AddAction addAction = new AddAction(pride, overwrite, explicitUseRepoCache, explicitNoRepoCache, explicitRecursive, isVerbose());
+		AddAction addAction = new AddAction(pride, overwrite, explicitUseRepoCache, explicitNoRepoCache, explicitRefreshRepoCache, explicitRecursive, isVerbose());
 		addAction.addModules(getModulesToAdd(pride.getConfiguration()));
 	}
 
@@ -73,6 +93,7 @@ public class AddCommand extends AbstractPrideCommand {
 		final String branch = config.override(REPO_BRANCH, explicitBranch);
 
 		final Vcs vcs = getVcsManager().getVcs(repoType, config);
+		final CloneOptions cloneOptions = new CloneOptions(explicitDepth, explicitFilter, explicitSparsePaths);
 		final VcsSupport vcsSupport = vcs.getSupport();
 
 		return Collections2.transform(modules, new Function<String, ExportedModule>() {
@@ -86,7 +107,7 @@ public class AddCommand extends AbstractPrideCommand {
 					moduleName = module;
 					repoUrl = getRepoUrl(repoBaseUrl, moduleName);
 				}
-				return new ExportedModule(moduleName, repoUrl, branch, vcs);
+				return new ExportedModule(moduleName, repoUrl, branch, vcs, cloneOptions);
 			}
 		});
 	}
@@ -0,0 +1,63 @@
+package com.prezi.pride.cli.commands;
+
+import com.google.common.collect.Iterables;
+import com.prezi.pride.Named;
+import com.prezi.pride.Pride;
+import com.prezi.pride.PrideException;
+import com.prezi.pride.RuntimeConfiguration;
+import com.prezi.pride.internal.LoggedProgressAction;
+import com.prezi.pride.internal.ProgressUtils;
+import com.prezi.pride.vcs.CachedRepository;
+import com.prezi.pride.vcs.RepoCache;
+import com.prezi.pride.vcs.VcsSupport;
+import io.airlift.command.Arguments;
+import io.airlift.command.Command;
+import io.airlift.command.Option;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.prezi.pride.cli.Configurations.COMMAND_CACHE_BUNDLE_JOBS;
+
+@Command(name = "export", description = "Write cached repositories to a directory, to be imported into another cache")
+public class CacheExportCommand extends AbstractCacheCommand {
+
+	@Option(name = {"--parallel"},
+			title = "count",
+			description = "Export at most this many cached repositories in parallel")
+	private Integer explicitParallel;
+
+	@Arguments(required = true,
+			title = "directory",
+			description = "The directory to export cached repositories to")
+	private List<String> directory;
+
+	@Override
+	protected void executeInCache(RuntimeConfiguration config, final RepoCache repoCache) throws Exception {
+		if (directory.size() != 1) {
+			throw new PrideException("Specify a single directory to export to");
+		}
+		final File exportDirectory = new File(Iterables.getOnlyElement(directory)).getAbsoluteFile();
+		FileUtils.forceMkdir(exportDirectory);
+		int parallel = Math.max(1, config.override(COMMAND_CACHE_BUNDLE_JOBS, explicitParallel));
+
+		List<CachedRepository> repositories = repoCache.getRepositories();
+		final Map<String, VcsSupport> vcsSupports = getVcsSupports(config, repositories);
+		final AtomicInteger exported = new AtomicInteger();
+		ProgressUtils.execute(null, repositories, new LoggedProgressAction<CachedRepository>("Exporting", Named.TOSTRING_NAMER) {
+			@Override
+			protected void execute(Pride pride, CachedRepository repository) throws IOException {
+				if (repoCache.export(repository, vcsSupports.get(repository.getType()), exportDirectory)) {
+					exported.incrementAndGet();
+				} else {
+					logger.info("Nothing to export from {}", repository);
+				}
+			}
+		}, parallel);
+		logger.info("Exported {} of {} cached repositories to {}", exported.get(), repositories.size(), exportDirectory);
+	}
+}
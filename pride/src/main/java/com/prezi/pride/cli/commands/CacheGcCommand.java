@@ -0,0 +1,54 @@
+package com.prezi.pride.cli.commands;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.Sets;
+import com.prezi.pride.Named;
+import com.prezi.pride.Pride;
+import com.prezi.pride.PrideException;
+import com.prezi.pride.RuntimeConfiguration;
+import com.prezi.pride.internal.LoggedProgressAction;
+import com.prezi.pride.internal.ProgressUtils;
+import com.prezi.pride.vcs.CachedRepository;
+import com.prezi.pride.vcs.RepoCache;
+import com.prezi.pride.vcs.VcsSupport;
+import io.airlift.command.Command;
+import io.airlift.command.Option;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@Command(name = "gc", description = "Compact cached repositories")
+public class CacheGcCommand extends AbstractCacheCommand {
+
+	@Option(name = {"--full"},
+			description = "Repack every cached repository, not only the ones that need it")
+	private boolean explicitFull;
+
+	@Override
+	protected void executeInCache(RuntimeConfiguration config, final RepoCache repoCache) throws Exception {
+		List<CachedRepository> repositories = repoCache.getRepositories();
+		final Map<String, VcsSupport> vcsSupports = getVcsSupports(config, repositories);
+
+		String sizeBefore = getTotalSize(repositories);
+		final Set<String> failures = Collections.synchronizedSet(Sets.<String>newTreeSet());
+		ProgressUtils.execute(null, repositories, new LoggedProgressAction<CachedRepository>("Compacting", Named.TOSTRING_NAMER) {
+			@Override
+			protected void execute(Pride pride, CachedRepository repository) throws IOException {
+				try {
+					repoCache.optimize(repository, vcsSupports.get(repository.getType()), explicitFull);
+				} catch (Exception ex) {
+					logger.warn("Could not compact cached repository {}: {}", repository, ex.getMessage());
+					logger.debug("Exception while compacting cached repository {}", repository, ex);
+					failures.add(repository.getUrl());
+				}
+			}
+		}, ProgressUtils.getJobs(config));
+		logger.info("Cache size: {} (was {})", getTotalSize(repoCache.getRepositories()), sizeBefore);
+		if (!failures.isEmpty()) {
+			throw new PrideException("Could not compact the following cached repositories:\n\n\t* " + Joiner.on("\n\t* ").join(failures));
+		}
+	}
+}
@@ -0,0 +1,61 @@
+package com.prezi.pride.cli.commands;
+
+import com.google.common.collect.Iterables;
+import com.prezi.pride.Named;
+import com.prezi.pride.Pride;
+import com.prezi.pride.PrideException;
+import com.prezi.pride.RuntimeConfiguration;
+import com.prezi.pride.internal.LoggedProgressAction;
+import com.prezi.pride.internal.ProgressUtils;
+import com.prezi.pride.vcs.CachedRepository;
+import com.prezi.pride.vcs.RepoCache;
+import com.prezi.pride.vcs.VcsSupport;
+import io.airlift.command.Arguments;
+import io.airlift.command.Command;
+import io.airlift.command.Option;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.prezi.pride.cli.Configurations.COMMAND_CACHE_BUNDLE_JOBS;
+
+@Command(name = "import", description = "Add cached repositories exported by 'pride cache export'")
+public class CacheImportCommand extends AbstractCacheCommand {
+
+	@Option(name = {"--parallel"},
+			title = "count",
+			description = "Import at most this many cached repositories in parallel")
+	private Integer explicitParallel;
+
+	@Arguments(required = true,
+			title = "directory",
+			description = "The directory to import cached repositories from")
+	private List<String> directory;
+
+	@Override
+	protected void executeInCache(RuntimeConfiguration config, final RepoCache repoCache) throws Exception {
+		if (directory.size() != 1) {
+			throw new PrideException("Specify a single directory to import from");
+		}
+		File exportDirectory = new File(Iterables.getOnlyElement(directory)).getAbsoluteFile();
+		int parallel = Math.max(1, config.override(COMMAND_CACHE_BUNDLE_JOBS, explicitParallel));
+
+		List<CachedRepository> repositories = RepoCache.loadExportManifest(exportDirectory);
+		final Map<String, VcsSupport> vcsSupports = getVcsSupports(config, repositories);
+		final AtomicInteger imported = new AtomicInteger();
+		ProgressUtils.execute(null, repositories, new LoggedProgressAction<CachedRepository>("Importing", Named.TOSTRING_NAMER) {
+			@Override
+			protected void execute(Pride pride, CachedRepository repository) throws IOException {
+				if (repoCache.importRepository(repository, vcsSupports.get(repository.getType()))) {
+					imported.incrementAndGet();
+				} else {
+					logger.info("Keeping {} already in the cache", repository);
+				}
+			}
+		}, parallel);
+		logger.info("Imported {} of {} cached repositories from {}", imported.get(), repositories.size(), exportDirectory);
+	}
+}
@@ -0,0 +1,34 @@
+package com.prezi.pride.cli.commands;
+
+import com.prezi.pride.RuntimeConfiguration;
+import com.prezi.pride.vcs.CachedRepository;
+import com.prezi.pride.vcs.RepoCache;
+import io.airlift.command.Command;
+import io.airlift.command.Option;
+
+import java.util.List;
+
+import static com.prezi.pride.cli.Configurations.REPO_CACHE_MAX_SIZE;
+
+@Command(name = "prune", description = "Remove least recently used repositories from the cache")
+public class CachePruneCommand extends AbstractCacheCommand {
+
+	@Option(name = {"--max-size"},
+			title = "megabytes",
+			description = "Shrink the cache under this size (defaults to " + REPO_CACHE_MAX_SIZE + ")")
+	private Integer explicitMaxSize;
+
+	@Override
+	protected void executeInCache(RuntimeConfiguration config, RepoCache repoCache) throws Exception {
+		config.override(REPO_CACHE_MAX_SIZE, explicitMaxSize);
+		long maximumSize = RepoCache.getMaximumSize(config);
+		if (maximumSize == 0) {
+			logger.info("The size of the cache is not limited, set {} or use --max-size", REPO_CACHE_MAX_SIZE);
+			return;
+		}
+
+		List<CachedRepository> removedRepositories = repoCache.prune(maximumSize);
+		logger.info("Removed {} repositories ({}), cache size: {}", removedRepositories.size(),
+				getTotalSize(removedRepositories), getTotalSize(repoCache.getRepositories()));
+	}
+}
@@ -0,0 +1,94 @@
+package com.prezi.pride.cli.commands;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.prezi.pride.Named;
+import com.prezi.pride.Pride;
+import com.prezi.pride.PrideException;
+import com.prezi.pride.RuntimeConfiguration;
+import com.prezi.pride.internal.LoggedProgressAction;
+import com.prezi.pride.internal.ProgressUtils;
+import com.prezi.pride.vcs.CachedRepository;
+import com.prezi.pride.vcs.RepoCache;
+import com.prezi.pride.vcs.VcsSupport;
+import io.airlift.command.Command;
+import io.airlift.command.Option;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static com.prezi.pride.cli.Configurations.COMMAND_CACHE_REFRESH_JOBS;
+
+@Command(name = "refresh", description = "Update cached repositories from their remotes")
+public class CacheRefreshCommand extends AbstractCacheCommand {
+
+	/**
+	 * Refreshes are spread over this fraction of the interval, so that multiple
+	 * refreshers don't hit the remotes at the same time.
+	 */
+	private static final double JITTER = 0.1;
+
+	@Option(name = {"--parallel"},
+			title = "count",
+			description = "Update at most this many cached repositories in parallel")
+	private Integer explicitParallel;
+
+	@Option(name = {"--interval"},
+			title = "seconds",
+			description = "Keep running, and update cached repositories again after this many seconds")
+	private Integer explicitInterval;
+
+	@Override
+	protected void executeInCache(RuntimeConfiguration config, RepoCache repoCache) throws Exception {
+		int parallel = Math.max(1, config.override(COMMAND_CACHE_REFRESH_JOBS, explicitParallel));
+		if (explicitInterval == null) {
+			Set<String> failures = refresh(config, repoCache, parallel);
+			if (!failures.isEmpty()) {
+				throw new PrideException("Could not update the following cached repositories:\n\n\t* " + Joiner.on("\n\t* ").join(failures));
+			}
+			return;
+		}
+
+		if (explicitInterval <= 0) {
+			throw new PrideException("Interval must be positive: " + explicitInterval);
+		}
+		long interval = TimeUnit.SECONDS.toMillis(explicitInterval);
+		Random random = new Random();
+		//noinspection InfiniteLoopStatement
+		while (true) {
+			refresh(config, repoCache, parallel);
+			long delay = interval + (long) (interval * JITTER * (2 * random.nextDouble() - 1));
+			logger.info("Next update in {} seconds", TimeUnit.MILLISECONDS.toSeconds(delay));
+			Thread.sleep(delay);
+		}
+	}
+
+	private Set<String> refresh(RuntimeConfiguration config, final RepoCache repoCache, int parallel) throws IOException {
+		// List mirrors every time, so that ones added since the last run are refreshed, too
+		List<CachedRepository> repositories = Lists.newArrayList(repoCache.getRepositories());
+		// Don't always start with the same remote
+		Collections.shuffle(repositories);
+		final Map<String, VcsSupport> vcsSupports = getVcsSupports(config, repositories);
+		final Set<String> failures = Collections.synchronizedSet(Sets.<String>newTreeSet());
+		ProgressUtils.execute(null, repositories, new LoggedProgressAction<CachedRepository>("Updating", Named.TOSTRING_NAMER) {
+			@Override
+			protected void execute(Pride pride, CachedRepository repository) throws IOException {
+				try {
+					repoCache.refresh(repository, vcsSupports.get(repository.getType()));
+				} catch (Exception ex) {
+					logger.warn("Could not update cached repository {}: {}", repository, ex.getMessage());
+					logger.debug("Exception while updating cached repository {}", repository, ex);
+					failures.add(repository.getUrl());
+				}
+			}
+		}, parallel);
+		logger.info("Updated {} of {} cached repositories", repositories.size() - failures.size(), repositories.size());
+		return failures;
+	}
+}
@@ -0,0 +1,45 @@
+package com.prezi.pride.cli.commands;
+
+import com.google.common.base.Strings;
+import com.prezi.pride.RuntimeConfiguration;
+import com.prezi.pride.vcs.CachedRepository;
+import com.prezi.pride.vcs.RepoCache;
+import io.airlift.command.Command;
+import org.apache.commons.io.FileUtils;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+
+@Command(name = "stats", description = "Show the size and usage of cached repositories")
+public class CacheStatsCommand extends AbstractCacheCommand {
+
+	@Override
+	protected void executeInCache(RuntimeConfiguration config, RepoCache repoCache) throws Exception {
+		List<CachedRepository> repositories = repoCache.getRepositories();
+		DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+
+		// 12 MB  2015-06-01 12:34  2015-06-01 12:30  * git@github.com:prezi/pride
+		logger.info("{}  {}  {}    {}", pad("size", 8), pad("last used", 16), pad("last updated", 16), "repository");
+		for (CachedRepository repository : repositories) {
+			logger.info("{}  {}  {}  {} {}",
+					pad(FileUtils.byteCountToDisplaySize(repository.getSize()), 8),
+					pad(formatTime(dateFormat, repository.getLastUsed()), 16),
+					pad(formatTime(dateFormat, repository.getLastRefreshed()), 16),
+					repository.isInUse() ? '*' : ' ',
+					repository);
+		}
+		logger.info("");
+		logger.info("{} repositories, {} in total ({} marks repositories that modules borrow objects from)",
+				repositories.size(), getTotalSize(repositories), "*");
+	}
+
+	private static String formatTime(DateFormat dateFormat, long time) {
+		return time > 0 ? dateFormat.format(new Date(time)) : "unknown";
+	}
+
+	private static String pad(String value, int length) {
+		return Strings.padEnd(value, length, ' ');
+	}
+}
@@ -11,6 +11,12 @@ public class DefaultPridePlugin implements PridePlugin {
 	public Collection<Class<? extends PrideCommand>> getCommands() {
 		return ImmutableList.<Class<? extends PrideCommand>>of(
 				AddCommand.class,
+				CacheExportCommand.class,
+				CacheGcCommand.class,
+				CacheImportCommand.class,
+				CachePruneCommand.class,
+				CacheRefreshCommand.class,
+				CacheStatsCommand.class,
 				CheckVersionsCommand.class,
 				ConfigCommand.class,
 				DoCommand.class,
@@ -1,14 +1,13 @@
 package com.prezi.pride.cli.commands;
 
-import com.google.common.base.Function;
 import com.google.common.base.Joiner;
-import com.google.common.collect.Collections2;
+import com.google.common.base.Strings;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
 import com.prezi.pride.Module;
-import com.prezi.pride.Named;
 import com.prezi.pride.Pride;
 import com.prezi.pride.PrideException;
 import com.prezi.pride.ProcessUtils;
-import com.prezi.pride.internal.LoggedProgressAction;
 import com.prezi.pride.internal.ProgressAction;
 import com.prezi.pride.internal.ProgressUtils;
 import io.airlift.command.Arguments;
@@ -19,6 +18,8 @@ import java.io.File;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
 
 @Command(name = "do", description = "Execute a command on a set of modules")
 public class DoCommand extends AbstractFilteredPrideCommand {
@@ -36,63 +37,223 @@ public class DoCommand extends AbstractFilteredPrideCommand {
 			description = "Do not stop if command returns an error")
 	private boolean explicitIgnoreErrors;
 
+	@Option(name = {"--live"},
+			description = "When executing in parallel, print output as it arrives prefixed with the module name, instead of printing the output of each module once it is finished")
+	private boolean explicitLive;
+
+	@Option(name = {"--timeout"},
+			title = "seconds",
+			description = "Kill the command (and the processes it started) if it does not finish in time")
+	private Integer explicitTimeout;
+
 	@Arguments(description = "The command to execute")
 	private List<String> commandLine;
 
+	private enum OutputMode {
+		/**
+		 * Print output as it arrives (used when executing on one module at a time).
+		 */
+		DIRECT,
+
+		/**
+		 * Print output as it arrives prefixed with the name of the module.
+		 */
+		LIVE,
+
+		/**
+		 * Collect the output of each module, and print it in module order when the module is finished.
+		 */
+		BUFFERED
+	}
+
 	@Override
 	protected void executeInModules(final Pride pride, Collection<Module> modules) throws Exception {
 		if (commandLine == null || commandLine.isEmpty()) {
 			throw new PrideException("No command-line specified");
 		}
-		Collection<File> moduleDirs = Collections2.transform(modules, new Function<Module, File>() {
-			@Override
-			public File apply(Module module) {
-				return pride.getModuleDirectory(module.getName());
-			}
-		});
-		ProgressAction<File> action;
-		if (!explicitBare) {
-			action = new LoggedProgressAction<File>("", "$ " + Joiner.on(" ").join(commandLine), Named.TOSTRING_NAMER) {
+		int jobs = ProgressUtils.getJobs(pride.getConfiguration());
+		boolean parallel = jobs > 1 && modules.size() > 1;
+		final OutputMode outputMode = !parallel ? OutputMode.DIRECT : explicitLive ? OutputMode.LIVE : OutputMode.BUFFERED;
+
+		final List<Execution> executions = Lists.newArrayList();
+		for (Module module : modules) {
+			executions.add(new Execution(module.getName(), pride.getModuleDirectory(module.getName())));
+		}
+		final BufferedOutput bufferedOutput = new BufferedOutput(executions);
+
+		try {
+			ProgressUtils.execute(pride, executions, new ProgressAction<Execution>() {
 				@Override
-				protected void execute(Pride pride, File directory) throws IOException {
-					executeInDirectory(directory);
+				public void started(Pride pride, Execution execution, int index, int count) {
+					if (outputMode != OutputMode.BUFFERED) {
+						logHeader(execution, index, count);
+					}
 				}
 
 				@Override
-				public void execute(Pride pride, File directory, int index, int count) throws IOException {
-					super.execute(pride, directory, index, count);
-					if (index < count - 1) {
+				public void execute(Pride pride, final Execution execution, int index, int count) throws IOException {
+					try {
+						executeInDirectory(execution, new ProcessUtils.OutputHandler() {
+							@Override
+							public void handleOutput(String line) {
+								switch (outputMode) {
+									case DIRECT:
+										logger.info("{}", line);
+										break;
+									case LIVE:
+										logger.info("[{}] {}", execution.name, line);
+										break;
+									case BUFFERED:
+										execution.output.add(line);
+										break;
+								}
+							}
+
+							@Override
+							public void handleError(String line) {
+								// The error stream is redirected to the output
+								handleOutput(line);
+							}
+						});
+					} finally {
+						if (outputMode == OutputMode.BUFFERED) {
+							bufferedOutput.flushFinished();
+						}
+					}
+					if (outputMode == OutputMode.DIRECT && !explicitBare && index < count - 1) {
 						logger.info("");
 					}
 				}
-			};
-		} else {
-			action = new ProgressAction<File>() {
-				@Override
-				public void execute(Pride pride, File directory, int index, int count) throws IOException {
-					executeInDirectory(directory);
-				}
-			};
+			}, jobs);
+		} finally {
+			if (outputMode == OutputMode.BUFFERED) {
+				bufferedOutput.flushRemaining();
+			}
+			if (parallel && !explicitBare) {
+				logSummary(executions);
+			}
 		}
-
-		ProgressUtils.execute(pride, moduleDirs, action);
 	}
 
-	private void executeInDirectory(File directory) throws IOException {
+	private void executeInDirectory(Execution execution, ProcessUtils.OutputHandler outputHandler) throws IOException {
+		long timeout = explicitTimeout != null && explicitTimeout > 0 ? TimeUnit.SECONDS.toMillis(explicitTimeout) : 0;
+		long startTime = System.currentTimeMillis();
 		try {
-			ProcessUtils.executeIn(directory, commandLine);
-		} catch (PrideException ex) {
+			execution.exitCode = ProcessUtils.executeIn(execution.directory, commandLine, true, outputHandler, timeout).getExitCode();
+		} catch (IOException e) {
+			execution.cancelled = Throwables.getRootCause(e) instanceof InterruptedException;
+			throw e;
+		} catch (PrideException e) {
+			if (!explicitIgnoreErrors) {
+				throw e;
+			}
+			logger.warn("{}", e.getMessage());
+			return;
+		} finally {
+			execution.duration = System.currentTimeMillis() - startTime;
+			execution.finished = true;
+		}
+
+		if (execution.exitCode != 0) {
+			String message = "Failed to execute \"" + Joiner.on(" ").join(commandLine) + "\" in \"" + execution.directory + "\", exit code: " + execution.exitCode;
 			if (!explicitIgnoreErrors) {
-				throw ex;
+				throw new PrideException(message);
 			} else {
-				logger.warn("{}", ex.getMessage());
-				logger.debug("Exception", ex);
+				logger.warn("{}", message);
 			}
 		}
 	}
 
+	private void logHeader(Execution execution, int index, int count) {
+		if (!explicitBare) {
+			logger.info("[{}/{}] {} $ {}", index + 1, count, execution.directory, Joiner.on(" ").join(commandLine));
+		}
+	}
+
+	private static void logSummary(List<Execution> executions) {
+		int nameMaxLength = 0;
+		for (Execution execution : executions) {
+			nameMaxLength = Math.max(nameMaxLength, execution.name.length());
+		}
+		logger.info("");
+		logger.info("Summary:");
+		for (Execution execution : executions) {
+			String result;
+			if (!execution.finished) {
+				result = "not executed";
+			} else if (execution.cancelled) {
+				result = "cancelled";
+			} else if (execution.exitCode == null) {
+				result = "failed";
+			} else {
+				result = String.format(Locale.ROOT, "exit code %-3d %.1fs", execution.exitCode, execution.duration / 1000.0);
+			}
+			logger.info("  {}{}{}", execution.name, Strings.repeat(" ", nameMaxLength + 2 - execution.name.length()), result);
+		}
+	}
+
 	@Override
 	protected Collection<String> getIncludeModules() {
 		return includeModules;
 	}
+
+	private static class Execution {
+		private final String name;
+		private final File directory;
+		private final List<String> output = Lists.newArrayList();
+		private volatile Integer exitCode;
+		private volatile long duration;
+		private volatile boolean finished;
+		private volatile boolean cancelled;
+
+		public Execution(String name, File directory) {
+			this.name = name;
+			this.directory = directory;
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+
+	/**
+	 * Prints the output of finished modules in module order.
+	 */
+	private class BufferedOutput {
+		private final List<Execution> executions;
+		private int next;
+
+		public BufferedOutput(List<Execution> executions) {
+			this.executions = executions;
+		}
+
+		public synchronized void flushFinished() {
+			while (next < executions.size() && executions.get(next).finished) {
+				flush(next++);
+			}
+		}
+
+		/**
+		 * Prints everything finished, even if some modules before them did not finish.
+		 */
+		public synchronized void flushRemaining() {
+			for (; next < executions.size(); next++) {
+				if (executions.get(next).finished) {
+					flush(next);
+				}
+			}
+		}
+
+		private void flush(int index) {
+			Execution execution = executions.get(index);
+			if (index > 0 && !explicitBare) {
+				logger.info("");
+			}
+			logHeader(execution, index, executions.size());
+			for (String line : execution.output) {
+				logger.info("{}", line);
+			}
+		}
+	}
 }
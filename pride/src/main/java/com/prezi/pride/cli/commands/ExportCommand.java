@@ -48,14 +48,14 @@ public class ExportCommand extends AbstractPrideCommand {
 				try {
 					VcsSupport vcsSupport = module.getVcs().getSupport();
 					File moduleDirectory = pride.getModuleDirectory(module.getName());
-					VcsStatus vcsStatus = vcsSupport.getStatus(moduleDirectory);
+					VcsStatus vcsStatus = pride.getStatus(module);
 					String revision;
 					if (explicit || Strings.isNullOrEmpty(vcsStatus.getBranch())) {
 						revision = vcsStatus.getRevision();
 					} else {
 						revision = vcsStatus.getBranch();
 					}
-					return new ExportedModule(module.getName(), vcsSupport.getRepositoryUrl(moduleDirectory), revision, module.getVcs());
+					return new ExportedModule(module.getName(), vcsSupport.getRepositoryUrl(moduleDirectory), revision, module.getVcs(), module.getCloneOptions());
 				} catch (IOException e) {
 					throw Throwables.propagate(e);
 				}
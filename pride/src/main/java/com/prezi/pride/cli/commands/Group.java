@@ -1,6 +1,7 @@
 package com.prezi.pride.cli.commands;
 
 import java.lang.annotation.Documented;
+import java.lang.annotation.Inherited;
 import java.lang.annotation.Retention;
 import java.lang.annotation.Target;
 
@@ -10,6 +11,9 @@ import static java.lang.annotation.RetentionPolicy.RUNTIME;
 @Target(TYPE)
 @Retention(RUNTIME)
 @Documented
+@Inherited
 public @interface Group {
 	String value();
+
+	String description() default "";
 }
@@ -54,6 +54,10 @@ public class InitCommand extends AbstractConfiguredCommand {
 			description = "Do not use local repo cache (when adding modules from existing configuration)")
 	private boolean explicitNoRepoCache;
 
+	@Option(name = {"--refresh-cache"},
+			description = "Update cached repositories even if they have been updated recently (when adding modules from existing configuration)")
+	private boolean explicitRefreshRepoCache;
+
 	@Option(name = {"-r", "--recursive"},
 			description = "Update sub-modules recursively (when adding modules from existing configuration)")
 	private Boolean explicitRecursive;
@@ -81,7 +85,7 @@ public class InitCommand extends AbstractConfiguredCommand {
 		if (configToImport == null) {
 			initAction = InitAction.create(getPrideDirectory(), globalConfig, getVcsManager(), explicitForce, !explicitNoAddExisting, explicitIgnoreConfig);
 		} else {
-			initAction = InitActionFromImportedConfig.create(getPrideDirectory(), globalConfig, getVcsManager(), configToImport, explicitUseRepoCache, explicitNoRepoCache, explicitRecursive);
+			initAction = InitActionFromImportedConfig.create(getPrideDirectory(), globalConfig, getVcsManager(), configToImport, explicitUseRepoCache, explicitNoRepoCache, explicitRefreshRepoCache, explicitRecursive);
 		}
 		initAction.createPride(addWrapper, isVerbose());
 	}
@@ -1,16 +1,22 @@
 package com.prezi.pride.cli.commands;
 
 import com.google.common.base.Strings;
+import com.google.common.collect.Maps;
 import com.prezi.pride.Module;
 import com.prezi.pride.Pride;
+import com.prezi.pride.RuntimeConfiguration;
+import com.prezi.pride.internal.ProgressAction;
+import com.prezi.pride.internal.ProgressUtils;
 import com.prezi.pride.vcs.VcsStatus;
 import io.airlift.command.Command;
 import io.airlift.command.Option;
 
-import java.io.File;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+
+import static com.prezi.pride.cli.Configurations.VCS_STATUS_JOBS;
 
 @Command(name = "list", description = "List modules in a pride")
 public class ListCommand extends AbstractFilteredPrideCommand {
@@ -24,16 +30,58 @@ public class ListCommand extends AbstractFilteredPrideCommand {
 			description = "Show only module names")
 	private boolean explicitShort;
 
+	@Option(name = {"--stream"},
+			description = "Show each module as soon as its status is known, without aligning columns")
+	private boolean explicitStream;
+
+	@Option(name = {"--status-jobs"},
+			title = "count",
+			description = "Query the status of at most this many modules in parallel")
+	private Integer explicitStatusJobs;
+
 	@Override
 	protected void executeInModules(Pride pride, Collection<Module> modules) throws Exception {
-		LineFormatter formatter;
 		if (explicitShort) {
-			formatter = new NamesOnlyFormatter();
-		} else {
-			formatter = new StatusFormatter(pride);
+			for (Module module : modules) {
+				logger.info("{}", module.getName());
+			}
+			return;
+		}
+
+		RuntimeConfiguration config = pride.getConfiguration();
+		int statusJobs = config.override(VCS_STATUS_JOBS, explicitStatusJobs);
+
+		if (explicitStream) {
+			// Print modules in the order their status arrives
+			ProgressUtils.execute(pride, modules, new StatusAction() {
+				@Override
+				protected void statusQueried(Module module, VcsStatus status) {
+					logger.info("{}", formatModule(module, status, 0, 0));
+				}
+			}, statusJobs);
+			return;
+		}
+
+		// Query all statuses in one pass, then use them both for aligning columns and for printing
+		final Map<Module, VcsStatus> statuses = Maps.newConcurrentMap();
+		ProgressUtils.execute(pride, modules, new StatusAction() {
+			@Override
+			protected void statusQueried(Module module, VcsStatus status) {
+				statuses.put(module, status);
+			}
+		}, statusJobs);
+
+		int moduleMaxLength = 0;
+		int branchMaxLength = 0;
+		for (Module module : modules) {
+			moduleMaxLength = Math.max(moduleMaxLength, module.getName().length());
+			String branch = statuses.get(module).getBranch();
+			if (!Strings.isNullOrEmpty(branch)) {
+				branchMaxLength = Math.max(branchMaxLength, branch.length());
+			}
 		}
 		for (Module module : modules) {
-			logger.info("{}", formatter.formatModule(module));
+			logger.info("{}", formatModule(module, statuses.get(module), moduleMaxLength, branchMaxLength));
 		}
 	}
 
@@ -42,61 +90,37 @@ public class ListCommand extends AbstractFilteredPrideCommand {
 		return includeModules;
 	}
 
-	private interface LineFormatter {
-		String formatModule(Module module) throws Exception;
-	}
+	private static String formatModule(Module module, VcsStatus status, int moduleMaxLength, int branchMaxLength) {
+		// MM module-name (git)
+		String branch = status.getBranch();
+		StringBuilder line = new StringBuilder();
 
-	private static class NamesOnlyFormatter implements LineFormatter {
+		line.append(status.hasUnpublishedChanges() ? 'M' : ' ');
+		line.append(status.hasUncommittedChanges() ? 'M' : ' ');
+		line.append(' ').append(module.getName());
 
-		@Override
-		public String formatModule(Module module) {
-			return module.getName();
+		line.append(Strings.repeat(" ", Math.max(moduleMaxLength - module.getName().length(), 0) + 2));
+
+		if (!Strings.isNullOrEmpty(branch)) {
+			line.append(branch);
+			line.append(Strings.repeat(" ", Math.max(branchMaxLength - branch.length(), 0) + 2));
+			line.append('@');
 		}
+		line.append(status.getRevision());
+		line.append(" (").append(module.getVcs().getType()).append(")");
+		return line.toString();
 	}
 
-	private static class StatusFormatter implements LineFormatter {
-
-		private final Pride pride;
-		private int moduleMaxLength;
-		private int branchMaxLength;
-
-		private StatusFormatter(Pride pride) throws IOException {
-			this.pride = pride;
-
-			Collection<Module> modules = pride.getModules();
-			for (Module module : modules) {
-				String name = module.getName();
-				this.moduleMaxLength = Math.max(this.moduleMaxLength, name.length());
-
-				String branch = module.getVcs().getSupport().getStatus(pride.getModuleDirectory(name)).getBranch();
-				if (!Strings.isNullOrEmpty(branch)) {
-					this.branchMaxLength = Math.max(this.branchMaxLength, branch.length());
-				}
-			}
+	private static abstract class StatusAction implements ProgressAction<Module> {
+		@Override
+		public void started(Pride pride, Module module, int index, int count) {
 		}
 
 		@Override
-		public String formatModule(Module module) throws Exception {
-			File moduleDirectory = pride.getModuleDirectory(module.getName());
-			// MM module-name (git)
-			VcsStatus status = module.getVcs().getSupport().getStatus(moduleDirectory);
-			String branch = status.getBranch();
-			StringBuilder line = new StringBuilder();
-
-			line.append(status.hasUnpublishedChanges() ? 'M' : ' ');
-			line.append(status.hasUncommittedChanges() ? 'M' : ' ');
-			line.append(' ').append(module.getName());
-
-			line.append(Strings.repeat(" ", this.moduleMaxLength + 2 - module.getName().length()));
-
-			if (!Strings.isNullOrEmpty(branch)) {
-				line.append(branch);
-				line.append(Strings.repeat(" ", this.branchMaxLength + 2 - branch.length()));
-				line.append('@');
-			}
-			line.append(status.getRevision());
-			line.append(" (").append(module.getVcs().getType()).append(")");
-			return line.toString();
+		public void execute(Pride pride, Module module, int index, int count) throws IOException {
+			statusQueried(module, pride.getStatus(module));
 		}
+
+		protected abstract void statusQueried(Module module, VcsStatus status);
 	}
 }
@@ -19,6 +19,7 @@ import io.airlift.command.Option;
 import java.io.File;
 import java.io.IOException;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 @Command(name = "remove", description = "Remove modules from a pride")
@@ -53,7 +54,7 @@ public class RemoveCommand extends AbstractFilteredPrideCommand {
 		}
 
 		// Remove modules
-		final List<String> failedModules = Lists.newArrayList();
+		final List<String> failedModules = Collections.synchronizedList(Lists.<String>newArrayList());
 		ProgressUtils.execute(pride, modules, new LoggedNamedProgressAction<Module>("Removing") {
 			@Override
 			protected void execute(Pride pride, Module module) throws IOException {
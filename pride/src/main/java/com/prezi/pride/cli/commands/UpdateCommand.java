@@ -1,12 +1,22 @@
 package com.prezi.pride.cli.commands;
 
+import com.google.common.base.Joiner;
+import com.google.common.base.Predicate;
 import com.google.common.base.Strings;
+import com.google.common.collect.Collections2;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.prezi.pride.Module;
 import com.prezi.pride.Pride;
+import com.prezi.pride.PrideException;
 import com.prezi.pride.RuntimeConfiguration;
 import com.prezi.pride.cli.commands.actions.RefreshDependenciesAction;
 import com.prezi.pride.internal.LoggedNamedProgressAction;
 import com.prezi.pride.internal.ProgressUtils;
+import com.prezi.pride.vcs.CloneOptions;
+import com.prezi.pride.vcs.MirrorProvider;
+import com.prezi.pride.vcs.RepoCache;
+import com.prezi.pride.vcs.VcsSupport;
 import io.airlift.command.Arguments;
 import io.airlift.command.Command;
 import io.airlift.command.Option;
@@ -15,8 +25,12 @@ import java.io.File;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
+import static com.prezi.pride.cli.Configurations.COMMAND_UPDATE_FETCH_JOBS;
 import static com.prezi.pride.cli.Configurations.COMMAND_UPDATE_REFRESH_DEPENDENCIES;
+import static com.prezi.pride.cli.Configurations.PRIDE_HOME;
+import static com.prezi.pride.cli.Configurations.REPO_CACHE_ALWAYS;
 import static com.prezi.pride.cli.Configurations.REPO_RECURSIVE;
 
 @Command(name = "update", description = "Update modules a pride")
@@ -35,6 +49,11 @@ public class UpdateCommand extends AbstractFilteredPrideCommand {
 			description = "Switch to branch")
 	private String explicitSwitchToBranch;
 
+	@Option(name = {"--fetch-jobs"},
+			title = "count",
+			description = "Fetch changes for at most this many modules in parallel")
+	private Integer explicitFetchJobs;
+
 	@Arguments(required = false,
 			title = "modules",
 			description = "The modules to update (updates all modules if none specified)")
@@ -45,16 +64,69 @@ public class UpdateCommand extends AbstractFilteredPrideCommand {
 		RuntimeConfiguration config = pride.getConfiguration();
 		boolean refreshDependencies = config.override(COMMAND_UPDATE_REFRESH_DEPENDENCIES, explicitRefreshDependencies);
 		final boolean recursive = config.override(REPO_RECURSIVE, explicitRecursive);
+		int fetchJobs = config.override(COMMAND_UPDATE_FETCH_JOBS, explicitFetchJobs);
+		// Clone submodules through the repo cache, like modules are when they are added
+		final RepoCache repoCache = recursive && config.getBoolean(REPO_CACHE_ALWAYS)
+				? new RepoCache(new File(config.getString(PRIDE_HOME) + "/cache"), RepoCache.getTimeToLive(config))
+				: null;
+
+		// Results are recorded per module instead of stopping at the first failure
+		final Map<Module, String> failures = Maps.newConcurrentMap();
 
-		ProgressUtils.execute(pride, modules, new LoggedNamedProgressAction<Module>("Updating") {
+		// Download changes for all modules first, as this is what takes most of the time
+		ProgressUtils.execute(pride, modules, new LoggedNamedProgressAction<Module>("Fetching") {
+			@Override
+			protected void execute(Pride pride, Module module) throws IOException {
+				try {
+					module.getVcs().getSupport().fetch(pride.getModuleDirectory(module.getName()), false);
+				} catch (Exception ex) {
+					logger.warn("Could not fetch changes for module {}: {}", module.getName(), ex.getMessage());
+					logger.debug("Exception while fetching module {}", module.getName(), ex);
+					failures.put(module, "fetch failed: " + ex.getMessage());
+				}
+			}
+		}, fetchJobs);
+
+		// Then update the working copies of modules that have been fetched successfully
+		Collection<Module> fetchedModules = Lists.newArrayList(Collections2.filter(modules, new Predicate<Module>() {
+			@Override
+			public boolean apply(Module module) {
+				return !failures.containsKey(module);
+			}
+		}));
+		logger.info("");
+		ProgressUtils.execute(pride, fetchedModules, new LoggedNamedProgressAction<Module>("Updating") {
 			@Override
 			protected void execute(Pride pride, Module module) throws IOException {
 				File moduleDir = pride.getModuleDirectory(module.getName());
-				String moduleBranch = explicitSwitchToBranch;
-				if (Strings.isNullOrEmpty(moduleBranch)) {
-					moduleBranch = module.getVcs().getSupport().getBranch(pride.getModuleDirectory(module.getName()));
+				try {
+					VcsSupport vcsSupport = module.getVcs().getSupport();
+					String moduleBranch = explicitSwitchToBranch;
+					if (Strings.isNullOrEmpty(moduleBranch)) {
+						moduleBranch = vcsSupport.getBranch(moduleDir);
+					}
+					// Apply changes to the sparse paths in the configuration before touching the working copy,
+					// leaving the working copy alone if they are not set at all
+					CloneOptions cloneOptions = module.getCloneOptions();
+					if (cloneOptions.isSparsePathsSet()) {
+						vcsSupport.setSparsePaths(moduleDir, cloneOptions.getSparsePaths());
+					}
+					if (repoCache != null && vcsSupport.isMirroringSupported()) {
+						vcsSupport.updateWorkingCopy(moduleDir, moduleBranch, false);
+						MirrorProvider mirrors = repoCache.getMirrorProvider(module.getVcs());
+						try {
+							vcsSupport.updateSubmodules(moduleDir, mirrors);
+						} finally {
+							mirrors.close();
+						}
+					} else {
+						vcsSupport.updateWorkingCopy(moduleDir, moduleBranch, recursive);
+					}
+				} catch (Exception ex) {
+					logger.warn("Could not update module {}: {}", module.getName(), ex.getMessage());
+					logger.debug("Exception while updating module {}", module.getName(), ex);
+					failures.put(module, "update failed: " + ex.getMessage());
 				}
-				module.getVcs().getSupport().update(moduleDir, moduleBranch, recursive, false);
 			}
 
 			@Override
@@ -65,11 +137,37 @@ public class UpdateCommand extends AbstractFilteredPrideCommand {
 				}
 			}
 		});
+
+		logResults(modules, failures);
+		if (!failures.isEmpty()) {
+			List<String> failedModules = Lists.newArrayList();
+			for (Module module : modules) {
+				if (failures.containsKey(module)) {
+					failedModules.add(module.getName());
+				}
+			}
+			throw new PrideException("Could not update the following modules:\n\n\t* " + Joiner.on("\n\t* ").join(failedModules));
+		}
+
 		if (refreshDependencies) {
 			new RefreshDependenciesAction().refreshDependencies(pride);
 		}
 	}
 
+	private static void logResults(Collection<Module> modules, Map<Module, String> failures) {
+		int moduleMaxLength = 0;
+		for (Module module : modules) {
+			moduleMaxLength = Math.max(moduleMaxLength, module.getName().length());
+		}
+		logger.info("");
+		logger.info("Update results:");
+		for (Module module : modules) {
+			String failure = failures.get(module);
+			logger.info("  {}{}{}", module.getName(), Strings.repeat(" ", moduleMaxLength + 2 - module.getName().length()),
+					failure == null ? "updated" : failure);
+		}
+	}
+
 	@Override
 	protected Collection<String> getIncludeModules() {
 		return includeModules;
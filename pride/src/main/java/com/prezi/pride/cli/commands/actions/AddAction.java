@@ -12,7 +12,9 @@ import com.prezi.pride.cli.PrideInitializer;
 import com.prezi.pride.cli.gradle.GradleConnectorManager;
 import com.prezi.pride.internal.LoggedNamedProgressAction;
 import com.prezi.pride.internal.ProgressUtils;
+import com.prezi.pride.vcs.CloneOptions;
 import com.prezi.pride.vcs.RepoCache;
+import com.prezi.pride.vcs.RepoCacheMode;
 import com.prezi.pride.vcs.Vcs;
 import com.prezi.pride.vcs.VcsSupport;
 import org.apache.commons.lang.StringUtils;
@@ -20,6 +22,7 @@ import org.apache.commons.lang.StringUtils;
 import java.io.File;
 import java.io.IOException;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 import static com.google.common.collect.Collections2.filter;
@@ -33,14 +36,16 @@ public class AddAction {
 	private final boolean overwrite;
 	private final boolean useRepoCache;
 	private final boolean noRepoCache;
+	private final boolean refreshRepoCache;
 	private final Boolean recursive;
 	private final boolean verbose;
 
-	public AddAction(Pride pride, boolean overwrite, boolean useRepoCache, boolean noRepoCache, Boolean recursive, boolean verbose) {
+	public AddAction(Pride pride, boolean overwrite, boolean useRepoCache, boolean noRepoCache, boolean refreshRepoCache, Boolean recursive, boolean verbose) {
 		this.pride = pride;
 		this.overwrite = overwrite;
 		this.useRepoCache = useRepoCache;
 		this.noRepoCache = noRepoCache;
+		this.refreshRepoCache = refreshRepoCache;
 		this.recursive = recursive;
 		this.verbose = verbose;
 	}
@@ -48,8 +53,11 @@ public class AddAction {
 	public void addModules(Collection<ExportedModule> modules) throws Exception {
 		final RuntimeConfiguration config = pride.getConfiguration();
 		final boolean alwaysUseRepoCache = config.override(REPO_CACHE_ALWAYS, useRepoCache, noRepoCache);
+		final boolean explicitlyUseRepoCache = useRepoCache;
 		final boolean recursive = config.override(REPO_RECURSIVE, this.recursive);
 		final String defaultRevision = config.getString(REPO_BRANCH);
+		final RepoCacheMode repoCacheMode = RepoCacheMode.fromConfiguration(config);
+		final CloneOptions defaultCloneOptions = CloneOptions.fromConfiguration(config);
 
 		// Check if anything exists already
 		if (!overwrite) {
@@ -73,10 +81,20 @@ public class AddAction {
 			}
 		}
 
-		final List<String> failedModules = Lists.newArrayList();
+		final List<String> failedModules = Collections.synchronizedList(Lists.<String>newArrayList());
 		ProgressUtils.execute(pride, modules, new LoggedNamedProgressAction<ExportedModule>("Adding") {
 			private RepoCache repoCache = null;
 
+			private synchronized RepoCache getRepoCache() throws IOException {
+				if (repoCache == null) {
+					File cachePath = new File(config.getString(PRIDE_HOME) + "/cache");
+					// Always update mirrors when asked to refresh the cache
+					long timeToLive = refreshRepoCache ? 0 : RepoCache.getTimeToLive(config);
+					repoCache = new RepoCache(cachePath, timeToLive);
+				}
+				return repoCache;
+			}
+
 			@Override
 			public void execute(Pride pride, ExportedModule moduleEntry) throws IOException {
 				String moduleName = moduleEntry.getModule();
@@ -87,12 +105,19 @@ public class AddAction {
 				if (Strings.isNullOrEmpty(revision)) {
 					revision = defaultRevision;
 				}
+				CloneOptions cloneOptions = moduleEntry.getCloneOptions().withDefaults(defaultCloneOptions);
+				// Options given for the module itself, not just the defaults of the pride
+				boolean limitedHistoryRequested = !moduleEntry.getCloneOptions().withDefaults(CloneOptions.FULL).hasFullHistory();
 
 				// Determine if we can use a repo cache
 				final boolean useRepoCache;
 				if (alwaysUseRepoCache && !vcsSupport.isMirroringSupported()) {
 					logger.warn("Cannot use repo cache for {}.", moduleName);
 					useRepoCache = false;
+				} else if (alwaysUseRepoCache && !explicitlyUseRepoCache && limitedHistoryRequested) {
+					// Modules are always cloned from the cache with their full history, which is not what was asked for
+					logger.warn("Not using repo cache for {}, cloning it from its remote with {}.", moduleName, cloneOptions);
+					useRepoCache = false;
 				} else {
 					useRepoCache = alwaysUseRepoCache;
 				}
@@ -100,15 +125,15 @@ public class AddAction {
 				try {
 					File moduleInPride = new File(pride.getRootDirectory(), moduleName);
 					if (useRepoCache) {
-						if (repoCache == null) {
-							File cachePath = new File(config.getString(PRIDE_HOME) + "/cache");
-							repoCache = new RepoCache(cachePath);
+						if (!cloneOptions.hasFullHistory()) {
+							logger.warn("Cloning {} from the repo cache with full history instead of {}", moduleName, cloneOptions);
+							cloneOptions = cloneOptions.withFullHistory();
 						}
-						repoCache.checkoutThroughCache(vcsSupport, repoUrl, moduleInPride, revision, recursive);
+						getRepoCache().checkoutThroughCache(vcs, repoUrl, moduleInPride, revision, recursive, repoCacheMode, cloneOptions);
 					} else {
-						vcsSupport.checkout(repoUrl, moduleInPride, revision, recursive, false);
+						vcsSupport.checkout(repoUrl, moduleInPride, revision, recursive, false, cloneOptions);
 					}
-					pride.addModule(moduleName, vcs);
+					pride.addModule(moduleName, vcs, cloneOptions.isFull() ? CloneOptions.UNSET : cloneOptions);
 				} catch (Exception ex) {
 					logger.warn("Could not add module {}: {}", moduleName, ex);
 					logger.debug("Exception while adding module {}", moduleName, ex);
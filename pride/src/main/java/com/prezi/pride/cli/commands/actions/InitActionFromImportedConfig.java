@@ -21,17 +21,19 @@ public class InitActionFromImportedConfig extends InitActionBase {
 	private final Collection<ExportedModule> modules;
 	private final boolean useRepoCache;
 	private final boolean noRepoCache;
+	private final boolean refreshRepoCache;
 	private final Boolean recursive;
 
-	private InitActionFromImportedConfig(File prideDirectory, RuntimeConfiguration config, Configuration prideConfig, Collection<ExportedModule> modules, VcsManager vcsManager, boolean useRepoCache, boolean noRepoCache, Boolean recursive) {
+	private InitActionFromImportedConfig(File prideDirectory, RuntimeConfiguration config, Configuration prideConfig, Collection<ExportedModule> modules, VcsManager vcsManager, boolean useRepoCache, boolean noRepoCache, boolean refreshRepoCache, Boolean recursive) {
 		super(prideDirectory, config, prideConfig, vcsManager);
 		this.modules = modules;
 		this.useRepoCache = useRepoCache;
 		this.noRepoCache = noRepoCache;
+		this.refreshRepoCache = refreshRepoCache;
 		this.recursive = recursive;
 	}
 
-	public static InitActionFromImportedConfig create(File prideDirectory, RuntimeConfiguration globalConfig, VcsManager vcsManager, String configLocation, boolean useRepoCache, boolean noRepoCache, Boolean recursive) throws Exception {
+	public static InitActionFromImportedConfig create(File prideDirectory, RuntimeConfiguration globalConfig, VcsManager vcsManager, String configLocation, boolean useRepoCache, boolean noRepoCache, boolean refreshRepoCache, Boolean recursive) throws Exception {
 		boolean prideExistsAlready = Pride.containsPride(prideDirectory);
 		if (prideExistsAlready) {
 			throw new PrideException("Cannot create a pride from existing configuration in a directory that already contains a pride: "
@@ -61,7 +63,7 @@ public class InitActionFromImportedConfig extends InitActionBase {
 				throw new PrideException("No remote URL specified for module " + exportedModule.getName() + ". Please use `pride export` to generate a configuration that can be imported.");
 			}
 		}
-		return new InitActionFromImportedConfig(prideDirectory, globalConfig, configurationData.getConfiguration(), configurationData.getModules(), vcsManager, useRepoCache, noRepoCache, recursive);
+		return new InitActionFromImportedConfig(prideDirectory, globalConfig, configurationData.getConfiguration(), configurationData.getModules(), vcsManager, useRepoCache, noRepoCache, refreshRepoCache, recursive);
 	}
 
 	@Override
@@ -71,7 +73,7 @@ public class InitActionFromImportedConfig extends InitActionBase {
 			return;
 		}
 
-		AddAction addAction = new AddAction(pride, false, useRepoCache, noRepoCache, recursive, verbose);
+		AddAction addAction = new AddAction(pride, false, useRepoCache, noRepoCache, refreshRepoCache, recursive, verbose);
 		addAction.addModules(modules);
 	}
 }
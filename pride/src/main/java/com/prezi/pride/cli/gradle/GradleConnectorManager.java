@@ -67,6 +67,10 @@ public class GradleConnectorManager {
 		};
 	}
 
+	public String getGradleVersion() {
+		return gradleVersion;
+	}
+
 	public GradleConnector getConnector() {
 		return gradleConnector.get();
 	}
@@ -0,0 +1,223 @@
+package com.prezi.pride.cli.model;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.prezi.pride.projectmodel.PrideProjectModel;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * A detached copy of a project model, independent of the Gradle connection it came from.
+ *
+ * <p>Models are stored as properties, with project directories relative to the module directory,
+ * so that they stay valid when the module is moved, or is checked out in another pride.</p>
+ */
+class CachedProjectModel implements PrideProjectModel {
+	private static final String PROJECTS = "projects";
+	private static final String PARENT = "parent";
+	private static final String NAME = "name";
+	private static final String PATH = "path";
+	private static final String GROUP = "group";
+	private static final String VERSION = "version";
+	private static final String PROJECT_DIR = "dir";
+
+	private final CachedProjectModel parent;
+	private final String name;
+	private final String path;
+	private final String group;
+	private final String version;
+	private final String projectDir;
+	// Projects are compared by identity, so they can be added to their parent before their children are known
+	private final Set<CachedProjectModel> children = Sets.newLinkedHashSet();
+
+	private CachedProjectModel(CachedProjectModel parent, String name, String path, String group, String version, String projectDir) {
+		this.parent = parent;
+		this.name = name;
+		this.path = path;
+		this.group = group;
+		this.version = version;
+		this.projectDir = projectDir;
+		if (parent != null) {
+			parent.children.add(this);
+		}
+	}
+
+	public static CachedProjectModel copyOf(PrideProjectModel project) {
+		return copyOf(null, project);
+	}
+
+	private static CachedProjectModel copyOf(CachedProjectModel parent, PrideProjectModel project) {
+		CachedProjectModel copy = new CachedProjectModel(parent, project.getName(), project.getPath(), project.getGroup(), project.getVersion(), project.getProjectDir());
+		for (PrideProjectModel child : project.getChildren()) {
+			copyOf(copy, child);
+		}
+		return copy;
+	}
+
+	/**
+	 * Returns whether all projects are inside the module directory, so that the model can be used
+	 * for the same module checked out elsewhere.
+	 */
+	public boolean isRelocatable(File moduleDirectory) throws IOException {
+		for (CachedProjectModel project : flatten()) {
+			if (new File(relativize(moduleDirectory, project.projectDir)).isAbsolute()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the directories of all projects, relative to the module directory where possible.
+	 */
+	public Set<String> getProjectDirectories(File moduleDirectory) throws IOException {
+		Set<String> projectDirectories = Sets.newTreeSet();
+		for (CachedProjectModel project : flatten()) {
+			projectDirectories.add(relativize(moduleDirectory, project.projectDir));
+		}
+		return projectDirectories;
+	}
+
+	/**
+	 * Stores the model under keys ending with the given suffix.
+	 */
+	public void store(Properties properties, String suffix, File moduleDirectory) throws IOException {
+		List<CachedProjectModel> projects = flatten();
+		Map<CachedProjectModel, Integer> indexes = Maps.newIdentityHashMap();
+		properties.setProperty(key(PROJECTS, suffix), String.valueOf(projects.size()));
+		for (int index = 0; index < projects.size(); index++) {
+			CachedProjectModel project = projects.get(index);
+			indexes.put(project, index);
+			String projectSuffix = index + "." + suffix;
+			if (project.parent != null) {
+				properties.setProperty(key(PARENT, projectSuffix), String.valueOf(indexes.get(project.parent)));
+			}
+			properties.setProperty(key(NAME, projectSuffix), project.name);
+			properties.setProperty(key(PATH, projectSuffix), project.path);
+			properties.setProperty(key(PROJECT_DIR, projectSuffix), relativize(moduleDirectory, project.projectDir));
+			if (project.group != null) {
+				properties.setProperty(key(GROUP, projectSuffix), project.group);
+			}
+			if (project.version != null) {
+				properties.setProperty(key(VERSION, projectSuffix), project.version);
+			}
+		}
+	}
+
+	/**
+	 * Loads a model stored with {@link #store(Properties, String, File)}.
+	 *
+	 * @throws IllegalArgumentException if the stored model is invalid.
+	 */
+	public static CachedProjectModel load(Properties properties, String suffix, File moduleDirectory) {
+		String countValue = properties.getProperty(key(PROJECTS, suffix));
+		int count = Integer.parseInt(checkNotNull(countValue));
+		List<CachedProjectModel> projects = Lists.newArrayList();
+		for (int index = 0; index < count; index++) {
+			String projectSuffix = index + "." + suffix;
+			String parentIndex = properties.getProperty(key(PARENT, projectSuffix));
+			CachedProjectModel parent = parentIndex != null ? projects.get(Integer.parseInt(parentIndex)) : null;
+			CachedProjectModel project = new CachedProjectModel(
+					parent,
+					checkNotNull(properties.getProperty(key(NAME, projectSuffix))),
+					checkNotNull(properties.getProperty(key(PATH, projectSuffix))),
+					properties.getProperty(key(GROUP, projectSuffix)),
+					properties.getProperty(key(VERSION, projectSuffix)),
+					resolve(moduleDirectory, checkNotNull(properties.getProperty(key(PROJECT_DIR, projectSuffix)))));
+			projects.add(project);
+		}
+		if (projects.isEmpty() || projects.get(0).parent != null) {
+			throw new IllegalArgumentException("No root project");
+		}
+		return projects.get(0);
+	}
+
+	private List<CachedProjectModel> flatten() {
+		List<CachedProjectModel> projects = Lists.newArrayList();
+		flatten(this, projects);
+		return projects;
+	}
+
+	private static void flatten(CachedProjectModel project, List<CachedProjectModel> projects) {
+		projects.add(project);
+		for (CachedProjectModel child : project.children) {
+			flatten(child, projects);
+		}
+	}
+
+	private static String relativize(File moduleDirectory, String projectDir) throws IOException {
+		// Gradle might report canonical paths
+		for (String modulePath : new String[] {moduleDirectory.getAbsolutePath(), moduleDirectory.getCanonicalPath()}) {
+			if (projectDir.equals(modulePath)) {
+				return ".";
+			}
+			if (projectDir.startsWith(modulePath + File.separator)) {
+				return projectDir.substring(modulePath.length() + 1).replace(File.separatorChar, '/');
+			}
+		}
+		return projectDir;
+	}
+
+	static String resolve(File moduleDirectory, String projectDir) {
+		if (new File(projectDir).isAbsolute()) {
+			return projectDir;
+		}
+		if (projectDir.equals(".")) {
+			return moduleDirectory.getAbsolutePath();
+		}
+		return new File(moduleDirectory.getAbsoluteFile(), projectDir).getPath();
+	}
+
+	private static String checkNotNull(String value) {
+		if (value == null) {
+			throw new IllegalArgumentException("Missing value");
+		}
+		return value;
+	}
+
+	private static String key(String field, String suffix) {
+		return field + "." + suffix;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public String getPath() {
+		return path;
+	}
+
+	@Override
+	public String getGroup() {
+		return group;
+	}
+
+	@Override
+	public String getVersion() {
+		return version;
+	}
+
+	@Override
+	public String getProjectDir() {
+		return projectDir;
+	}
+
+	@Override
+	public Set<PrideProjectModel> getChildren() {
+		return Collections.<PrideProjectModel>unmodifiableSet(children);
+	}
+
+	@Override
+	public String toString() {
+		return "PrideProject{path='" + path + "\'}";
+	}
+}
@@ -0,0 +1,382 @@
+package com.prezi.pride.cli.model;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import com.google.common.io.Resources;
+import com.prezi.pride.Pride;
+import com.prezi.pride.projectmodel.PrideProjectModel;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps the Gradle project models of modules between runs.
+ *
+ * <p>Each model is stored together with a fingerprint of the Gradle build of the module: the contents
+ * of its build scripts ({@code *.gradle} and {@code *.gradle.kts} files), {@code gradle.properties} and
+ * wrapper properties, any additional inputs configured in {@value #MODEL_CACHE_INPUTS}, and the Gradle
+ * version used. Modules are only evaluated by Gradle again when their fingerprint changes.</p>
+ *
+ * <p>Build files are only looked for in the root directory of the module, its {@code gradle} directory,
+ * and the directories of the projects in the cached model. Projects can only be added by changing one
+ * of these build files, so the rest of the module does not need to be read.</p>
+ *
+ * <p>Fingerprints don't depend on where the pride is, so the same fingerprint is also used to share
+ * models between prides (see {@link SharedProjectModelStore}).</p>
+ */
+public class ProjectModelCache {
+	private static final Logger logger = LoggerFactory.getLogger(ProjectModelCache.class);
+
+	public static final String MODEL_CACHE_ENABLED = "gradle.model.cache";
+	public static final String MODEL_CACHE_INPUTS = "gradle.model.inputs";
+
+	// Change this when the stored model changes, so that models stored by earlier versions are ignored
+	private static final int FORMAT_VERSION = 2;
+
+	private static final String FINGERPRINT = "fingerprint";
+
+	private final File prideDirectory;
+	private final File cacheFile;
+	private final boolean enabled;
+	private final String gradleVersion;
+	private final List<String> inputs;
+	private final ConcurrentMap<String, Entry> entries = Maps.newConcurrentMap();
+	private boolean loaded;
+	private volatile boolean dirty;
+
+	public ProjectModelCache(File prideDirectory, boolean enabled, String gradleVersion, Collection<String> inputs) {
+		this.prideDirectory = prideDirectory;
+		this.cacheFile = getCacheFile(prideDirectory);
+		this.enabled = enabled;
+		this.gradleVersion = Strings.nullToEmpty(gradleVersion);
+		this.inputs = ImmutableList.copyOf(inputs);
+	}
+
+	public static File getCacheFile(File prideDirectory) {
+		return new File(Pride.getPrideConfigDirectory(prideDirectory), Pride.PRIDE_MODEL_CACHE_FILE);
+	}
+
+	/**
+	 * Returns the fingerprint of the Gradle build in the module directory, or {@code null} if the cache is disabled.
+	 * Take the fingerprint before evaluating the module, so that changes made during the evaluation are not missed.
+	 *
+	 * <p>Only the root of the module, its {@code gradle} directory and the project directories of the cached
+	 * model are read. If there is no cached model for the module yet, every directory of the module is read.</p>
+	 */
+	public Fingerprint getFingerprint(String moduleName, File moduleDirectory) throws IOException {
+		if (!enabled) {
+			return null;
+		}
+		File rootDirectory = moduleDirectory.getCanonicalFile();
+		Hasher hasher = Hashing.murmur3_128().newHasher()
+				.putInt(FORMAT_VERSION)
+				// The name of the root project defaults to the name of the directory
+				.putString(moduleDirectory.getName(), Charsets.UTF_8)
+				.putString(gradleVersion, Charsets.UTF_8)
+				// The models depend on the plugin that builds them, too
+				.putBytes(Resources.toByteArray(Resources.getResource("model-init.gradle")));
+		addBuildFiles(hasher, "", rootDirectory, false);
+		File gradleDirectory = new File(rootDirectory, "gradle");
+		if (gradleDirectory.isDirectory()) {
+			addBuildFiles(hasher, "/gradle", gradleDirectory, true);
+		}
+		for (String input : inputs) {
+			File inputFile = new File(moduleDirectory, input);
+			hasher.putString(input, Charsets.UTF_8);
+			if (inputFile.isDirectory()) {
+				addDirectory(hasher, input, inputFile);
+			} else {
+				addFile(hasher, input, inputFile);
+			}
+		}
+
+		Map<String, HashCode> projectDirectories = Maps.newHashMap();
+		load();
+		Entry entry = entries.get(moduleName);
+		if (entry != null) {
+			for (String projectDirectory : entry.projectDirectories) {
+				projectDirectories.put(projectDirectory, hashProjectDirectory(new File(CachedProjectModel.resolve(moduleDirectory, projectDirectory))));
+			}
+		} else {
+			// Any directory could turn out to be a project
+			addProjectDirectories(projectDirectories, ".", rootDirectory);
+		}
+		return new Fingerprint(moduleDirectory, hasher.hash(), projectDirectories);
+	}
+
+	/**
+	 * Returns the cached root project model of the module if its build has the given fingerprint,
+	 * or {@code null} if it has to be evaluated.
+	 */
+	public PrideProjectModel get(String moduleName, Fingerprint fingerprint) throws IOException {
+		if (fingerprint == null) {
+			return null;
+		}
+		load();
+		Entry entry = entries.get(moduleName);
+		if (entry != null && entry.fingerprint.equals(fingerprint.hash(entry.projectDirectories))) {
+			logger.debug("Using cached project model for {}", moduleName);
+			return entry.rootProject;
+		}
+		return null;
+	}
+
+	public void put(String moduleName, Fingerprint fingerprint, PrideProjectModel rootProject) throws IOException {
+		if (fingerprint == null) {
+			return;
+		}
+		load();
+		CachedProjectModel cachedRootProject = CachedProjectModel.copyOf(rootProject);
+		Set<String> projectDirectories = cachedRootProject.getProjectDirectories(fingerprint.moduleDirectory);
+		entries.put(moduleName, new Entry(fingerprint.hash(projectDirectories), cachedRootProject, projectDirectories));
+		dirty = true;
+	}
+
+	/**
+	 * Stores the cached models, dropping the ones of modules that no longer exist in the pride.
+	 */
+	public synchronized void save() throws IOException {
+		if (!dirty) {
+			return;
+		}
+		Properties properties = new Properties();
+		for (Map.Entry<String, Entry> mapEntry : entries.entrySet()) {
+			String moduleName = mapEntry.getKey();
+			File moduleDirectory = new File(prideDirectory, moduleName);
+			if (!Pride.isValidModuleDirectory(moduleDirectory)) {
+				continue;
+			}
+			Entry entry = mapEntry.getValue();
+			properties.setProperty(key(FINGERPRINT, moduleName), entry.fingerprint);
+			entry.rootProject.store(properties, moduleName, moduleDirectory);
+		}
+
+		storeAtomically(properties, cacheFile, "Gradle project model cache");
+		dirty = false;
+	}
+
+	/**
+	 * Writes to a temporary file first, so that concurrent readers never see partially written properties.
+	 */
+	static void storeAtomically(Properties properties, File file, String comment) throws IOException {
+		FileUtils.forceMkdir(file.getParentFile());
+		File tempFile = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+		try {
+			OutputStream output = new FileOutputStream(tempFile);
+			try {
+				properties.store(output, comment);
+			} finally {
+				output.close();
+			}
+			if (!tempFile.renameTo(file)) {
+				FileUtils.deleteQuietly(file);
+				if (!tempFile.renameTo(file)) {
+					throw new IOException("Could not write " + file);
+				}
+			}
+		} finally {
+			FileUtils.deleteQuietly(tempFile);
+		}
+	}
+
+	private synchronized void load() {
+		if (loaded) {
+			return;
+		}
+		loaded = true;
+		if (!cacheFile.isFile()) {
+			return;
+		}
+		Properties properties = new Properties();
+		try {
+			InputStream input = new FileInputStream(cacheFile);
+			try {
+				properties.load(input);
+			} finally {
+				IOUtils.closeQuietly(input);
+			}
+		} catch (IOException e) {
+			logger.debug("Could not read project model cache {}", cacheFile, e);
+			return;
+		}
+
+		Set<String> moduleNames = Sets.newHashSet();
+		for (String key : properties.stringPropertyNames()) {
+			if (key.startsWith(FINGERPRINT + ".")) {
+				moduleNames.add(key.substring(FINGERPRINT.length() + 1));
+			}
+		}
+		for (String moduleName : moduleNames) {
+			try {
+				File moduleDirectory = new File(prideDirectory, moduleName);
+				CachedProjectModel rootProject = CachedProjectModel.load(properties, moduleName, moduleDirectory);
+				entries.put(moduleName, new Entry(properties.getProperty(key(FINGERPRINT, moduleName)), rootProject, rootProject.getProjectDirectories(moduleDirectory)));
+			} catch (IOException e) {
+				logger.debug("Ignoring invalid project model cache entry for {}", moduleName, e);
+			} catch (RuntimeException e) {
+				logger.debug("Ignoring invalid project model cache entry for {}", moduleName, e);
+			}
+		}
+	}
+
+	private static void addProjectDirectories(Map<String, HashCode> projectDirectories, String path, File directory) throws IOException {
+		projectDirectories.put(path, hashProjectDirectory(directory));
+		String[] names = directory.list();
+		if (names == null) {
+			return;
+		}
+		for (String name : names) {
+			File file = new File(directory, name);
+			if (!name.startsWith(".") && file.isDirectory() && !FileUtils.isSymlink(file)) {
+				addProjectDirectories(projectDirectories, path.equals(".") ? name : path + "/" + name, file);
+			}
+		}
+	}
+
+	/**
+	 * Hashes the build files directly in the directory of a project.
+	 */
+	private static HashCode hashProjectDirectory(File directory) throws IOException {
+		Hasher hasher = Hashing.murmur3_128().newHasher();
+		addBuildFiles(hasher, "", directory, false);
+		return hasher.hash();
+	}
+
+	private static void addBuildFiles(Hasher hasher, String path, File directory, boolean recursive) throws IOException {
+		String[] names = directory.list();
+		if (names == null) {
+			return;
+		}
+		Arrays.sort(names);
+		for (String name : names) {
+			if (name.startsWith(".")) {
+				continue;
+			}
+			File file = new File(directory, name);
+			String filePath = path + "/" + name;
+			if (file.isDirectory()) {
+				if (recursive && !FileUtils.isSymlink(file)) {
+					addBuildFiles(hasher, filePath, file, true);
+				}
+			} else if (isBuildFile(name)) {
+				addFile(hasher, filePath, file);
+			}
+		}
+	}
+
+	private static boolean isBuildFile(String name) {
+		return name.endsWith(".gradle")
+				|| name.endsWith(".gradle.kts")
+				|| name.equals("gradle.properties")
+				|| name.equals("gradle-wrapper.properties");
+	}
+
+	private static void addDirectory(Hasher hasher, String path, File directory) throws IOException {
+		String[] names = directory.list();
+		if (names == null) {
+			return;
+		}
+		Arrays.sort(names);
+		for (String name : names) {
+			File file = new File(directory, name);
+			String filePath = path + "/" + name;
+			if (file.isDirectory()) {
+				if (!FileUtils.isSymlink(file)) {
+					addDirectory(hasher, filePath, file);
+				}
+			} else {
+				addFile(hasher, filePath, file);
+			}
+		}
+	}
+
+	private static void addFile(Hasher hasher, String path, File file) throws IOException {
+		hasher.putString(path, Charsets.UTF_8);
+		if (file.isFile()) {
+			hasher.putBoolean(true).putBytes(Files.toByteArray(file));
+		} else {
+			hasher.putBoolean(false);
+		}
+	}
+
+	private static String key(String field, String suffix) {
+		return field + "." + suffix;
+	}
+
+	/**
+	 * The build files of a module, read before evaluating it.
+	 */
+	public static class Fingerprint {
+		private final File moduleDirectory;
+		private final HashCode build;
+		// Keyed by project directories relative to the module, so that the fingerprint doesn't depend on where the pride is
+		private final Map<String, HashCode> projectDirectories;
+
+		private Fingerprint(File moduleDirectory, HashCode build, Map<String, HashCode> projectDirectories) {
+			this.moduleDirectory = moduleDirectory;
+			this.build = build;
+			this.projectDirectories = projectDirectories;
+		}
+
+		/**
+		 * Returns the hash of the build files that don't depend on the projects of the module.
+		 */
+		String getBuildHash() {
+			return build.toString();
+		}
+
+		/**
+		 * Returns the hash of the build, including the build files of the projects in the given model.
+		 */
+		String hash(CachedProjectModel rootProject) throws IOException {
+			return hash(rootProject.getProjectDirectories(moduleDirectory));
+		}
+
+		private String hash(Set<String> projectDirectories) throws IOException {
+			Hasher hasher = Hashing.murmur3_128().newHasher().putBytes(build.asBytes());
+			for (String projectDirectory : projectDirectories) {
+				HashCode projectHash = this.projectDirectories.get(projectDirectory);
+				if (projectHash == null) {
+					// A project of the module that was not known to exist before it was evaluated
+					projectHash = hashProjectDirectory(new File(CachedProjectModel.resolve(moduleDirectory, projectDirectory)));
+				}
+				hasher.putString(projectDirectory, Charsets.UTF_8).putBytes(projectHash.asBytes());
+			}
+			return hasher.hash().toString();
+		}
+	}
+
+	private static class Entry {
+		private final String fingerprint;
+		private final CachedProjectModel rootProject;
+		private final Set<String> projectDirectories;
+
+		public Entry(String fingerprint, CachedProjectModel rootProject, Set<String> projectDirectories) {
+			this.fingerprint = fingerprint;
+			this.rootProject = rootProject;
+			this.projectDirectories = projectDirectories;
+		}
+	}
+}
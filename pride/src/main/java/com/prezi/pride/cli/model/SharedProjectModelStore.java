@@ -0,0 +1,129 @@
+package com.prezi.pride.cli.model;
+
+import com.google.common.base.Strings;
+import com.prezi.pride.Module;
+import com.prezi.pride.Pride;
+import com.prezi.pride.projectmodel.PrideProjectModel;
+import com.prezi.pride.vcs.RepoCache;
+import com.prezi.pride.vcs.VcsSupport;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * Shares Gradle project models between prides on the same machine.
+ *
+ * <p>Models are stored next to the mirror of the module's repository in the {@link RepoCache}, keyed by
+ * the revision checked out and the fingerprint of the module's build (see {@link ProjectModelCache#getFingerprint(String, File)}),
+ * which includes the Gradle version. The build files of the projects in a shared model are checked again
+ * before it is used. Only modules with a mirror in the cache are shared, and their models are removed
+ * together with the mirror.</p>
+ */
+public class SharedProjectModelStore {
+	private static final Logger logger = LoggerFactory.getLogger(SharedProjectModelStore.class);
+
+	public static final String MODEL_STORE_ENABLED = "gradle.model.shared";
+
+	private static final String MODELS_DIRECTORY = "models";
+	private static final String ROOT_PROJECT = "root";
+	private static final String FINGERPRINT = "fingerprint";
+
+	private final RepoCache repoCache;
+	private final boolean enabled;
+
+	public SharedProjectModelStore(RepoCache repoCache, boolean enabled) {
+		this.repoCache = repoCache;
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Returns the file to share the model of the module in, or {@code null} if it cannot be shared.
+	 *
+	 * @param fingerprint The fingerprint of the module's build, or {@code null} if models are not cached.
+	 */
+	public File getModelFile(Pride pride, Module module, ProjectModelCache.Fingerprint fingerprint) {
+		if (!enabled || fingerprint == null) {
+			return null;
+		}
+		VcsSupport vcsSupport = module.getVcs().getSupport();
+		if (!vcsSupport.isMirroringSupported()) {
+			return null;
+		}
+		try {
+			File moduleDirectory = pride.getModuleDirectory(module.getName());
+			String revision = pride.getStatus(module).getRevision();
+			if (Strings.isNullOrEmpty(revision)) {
+				return null;
+			}
+			String repositoryUrl = vcsSupport.normalizeRepositoryUrl(vcsSupport.getRepositoryUrl(moduleDirectory));
+			File dataDirectory = repoCache.getDataDirectory(repositoryUrl);
+			if (dataDirectory == null) {
+				return null;
+			}
+			// The same revision can be built differently (by another Gradle version, or with local changes)
+			return new File(dataDirectory, MODELS_DIRECTORY + "/" + revision.replaceAll("[^a-zA-Z0-9.]+", "-") + "-" + fingerprint.getBuildHash());
+		} catch (Exception ex) {
+			logger.debug("Not sharing project model of {}", module, ex);
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the model shared in the given file, or {@code null} if there is none,
+	 * or if the build files of its projects are different in the module.
+	 */
+	public PrideProjectModel get(File modelFile, File moduleDirectory, ProjectModelCache.Fingerprint fingerprint) {
+		if (modelFile == null || !modelFile.isFile()) {
+			return null;
+		}
+		Properties properties = new Properties();
+		try {
+			InputStream input = new FileInputStream(modelFile);
+			try {
+				properties.load(input);
+			} finally {
+				IOUtils.closeQuietly(input);
+			}
+			CachedProjectModel rootProject = CachedProjectModel.load(properties, ROOT_PROJECT, moduleDirectory);
+			if (!fingerprint.hash(rootProject).equals(properties.getProperty(FINGERPRINT))) {
+				logger.debug("Not using shared project model for {}, as the build of its projects is different", moduleDirectory.getName());
+				return null;
+			}
+			logger.debug("Using shared project model for {} from {}", moduleDirectory.getName(), modelFile);
+			return rootProject;
+		} catch (IOException ex) {
+			logger.debug("Could not read shared project model {}", modelFile, ex);
+		} catch (RuntimeException ex) {
+			logger.debug("Ignoring invalid shared project model {}", modelFile, ex);
+		}
+		return null;
+	}
+
+	/**
+	 * Shares the model in the given file, unless it refers to projects outside the module.
+	 */
+	public void put(File modelFile, File moduleDirectory, ProjectModelCache.Fingerprint fingerprint, PrideProjectModel rootProject) {
+		if (modelFile == null) {
+			return;
+		}
+		try {
+			CachedProjectModel model = CachedProjectModel.copyOf(rootProject);
+			if (!model.isRelocatable(moduleDirectory)) {
+				logger.debug("Not sharing project model of {}, as it has projects outside the module", moduleDirectory.getName());
+				return;
+			}
+			Properties properties = new Properties();
+			properties.setProperty(FINGERPRINT, fingerprint.hash(model));
+			model.store(properties, ROOT_PROJECT, moduleDirectory);
+			ProjectModelCache.storeAtomically(properties, modelFile, "Gradle project model");
+		} catch (IOException ex) {
+			logger.debug("Could not share project model in {}", modelFile, ex);
+		}
+	}
+}
@@ -0,0 +1,42 @@
+package com.prezi.pride.cli.commands
+
+import com.prezi.pride.vcs.CloneOptions
+import com.prezi.pride.vcs.RepoCache
+import com.prezi.pride.vcs.RepoCacheMode
+import com.prezi.pride.vcs.Vcs
+import com.prezi.pride.vcs.file.FileVcsSupportFactory
+import org.apache.commons.configuration.BaseConfiguration
+import org.apache.commons.io.FileUtils
+import spock.lang.Specification
+
+/**
+ * Runs cache commands against mirrors of file modules in a temporary directory.
+ */
+abstract class CacheCommandSpecification extends Specification {
+	def root = File.createTempFile("pride", "cache")
+	def vcs = new Vcs("file", new FileVcsSupportFactory().createVcsSupport(new BaseConfiguration()))
+
+	def setup() {
+		root.delete()
+		root.mkdirs()
+	}
+
+	def cleanup() {
+		FileUtils.deleteDirectory(root)
+	}
+
+	protected File source(String name) {
+		return new File(root, "source-" + name)
+	}
+
+	/**
+	 * Adds a mirror to the cache for each name, by checking out a module from a new source.
+	 */
+	protected void addRepositories(RepoCache cache, String... names) {
+		names.each { name ->
+			def source = source(name)
+			FileUtils.writeStringToFile(new File(source, "data"), name)
+			cache.checkoutThroughCache(vcs, source.path, new File(root, "module-" + name), null, false, RepoCacheMode.COPY, CloneOptions.FULL)
+		}
+	}
+}
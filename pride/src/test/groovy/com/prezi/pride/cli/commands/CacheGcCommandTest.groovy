@@ -0,0 +1,31 @@
+package com.prezi.pride.cli.commands
+
+import com.prezi.pride.PrideException
+import com.prezi.pride.cli.DefaultRuntimeConfiguration
+import com.prezi.pride.vcs.CachedRepository
+import com.prezi.pride.vcs.RepoCache
+import com.prezi.pride.vcs.VcsSupport
+
+class CacheGcCommandTest extends CacheCommandSpecification {
+	def "every repository is compacted even if some of them fail"() {
+		def compacted = Collections.synchronizedList([])
+		def cache = new RepoCache(new File(root, "cache"), 0) {
+			@Override
+			void optimize(CachedRepository repository, VcsSupport vcsSupport, boolean full) throws IOException {
+				if (repository.url.endsWith("broken")) {
+					throw new IOException("Broken repository")
+				}
+				compacted.add(repository.url)
+			}
+		}
+		addRepositories(cache, "a", "broken", "b")
+
+		when:
+		new CacheGcCommand().executeInCache(DefaultRuntimeConfiguration.create(), cache)
+
+		then:
+		def ex = thrown PrideException
+		ex.message.contains(source("broken").path)
+		compacted.sort() == [source("a").path, source("b").path]
+	}
+}
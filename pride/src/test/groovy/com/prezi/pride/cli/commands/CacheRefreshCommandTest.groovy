@@ -0,0 +1,59 @@
+package com.prezi.pride.cli.commands
+
+import com.prezi.pride.PrideException
+import com.prezi.pride.cli.DefaultRuntimeConfiguration
+import com.prezi.pride.vcs.CachedRepository
+import com.prezi.pride.vcs.RepoCache
+import com.prezi.pride.vcs.VcsSupport
+
+class CacheRefreshCommandTest extends CacheCommandSpecification {
+	def "file mirrors are synced with their sources"() {
+		def cache = new RepoCache(new File(root, "cache"), 0)
+		addRepositories(cache, "a", "b")
+		def data = new File(source("a"), "data")
+		data.text = "a2"
+		// Make sure the change is noticed even on file systems with coarse timestamps
+		data.setLastModified(data.lastModified() + 2000)
+
+		when:
+		new CacheRefreshCommand().executeInCache(DefaultRuntimeConfiguration.create(), cache)
+
+		then:
+		new File(cache.repositories.find { it.url == source("a").path }.directory, "data").text == "a2"
+	}
+
+	def "every repository is updated even if some of them fail"() {
+		def refreshed = Collections.synchronizedList([])
+		def cache = new RepoCache(new File(root, "cache"), 0) {
+			@Override
+			void refresh(CachedRepository repository, VcsSupport vcsSupport) throws IOException {
+				if (repository.url.endsWith("broken")) {
+					throw new IOException("Broken repository")
+				}
+				refreshed.add(repository.url)
+			}
+		}
+		addRepositories(cache, "a", "broken", "b")
+
+		when:
+		new CacheRefreshCommand().executeInCache(DefaultRuntimeConfiguration.create(), cache)
+
+		then:
+		def ex = thrown PrideException
+		ex.message.contains(source("broken").path)
+		!ex.message.contains(source("a").path)
+		refreshed.sort() == [source("a").path, source("b").path]
+	}
+
+	def "interval must be positive"() {
+		def command = new CacheRefreshCommand()
+		command.explicitInterval = 0
+
+		when:
+		command.executeInCache(DefaultRuntimeConfiguration.create(), new RepoCache(new File(root, "cache"), 0))
+
+		then:
+		def ex = thrown PrideException
+		ex.message == "Interval must be positive: 0"
+	}
+}
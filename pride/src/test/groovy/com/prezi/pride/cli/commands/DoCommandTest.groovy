@@ -0,0 +1,106 @@
+package com.prezi.pride.cli.commands
+
+import ch.qos.logback.classic.Logger
+import ch.qos.logback.classic.spi.ILoggingEvent
+import ch.qos.logback.core.read.ListAppender
+import com.prezi.pride.Pride
+import com.prezi.pride.PrideException
+import com.prezi.pride.cli.DefaultRuntimeConfiguration
+import com.prezi.pride.internal.ProgressUtils
+import com.prezi.pride.vcs.Vcs
+import com.prezi.pride.vcs.VcsManager
+import com.prezi.pride.vcs.file.FileVcsSupportFactory
+import org.apache.commons.configuration.BaseConfiguration
+import org.apache.commons.configuration.MapConfiguration
+import org.apache.commons.configuration.PropertiesConfiguration
+import org.apache.commons.io.FileUtils
+import org.slf4j.LoggerFactory
+import spock.lang.Specification
+
+class DoCommandTest extends Specification {
+	def root = File.createTempFile("pride", "do")
+	def logger = (Logger) LoggerFactory.getLogger(AbstractCommand)
+	def appender = new ListAppender<ILoggingEvent>()
+
+	def setup() {
+		root.delete()
+		["a", "b", "c"].each { name -> new File(root, name).mkdirs() }
+		appender.start()
+		logger.addAppender(appender)
+	}
+
+	def cleanup() {
+		logger.detachAppender(appender)
+		FileUtils.deleteDirectory(root)
+	}
+
+	def "output of parallel commands is printed in module order"() {
+		def command = new DoCommand()
+		// The first module finishes last
+		command.commandLine = ["sh", "-c", 'name=$(basename "$PWD"); if [ $name = a ]; then sleep 1; fi; echo "one $name"; echo "two $name"']
+
+		when:
+		command.executeInModules(pride(3), pride(3).modules)
+
+		then:
+		output() == ["one a", "two a", "one b", "two b", "one c", "two c"]
+		messages().contains("Summary:")
+	}
+
+	def "live output is prefixed with the module name"() {
+		def command = new DoCommand()
+		command.explicitLive = true
+		command.commandLine = ["sh", "-c", 'echo "one $(basename "$PWD")"']
+
+		when:
+		command.executeInModules(pride(3), pride(3).modules)
+
+		then:
+		messages().findAll { it.startsWith("[") && it.contains("] one ") }.sort() == ["[a] one a", "[b] one b", "[c] one c"]
+	}
+
+	def "failing command stops the remaining modules"() {
+		def command = new DoCommand()
+		command.commandLine = ["sh", "-c", 'touch executed; [ $(basename "$PWD") != b ]']
+
+		when:
+		command.executeInModules(pride(1), pride(1).modules)
+
+		then:
+		def ex = thrown PrideException
+		ex.message.contains "exit code: 1"
+		executed() == ["a", "b"]
+	}
+
+	def "errors can be ignored"() {
+		def command = new DoCommand()
+		command.explicitIgnoreErrors = true
+		command.commandLine = ["sh", "-c", 'touch executed; [ $(basename "$PWD") != b ]']
+
+		when:
+		command.executeInModules(pride(3), pride(3).modules)
+
+		then:
+		executed() == ["a", "b", "c"]
+	}
+
+	private Pride pride(int jobs) {
+		def config = DefaultRuntimeConfiguration.create(new MapConfiguration([(ProgressUtils.PRIDE_JOBS): jobs]))
+		def pride = new Pride(root, config, new PropertiesConfiguration(), new VcsManager())
+		def vcs = new Vcs("file", new FileVcsSupportFactory().createVcsSupport(new BaseConfiguration()))
+		["a", "b", "c"].each { name -> pride.addModule(name, vcs) }
+		return pride
+	}
+
+	private List<String> executed() {
+		return ["a", "b", "c"].findAll { name -> new File(root, name + "/executed").exists() }
+	}
+
+	private List<String> messages() {
+		return appender.list*.formattedMessage
+	}
+
+	private List<String> output() {
+		return messages().findAll { it.startsWith("one ") || it.startsWith("two ") }
+	}
+}
@@ -0,0 +1,79 @@
+package com.prezi.pride.cli.commands
+
+import com.prezi.pride.Pride
+import com.prezi.pride.PrideException
+import com.prezi.pride.cli.DefaultRuntimeConfiguration
+import com.prezi.pride.vcs.Vcs
+import com.prezi.pride.vcs.VcsManager
+import com.prezi.pride.vcs.VcsSupport
+import org.apache.commons.configuration.PropertiesConfiguration
+import org.apache.commons.io.FileUtils
+import spock.lang.Specification
+
+class UpdateCommandTest extends Specification {
+	def root = File.createTempFile("pride", "update")
+	def fetched = Collections.synchronizedList([])
+	def updated = Collections.synchronizedList([])
+	def events = Collections.synchronizedList([])
+	def pride
+
+	def setup() {
+		root.delete()
+		root.mkdirs()
+		pride = new Pride(root, DefaultRuntimeConfiguration.create(), new PropertiesConfiguration(), new VcsManager())
+	}
+
+	def cleanup() {
+		FileUtils.deleteDirectory(root)
+	}
+
+	def "every module is fetched before working copies are updated"() {
+		["a", "b", "c"].each { name -> pride.addModule(name, vcs([:])) }
+
+		when:
+		new UpdateCommand().executeInModules(pride, pride.modules)
+
+		then:
+		fetched.sort() == ["a", "b", "c"]
+		updated.sort() == ["a", "b", "c"]
+		events.findLastIndexOf { it == "fetch" } < events.findIndexOf { it == "update" }
+	}
+
+	def "modules that could not be fetched are not updated, and failures are reported at the end"() {
+		pride.addModule("a", vcs([:]))
+		pride.addModule("b", vcs([fetch: "b"]))
+		pride.addModule("c", vcs([update: "c"]))
+		pride.addModule("d", vcs([:]))
+
+		when:
+		new UpdateCommand().executeInModules(pride, pride.modules)
+
+		then:
+		def ex = thrown PrideException
+		ex.message == "Could not update the following modules:\n\n\t* b\n\t* c"
+		fetched.sort() == ["a", "c", "d"]
+		updated.sort() == ["a", "d"]
+	}
+
+	private Vcs vcs(Map<String, String> failures) {
+		def support = [
+				fetch            : { File directory, boolean mirrored ->
+					if (failures.fetch == directory.name) {
+						throw new IOException("Cannot fetch")
+					}
+					fetched.add(directory.name)
+					events.add("fetch")
+				},
+				getBranch        : { File directory -> "master" },
+				setSparsePaths   : { File directory, List<String> sparsePaths -> },
+				updateWorkingCopy: { File directory, String revision, boolean recursive ->
+					if (failures.update == directory.name) {
+						throw new IOException("Cannot update")
+					}
+					updated.add(directory.name)
+					events.add("update")
+				},
+		] as VcsSupport
+		return new Vcs("test", support)
+	}
+}
@@ -0,0 +1,126 @@
+package com.prezi.pride.cli.model
+
+import com.prezi.pride.projectmodel.PrideProjectModel
+import org.apache.commons.io.FileUtils
+import spock.lang.Specification
+
+class ProjectModelCacheTest extends Specification {
+	def prideDirectory = File.createTempFile("pride", "model")
+	def moduleDirectory = new File(prideDirectory, "module")
+
+	def setup() {
+		prideDirectory.delete()
+		FileUtils.writeStringToFile(new File(moduleDirectory, "build.gradle"), "group = 'com.example'")
+		FileUtils.writeStringToFile(new File(moduleDirectory, "sub/build.gradle"), "")
+		FileUtils.writeStringToFile(new File(moduleDirectory, "sub/Source.java"), "class Source {}")
+	}
+
+	def cleanup() {
+		FileUtils.deleteDirectory(prideDirectory)
+	}
+
+	def "models are stored between runs"() {
+		store(newCache())
+
+		when:
+		def cache = newCache()
+		def rootProject = cache.get("module", cache.getFingerprint("module", moduleDirectory))
+
+		then:
+		rootProject.name == "module"
+		rootProject.group == "com.example"
+		rootProject.children*.path == [":sub"]
+		rootProject.children*.group == [null]
+		rootProject.children*.projectDir == [new File(moduleDirectory, "sub").path]
+	}
+
+	def "models can be moved with the pride"() {
+		store(newCache())
+
+		def movedDirectory = new File(prideDirectory.parentFile, prideDirectory.name + "-moved")
+		FileUtils.moveDirectory(prideDirectory, movedDirectory)
+		prideDirectory = movedDirectory
+		moduleDirectory = new File(movedDirectory, "module")
+
+		when:
+		def movedCache = newCache()
+		def rootProject = movedCache.get("module", movedCache.getFingerprint("module", moduleDirectory))
+
+		then:
+		rootProject.projectDir == moduleDirectory.path
+		rootProject.children*.projectDir == [new File(moduleDirectory, "sub").path]
+	}
+
+	def "models are only evaluated again when the build changes"() {
+		store(newCache())
+
+		when:
+		FileUtils.writeStringToFile(new File(moduleDirectory, "sub/Source.java"), "class Source { int changed; }")
+
+		then:
+		isCached(newCache())
+
+		when:
+		FileUtils.writeStringToFile(new File(moduleDirectory, "sub/build.gradle"), "version = '1.0'")
+
+		then:
+		!isCached(newCache())
+	}
+
+	def "only the root, the gradle directory and the directories of cached projects are read"() {
+		store(newCache())
+
+		when:
+		FileUtils.writeStringToFile(new File(moduleDirectory, "src/build.gradle"), "")
+
+		then:
+		isCached(newCache())
+
+		when:
+		FileUtils.writeStringToFile(new File(moduleDirectory, "gradle/wrapper/gradle-wrapper.properties"), "distributionUrl=gradle-2.14-bin.zip")
+
+		then:
+		!isCached(newCache())
+	}
+
+	def "models are evaluated again with other inputs or Gradle version"() {
+		store(newCache())
+
+		expect:
+		isCached(newCache())
+		!isCached(new ProjectModelCache(prideDirectory, true, "2.14", []))
+		!isCached(new ProjectModelCache(prideDirectory, true, null, ["sub"]))
+	}
+
+	def "nothing is cached when disabled"() {
+		expect:
+		new ProjectModelCache(prideDirectory, false, null, []).getFingerprint("module", moduleDirectory) == null
+	}
+
+	private ProjectModelCache newCache() {
+		return new ProjectModelCache(prideDirectory, true, null, [])
+	}
+
+	private void store(ProjectModelCache cache) {
+		def fingerprint = cache.getFingerprint("module", moduleDirectory)
+		cache.put("module", fingerprint, model(":", "com.example", [model(":sub", null, [])]))
+		cache.save()
+	}
+
+	private boolean isCached(ProjectModelCache cache) {
+		return cache.get("module", cache.getFingerprint("module", moduleDirectory)) != null
+	}
+
+	private PrideProjectModel model(String path, String group, List<PrideProjectModel> children) {
+		def name = path == ":" ? "module" : path.substring(1)
+		def projectDir = path == ":" ? moduleDirectory : new File(moduleDirectory, name)
+		return [
+				getName      : { name },
+				getPath      : { path },
+				getGroup     : { group },
+				getVersion   : { null },
+				getProjectDir: { projectDir.path },
+				getChildren  : { children as Set },
+		] as PrideProjectModel
+	}
+}
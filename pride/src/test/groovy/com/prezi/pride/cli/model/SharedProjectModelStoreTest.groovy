@@ -0,0 +1,81 @@
+package com.prezi.pride.cli.model
+
+import com.prezi.pride.projectmodel.PrideProjectModel
+import org.apache.commons.io.FileUtils
+import spock.lang.Specification
+
+class SharedProjectModelStoreTest extends Specification {
+	def root = File.createTempFile("pride", "store")
+	def modelFile = new File(root, "cache/repo.data/models/abc123-fingerprint")
+	def store = new SharedProjectModelStore(null, true)
+
+	def setup() {
+		root.delete()
+	}
+
+	def cleanup() {
+		FileUtils.deleteDirectory(root)
+	}
+
+	def "models are shared between prides"() {
+		def moduleDirectory = createModule("pride-1")
+		def otherModuleDirectory = createModule("pride-2")
+		store.put(modelFile, moduleDirectory, fingerprint(moduleDirectory), model(moduleDirectory, new File(moduleDirectory, "sub")))
+
+		when:
+		def rootProject = store.get(modelFile, otherModuleDirectory, fingerprint(otherModuleDirectory))
+
+		then:
+		rootProject.projectDir == otherModuleDirectory.absolutePath
+		rootProject.children*.projectDir == [new File(otherModuleDirectory, "sub").absolutePath]
+	}
+
+	def "shared models are not used when the build of their projects is different"() {
+		def moduleDirectory = createModule("pride-1")
+		def otherModuleDirectory = createModule("pride-2")
+		store.put(modelFile, moduleDirectory, fingerprint(moduleDirectory), model(moduleDirectory, new File(moduleDirectory, "sub")))
+		FileUtils.writeStringToFile(new File(otherModuleDirectory, "sub/build.gradle"), "version = '2.0'")
+
+		expect:
+		store.get(modelFile, otherModuleDirectory, fingerprint(otherModuleDirectory)) == null
+	}
+
+	def "models with projects outside the module are not shared"() {
+		def moduleDirectory = createModule("pride-1")
+		store.put(modelFile, moduleDirectory, fingerprint(moduleDirectory), model(moduleDirectory, new File(root, "pride-1/other")))
+
+		expect:
+		!modelFile.exists()
+		store.get(modelFile, moduleDirectory, fingerprint(moduleDirectory)) == null
+	}
+
+	private File createModule(String prideName) {
+		def moduleDirectory = new File(root, prideName + "/module")
+		FileUtils.writeStringToFile(new File(moduleDirectory, "build.gradle"), "group = 'com.example'")
+		FileUtils.writeStringToFile(new File(moduleDirectory, "sub/build.gradle"), "")
+		return moduleDirectory
+	}
+
+	private static ProjectModelCache.Fingerprint fingerprint(File moduleDirectory) {
+		return new ProjectModelCache(moduleDirectory.parentFile, true, null, []).getFingerprint("module", moduleDirectory)
+	}
+
+	private static PrideProjectModel model(File moduleDirectory, File childDirectory) {
+		def child = [
+				getName      : { "sub" },
+				getPath      : { ":sub" },
+				getGroup     : { null },
+				getVersion   : { null },
+				getProjectDir: { childDirectory.absolutePath },
+				getChildren  : { [] as Set },
+		] as PrideProjectModel
+		return [
+				getName      : { "module" },
+				getPath      : { ":" },
+				getGroup     : { "com.example" },
+				getVersion   : { "1.0" },
+				getProjectDir: { moduleDirectory.absolutePath },
+				getChildren  : { [child] as Set },
+		] as PrideProjectModel
+	}
+}